@@ -0,0 +1,122 @@
+package arx.dukalis.collections;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link BTreeSet} with {@link RedBlackTree} on insert, lookup, iteration and remove
+ * of random keys.
+ * <p>
+ * Each invocation runs the operation for all {@code size} keys, so scores are per pass over the keys.
+ * Sizes of 10M and more go through {@code -p size=...}; 100M needs a heap of about 16 GB.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BTreeSetBenchmark {
+    private static final Comparator<Object> COMPARATOR = Comparator.comparing(o -> ((Integer) o));
+
+    @Param({"RedBlackTree", "BTreeSet"})
+    public String implementation;
+
+    @Param({"64"})
+    public int fanOut;
+
+    @Param({"1000", "100000", "1000000"})
+    public int size;
+
+    private Integer[] keys;
+
+    /**
+     * Set holding all keys, for lookups and iteration.
+     */
+    private Collection<Integer> filled;
+
+    /**
+     * Set refilled before each removal pass.
+     */
+    private Collection<Integer> emptied;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        keys = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            keys[i] = i;
+        }
+        Random random = new Random(42);
+        for (int i = size - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            Integer tmp = keys[i];
+            keys[i] = keys[j];
+            keys[j] = tmp;
+        }
+
+        filled = fill(newSet());
+        emptied = newSet();
+    }
+
+    @Setup(Level.Invocation)
+    public void refill() {
+        if (emptied.isEmpty()) {
+            fill(emptied);
+        }
+    }
+
+    private Collection<Integer> newSet() {
+        return switch (implementation) {
+            case "RedBlackTree" -> new RedBlackTree<>(COMPARATOR);
+            case "BTreeSet" -> new BTreeSet<>(COMPARATOR, fanOut);
+            default -> throw new IllegalArgumentException("Unknown implementation: " + implementation);
+        };
+    }
+
+    private Collection<Integer> fill(Collection<Integer> set) {
+        for (Integer key : keys) {
+            set.add(key);
+        }
+        return set;
+    }
+
+    @Benchmark
+    public Collection<Integer> insert() {
+        return fill(newSet());
+    }
+
+    @Benchmark
+    public int lookup() {
+        int found = 0;
+        for (Integer key : keys) {
+            if (filled.contains(key)) {
+                found++;
+            }
+        }
+        return found;
+    }
+
+    @Benchmark
+    public long iterate() {
+        long sum = 0;
+        for (Integer key : filled) {
+            sum += key;
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public int remove() {
+        int removed = 0;
+        for (Integer key : keys) {
+            if (emptied.remove(key)) {
+                removed++;
+            }
+        }
+        return removed;
+    }
+}
@@ -0,0 +1,61 @@
+package arx.dukalis.collections;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lookup throughput of {@link ConcurrentRedBlackTree} against a synchronized {@link RedBlackTree}
+ * while a writer keeps adding and removing keys outside the looked up ones.
+ * <p>
+ * The number of readers goes through {@code -tg}, e.g. {@code -tg 4,1} for four readers and the writer.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConcurrentRedBlackTreeBenchmark {
+    private static final Comparator<Object> COMPARATOR = Comparator.comparing(o -> ((Integer) o));
+
+    @Param({"ConcurrentRedBlackTree", "synchronized"})
+    public String implementation;
+
+    @Param({"100000"})
+    public int size;
+
+    private Collection<Integer> tree;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        tree = switch (implementation) {
+            case "ConcurrentRedBlackTree" -> new ConcurrentRedBlackTree<>(COMPARATOR);
+            case "synchronized" -> Collections.synchronizedCollection(new RedBlackTree<>(COMPARATOR));
+            default -> throw new IllegalArgumentException("Unknown implementation: " + implementation);
+        };
+        for (int i = 0; i < size; i++) {
+            tree.add(i);
+        }
+    }
+
+    @Benchmark
+    @Group("lookups")
+    @GroupThreads(2)
+    public boolean read() {
+        return tree.contains(ThreadLocalRandom.current().nextInt(size));
+    }
+
+    @Benchmark
+    @Group("lookups")
+    @GroupThreads(1)
+    public boolean write() {
+        int key = size + ThreadLocalRandom.current().nextInt(size);
+        tree.add(key);
+        return tree.remove(key);
+    }
+}
@@ -0,0 +1,131 @@
+package arx.dukalis.collections;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Comparator;
+import java.util.NavigableSet;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link RedBlackTree} with {@link TreeSet} on add, contains, remove and iteration
+ * of keys coming in random, ascending and descending order.
+ * <p>
+ * Each invocation runs the operation for all {@code size} keys, so scores are per pass over the keys.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RedBlackTreeBenchmark {
+    private static final Comparator<Object> COMPARATOR = Comparator.comparing(o -> ((Integer) o));
+
+    public enum KeyOrder {
+        RANDOM, SORTED, REVERSED
+    }
+
+    @Param({"RedBlackTree", "TreeSet"})
+    public String implementation;
+
+    @Param({"RANDOM", "SORTED", "REVERSED"})
+    public KeyOrder order;
+
+    @Param({"1000", "100000", "1000000"})
+    public int size;
+
+    private Integer[] keys;
+
+    /**
+     * Set holding all keys, for lookups and iteration.
+     */
+    private NavigableSet<Integer> filled;
+
+    /**
+     * Set refilled before each removal pass.
+     */
+    private NavigableSet<Integer> emptied;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        keys = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            keys[i] = switch (order) {
+                case RANDOM, SORTED -> i;
+                case REVERSED -> size - 1 - i;
+            };
+        }
+        if (order == KeyOrder.RANDOM) {
+            Random random = new Random(42);
+            for (int i = size - 1; i > 0; i--) {
+                int j = random.nextInt(i + 1);
+                Integer tmp = keys[i];
+                keys[i] = keys[j];
+                keys[j] = tmp;
+            }
+        }
+
+        filled = fill(newSet());
+        emptied = newSet();
+    }
+
+    @Setup(Level.Invocation)
+    public void refill() {
+        if (emptied.isEmpty()) {
+            fill(emptied);
+        }
+    }
+
+    private NavigableSet<Integer> newSet() {
+        return switch (implementation) {
+            case "RedBlackTree" -> new RedBlackTree<>(COMPARATOR);
+            case "TreeSet" -> new TreeSet<>(COMPARATOR);
+            default -> throw new IllegalArgumentException("Unknown implementation: " + implementation);
+        };
+    }
+
+    private NavigableSet<Integer> fill(NavigableSet<Integer> set) {
+        for (Integer key : keys) {
+            set.add(key);
+        }
+        return set;
+    }
+
+    @Benchmark
+    public NavigableSet<Integer> add() {
+        return fill(newSet());
+    }
+
+    @Benchmark
+    public int contains() {
+        int found = 0;
+        for (Integer key : keys) {
+            if (filled.contains(key)) {
+                found++;
+            }
+        }
+        return found;
+    }
+
+    @Benchmark
+    public int remove() {
+        int removed = 0;
+        for (Integer key : keys) {
+            if (emptied.remove(key)) {
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    @Benchmark
+    public long iterate() {
+        long sum = 0;
+        for (Integer key : filled) {
+            sum += key;
+        }
+        return sum;
+    }
+}
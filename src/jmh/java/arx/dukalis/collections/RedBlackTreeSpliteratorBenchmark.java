@@ -0,0 +1,56 @@
+package arx.dukalis.collections;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * Compares sequential and parallel stream aggregation over a large tree.
+ * <p>
+ * The speedup of the parallel stream depends on {@link java.util.concurrent.ForkJoinPool#commonPool()},
+ * so runs are comparable only on machines with the same number of cores.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RedBlackTreeSpliteratorBenchmark {
+
+    @Param({"5000000"})
+    public int size;
+
+    private RedBlackTree<Integer> tree;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        tree = RedBlackTree.fromSorted(
+                Comparator.comparing(o -> ((Integer) o)),
+                IntStream.range(0, size).boxed()
+        );
+    }
+
+    /**
+     * Some CPU work per element, so the traversal isn't the only thing measured.
+     */
+    private static long work(Integer value) {
+        long x = value;
+        for (int i = 0; i < 16; i++) {
+            x = x * 6364136223846793005L + 1442695040888963407L;
+        }
+        return x >>> 60;
+    }
+
+    @Benchmark
+    public long sequential() {
+        return tree.stream().mapToLong(RedBlackTreeSpliteratorBenchmark::work).sum();
+    }
+
+    @Benchmark
+    public long parallel() {
+        return tree.parallelStream().mapToLong(RedBlackTreeSpliteratorBenchmark::work).sum();
+    }
+}
@@ -0,0 +1,185 @@
+package arx.dukalis.unit;
+
+import arx.dukalis.unit.api.After;
+import arx.dukalis.unit.api.Before;
+import arx.dukalis.unit.api.Test;
+import arx.dukalis.unit.internal.Report;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static arx.dukalis.unit.api.Assertions.*;
+
+/**
+ * Throughput of {@link Runner} on synthetic test classes: one class at a time, and a suite of classes
+ * spread over a thread pool like {@link Runner#main} does.
+ * <p>
+ * Reports of the runner are discarded while measuring, so the benchmark doesn't time the console.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RunnerBenchmark {
+
+    public static class PassingTests {
+        private int[] data;
+
+        @Before
+        void setUp() {
+            data = new int[64];
+            for (int i = 0; i < data.length; i++) {
+                data[i] = i;
+            }
+        }
+
+        @Test
+        void sums() {
+            assertEquals(2016, Arrays.stream(data).sum());
+        }
+
+        @Test
+        void findsMaximum() {
+            assertEquals(63, Arrays.stream(data).max().orElseThrow());
+        }
+
+        @Test
+        void searches() {
+            assertEquals(42, Arrays.binarySearch(data, 42));
+        }
+
+        @Test
+        void formats() {
+            assertEquals("42", String.valueOf(data[42]));
+        }
+
+        @After
+        void tearDown() {
+            data = null;
+        }
+    }
+
+    public static class RaisingTests {
+        @Test(shouldRaise = IllegalStateException.class)
+        void raisesDeclared() {
+            throw new IllegalStateException();
+        }
+
+        @Test(shouldRaise = RuntimeException.class)
+        void raisesSubclass() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Test(shouldRaise = IndexOutOfBoundsException.class)
+        void indexesEmptyList() {
+            List.of().get(0);
+        }
+
+        @Test(shouldRaise = NumberFormatException.class)
+        void parsesGarbage() {
+            Integer.parseInt("x");
+        }
+    }
+
+    public static class FailingTests {
+        @Test
+        void passes() {
+            assertTrue(true);
+        }
+
+        @Test
+        void failsAssertion() {
+            assertTrue(false);
+        }
+
+        @Test(shouldRaise = IllegalStateException.class)
+        void raisesOther() {
+            throw new IllegalArgumentException();
+        }
+
+        @Test
+        void throwsUnexpectedly() throws Exception {
+            throw new Exception();
+        }
+    }
+
+    private static final Class<?>[] SUITE = {PassingTests.class, RaisingTests.class, FailingTests.class};
+
+    /**
+     * Pool of test processors for the suite.
+     */
+    @State(Scope.Benchmark)
+    public static class TestProcessors {
+        @Param({"1", "4"})
+        public int threads;
+
+        private ExecutorService executor;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            executor = Executors.newFixedThreadPool(threads);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            executor.shutdown();
+        }
+    }
+
+    private PrintStream out;
+    private PrintStream err;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        out = System.out;
+        err = System.err;
+        PrintStream discarding = new PrintStream(OutputStream.nullOutputStream());
+        System.setOut(discarding);
+        System.setErr(discarding);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        System.setOut(out);
+        System.setErr(err);
+    }
+
+    @Benchmark
+    public Report passingClass() throws Exception {
+        return Runner.processClass(PassingTests.class);
+    }
+
+    @Benchmark
+    public Report raisingClass() throws Exception {
+        return Runner.processClass(RaisingTests.class);
+    }
+
+    @Benchmark
+    public Report failingClass() throws Exception {
+        return Runner.processClass(FailingTests.class);
+    }
+
+    @Benchmark
+    public int suite(TestProcessors testProcessors) throws Exception {
+        List<Future<Report>> reports = new ArrayList<>();
+        for (Class<?> klass : SUITE) {
+            reports.add(testProcessors.executor.submit(() -> Runner.processClass(klass)));
+        }
+
+        int passed = 0;
+        for (Future<Report> report : reports) {
+            passed += report.get().passed();
+        }
+        return passed;
+    }
+}
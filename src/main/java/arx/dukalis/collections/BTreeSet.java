@@ -0,0 +1,434 @@
+package arx.dukalis.collections;
+
+import java.util.*;
+
+/**
+ * B-tree with set-like programming interface.
+ * <p>
+ * Insert - O(log n)
+ * Lookup - O(log n)
+ * Remove - O(log n)
+ * <p>
+ * Unlike {@link RedBlackTree}, every node holds up to {@code fanOut - 1} keys in a contiguous array,
+ * which is binary searched, and up to {@code fanOut} children. The tree is log(fanOut) / 2 times
+ * shallower than a red-black tree of the same size, so a lookup touches much fewer cache lines.
+ * <p>
+ * Insertion and removal are done in a single pass from the root, splitting full nodes on the way down
+ * and refilling minimal ones, as described in Cormen et al. "Introduction to Algorithms".
+ */
+public class BTreeSet<T> implements Collection<T> {
+
+    private static final int DEFAULT_FAN_OUT = 64;
+
+    private final Comparator<Object> comparator;
+
+    /**
+     * Minimum degree: every node except the root has at least {@code minDegree - 1}
+     * and at most {@code 2 * minDegree - 1} keys.
+     */
+    private final int minDegree;
+
+    /**
+     * Root of B-tree, never {@code null}.
+     */
+    private Node root;
+
+    /**
+     * The size of the BTreeSet (the number of elements it contains).
+     */
+    private int size = 0;
+
+    public BTreeSet(Comparator<Object> comparator) {
+        this(comparator, DEFAULT_FAN_OUT);
+    }
+
+    /**
+     * @param fanOut maximum number of children per node, an even number not less than 4
+     */
+    public BTreeSet(Comparator<Object> comparator, int fanOut) {
+        if (fanOut < 4 || fanOut % 2 != 0) {
+            throw new IllegalArgumentException("Fan-out must be an even number not less than 4: " + fanOut);
+        }
+        this.comparator = comparator;
+        this.minDegree = fanOut / 2;
+        this.root = new Node(minDegree, true);
+    }
+
+    /**
+     * Node of B-tree.
+     */
+    private static final class Node {
+        final Object[] keys;
+        final Node[] children;
+        int count = 0;
+
+        Node(int minDegree, boolean leaf) {
+            this.keys = new Object[2 * minDegree - 1];
+            this.children = leaf ? null : new Node[2 * minDegree];
+        }
+
+        boolean isLeaf() {
+            return children == null;
+        }
+
+        boolean isFull() {
+            return count == keys.length;
+        }
+
+        /**
+         * Same contract as {@link Arrays#binarySearch(Object[], int, int, Object, Comparator)}.
+         */
+        int search(Object key, Comparator<Object> comparator) {
+            return Arrays.binarySearch(keys, 0, count, key, comparator);
+        }
+
+        void insertKey(int index, Object key) {
+            System.arraycopy(keys, index, keys, index + 1, count - index);
+            keys[index] = key;
+            count++;
+        }
+
+        void removeKey(int index) {
+            System.arraycopy(keys, index + 1, keys, index, count - index - 1);
+            keys[--count] = null;
+        }
+    }
+
+    /**
+     * Splits the full i-th child of x, moving its median key up into x.
+     */
+    private void splitChild(Node x, int i) {
+        Node y = x.children[i];
+        Node z = new Node(minDegree, y.isLeaf());
+        int t = minDegree;
+
+        System.arraycopy(y.keys, t, z.keys, 0, t - 1);
+        Arrays.fill(y.keys, t, 2 * t - 1, null);
+        if (!y.isLeaf()) {
+            System.arraycopy(y.children, t, z.children, 0, t);
+            Arrays.fill(y.children, t, 2 * t, null);
+        }
+        z.count = t - 1;
+
+        Object median = y.keys[t - 1];
+        y.keys[t - 1] = null;
+        y.count = t - 1;
+
+        System.arraycopy(x.children, i + 1, x.children, i + 2, x.count - i);
+        x.children[i + 1] = z;
+        x.insertKey(i, median);
+    }
+
+    /**
+     * Merges the i-th child of x, the i-th key of x and the (i + 1)-th child of x into the i-th child.
+     */
+    private void mergeChildren(Node x, int i) {
+        Node y = x.children[i];
+        Node z = x.children[i + 1];
+
+        y.keys[y.count] = x.keys[i];
+        System.arraycopy(z.keys, 0, y.keys, y.count + 1, z.count);
+        if (!y.isLeaf()) {
+            System.arraycopy(z.children, 0, y.children, y.count + 1, z.count + 1);
+        }
+        y.count += z.count + 1;
+
+        x.removeKey(i);
+        System.arraycopy(x.children, i + 2, x.children, i + 1, x.count - i);
+        x.children[x.count + 1] = null;
+    }
+
+    /**
+     * Moves a key from the left sibling of the i-th child of x through x into that child.
+     */
+    private void borrowFromLeft(Node x, int i) {
+        Node child = x.children[i];
+        Node left = x.children[i - 1];
+
+        child.insertKey(0, x.keys[i - 1]);
+        if (!child.isLeaf()) {
+            System.arraycopy(child.children, 0, child.children, 1, child.count);
+            child.children[0] = left.children[left.count];
+            left.children[left.count] = null;
+        }
+
+        x.keys[i - 1] = left.keys[left.count - 1];
+        left.removeKey(left.count - 1);
+    }
+
+    /**
+     * Moves a key from the right sibling of the i-th child of x through x into that child.
+     */
+    private void borrowFromRight(Node x, int i) {
+        Node child = x.children[i];
+        Node right = x.children[i + 1];
+
+        child.insertKey(child.count, x.keys[i]);
+        if (!child.isLeaf()) {
+            child.children[child.count] = right.children[0];
+            System.arraycopy(right.children, 1, right.children, 0, right.count);
+            right.children[right.count] = null;
+        }
+
+        x.keys[i] = right.keys[0];
+        right.removeKey(0);
+    }
+
+    /**
+     * Makes sure the i-th child of x has more than the minimal number of keys before descending into it.
+     *
+     * @return index of the child which now covers the former i-th child's keys
+     */
+    private int fillChild(Node x, int i) {
+        if (x.children[i].count >= minDegree) return i;
+
+        if (i > 0 && x.children[i - 1].count >= minDegree) {
+            borrowFromLeft(x, i);
+        } else if (i < x.count && x.children[i + 1].count >= minDegree) {
+            borrowFromRight(x, i);
+        } else if (i < x.count) {
+            mergeChildren(x, i);
+        } else {
+            mergeChildren(x, i - 1);
+            return i - 1;
+        }
+        return i;
+    }
+
+    private boolean removeFrom(Node x, Object key) {
+        while (true) {
+            int i = x.search(key, comparator);
+
+            if (i >= 0) {
+                if (x.isLeaf()) {
+                    x.removeKey(i);
+                    return true;
+                }
+
+                Node left = x.children[i];
+                Node right = x.children[i + 1];
+                if (left.count >= minDegree) {
+                    Object predecessor = maximum(left);
+                    x.keys[i] = predecessor;
+                    x = left;
+                    key = predecessor;
+                } else if (right.count >= minDegree) {
+                    Object successor = minimum(right);
+                    x.keys[i] = successor;
+                    x = right;
+                    key = successor;
+                } else {
+                    mergeChildren(x, i);
+                    x = left;
+                }
+                continue;
+            }
+
+            if (x.isLeaf()) return false;
+
+            x = x.children[fillChild(x, -i - 1)];
+        }
+    }
+
+    private static Object minimum(Node node) {
+        Node current = node;
+        while (!current.isLeaf()) {
+            current = current.children[0];
+        }
+        return current.keys[0];
+    }
+
+    private static Object maximum(Node node) {
+        Node current = node;
+        while (!current.isLeaf()) {
+            current = current.children[current.count];
+        }
+        return current.keys[current.count - 1];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        Node current = root;
+
+        while (true) {
+            int i = current.search(o, comparator);
+            if (i >= 0) return true;
+            if (current.isLeaf()) return false;
+            current = current.children[-i - 1];
+        }
+    }
+
+    /**
+     * In-order iterator; nodes don't know their parents, so the path is kept on a stack.
+     */
+    public class BTreeSetIterator implements Iterator<T> {
+        private final Deque<Node> nodes = new ArrayDeque<>();
+        private final Deque<Integer> positions = new ArrayDeque<>();
+
+        private BTreeSetIterator(Node root) {
+            if (root.count > 0) {
+                descendLeft(root);
+            }
+        }
+
+        private void descendLeft(Node node) {
+            for (Node current = node; current != null; current = current.isLeaf() ? null : current.children[0]) {
+                nodes.push(current);
+                positions.push(0);
+            }
+        }
+
+        public boolean hasNext() {
+            return !nodes.isEmpty();
+        }
+
+        @SuppressWarnings("unchecked")
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            Node node = nodes.peek();
+            int position = positions.pop();
+            T result = (T) node.keys[position];
+
+            if (position + 1 < node.count) {
+                positions.push(position + 1);
+            } else {
+                nodes.pop();
+            }
+            if (!node.isLeaf()) {
+                descendLeft(node.children[position + 1]);
+            }
+            return result;
+        }
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return new BTreeSetIterator(root);
+    }
+
+    @Override
+    public Object[] toArray() {
+        Object[] a = new Object[size];
+        int i = 0;
+        for (T v : this) {
+            a[i++] = v;
+        }
+        return a;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <U> U[] toArray(U[] a) {
+        if (a.length < size) {
+            return (U[]) Arrays.copyOf(toArray(), size, a.getClass());
+        }
+        System.arraycopy(toArray(), 0, a, 0, size);
+        if (a.length > size) {
+            a[size] = null;
+        }
+        return a;
+    }
+
+    @Override
+    public boolean add(T t) {
+        if (root.isFull()) {
+            Node newRoot = new Node(minDegree, false);
+            newRoot.children[0] = root;
+            splitChild(newRoot, 0);
+            root = newRoot;
+        }
+
+        Node current = root;
+        while (true) {
+            int i = current.search(t, comparator);
+            if (i >= 0) return false;
+            i = -i - 1;
+
+            if (current.isLeaf()) {
+                current.insertKey(i, t);
+                size++;
+                return true;
+            }
+
+            if (current.children[i].isFull()) {
+                splitChild(current, i);
+                int cmp = Objects.compare(t, current.keys[i], comparator);
+                if (cmp == 0) return false;
+                if (cmp > 0) i++;
+            }
+            current = current.children[i];
+        }
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        boolean removed = removeFrom(root, o);
+
+        if (root.count == 0 && !root.isLeaf()) {
+            root = root.children[0];
+        }
+        if (removed) {
+            size--;
+        }
+        return removed;
+    }
+
+    @Override
+    public boolean containsAll(Collection<?> c) {
+        for (Object o : c) {
+            if (!contains(o)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends T> c) {
+        boolean changed = false;
+        for (T o : c) {
+            changed |= add(o);
+        }
+        return changed;
+    }
+
+    @Override
+    public boolean removeAll(Collection<?> c) {
+        boolean changed = false;
+        for (Object o : c) {
+            changed |= remove(o);
+        }
+        return changed;
+    }
+
+    @Override
+    public boolean retainAll(Collection<?> c) {
+        boolean changed = false;
+        for (Object elem : toArray()) {
+            if (!c.contains(elem)) {
+                remove(elem);
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    @Override
+    public void clear() {
+        root = new Node(minDegree, true);
+        size = 0;
+    }
+}
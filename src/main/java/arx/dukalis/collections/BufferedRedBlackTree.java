@@ -0,0 +1,305 @@
+package arx.dukalis.collections;
+
+import java.util.*;
+
+/**
+ * Sorted set which collects additions and removals in a small sorted buffer and merges them
+ * into a {@link RedBlackTree} in bulk.
+ * <p>
+ * Insert - O(log n + b)
+ * Remove - O(log n + b)
+ * Lookup - O(log n + log b)
+ * Merge - O(b log(n/b + 1)) for additions, O(b log n) for removals
+ * <p>
+ * where b is the capacity of the buffer. The buffer holds only writes which change the set: an addition
+ * of an absent element or a removal of a present one, and a write cancels the pending opposite write
+ * of the same element. Once the buffer is full, or an ordered read such as iteration arrives,
+ * pending removals are applied and pending additions are inserted in ascending order, each one searched
+ * for from the place of the previous one rather than from the root.
+ * <p>
+ * Batches added by {@link #addAll} which don't fit the buffer skip it and are merged right away.
+ * <p>
+ * Point reads, {@link #contains} and {@link #size}, look into the buffer and the tree without merging.
+ * Iterators fail fast with {@link ConcurrentModificationException} if the set is modified other than
+ * through them.
+ */
+public class BufferedRedBlackTree<T> extends AbstractSet<T> {
+
+    public static final int DEFAULT_BUFFER_CAPACITY = 1024;
+
+    private static final byte ADD = 1;
+    private static final byte REMOVE = 2;
+
+    private final Comparator<Object> comparator;
+
+    /**
+     * Merged elements.
+     */
+    private final RedBlackTree<T> tree;
+
+    /**
+     * Pending writes in ascending order of their keys, at most one per key.
+     */
+    private final Object[] pendingKeys;
+    private final byte[] pendingOps;
+    private int pendingCount = 0;
+    private int pendingAdditions = 0;
+
+    /**
+     * Number of changes of the set, by which iterators detect concurrent ones.
+     */
+    private int modCount = 0;
+
+    public BufferedRedBlackTree(Comparator<Object> comparator) {
+        this(comparator, DEFAULT_BUFFER_CAPACITY);
+    }
+
+    public BufferedRedBlackTree(Comparator<Object> comparator, int bufferCapacity) {
+        if (bufferCapacity < 1) {
+            throw new IllegalArgumentException("Buffer capacity must be positive: " + bufferCapacity);
+        }
+        this.comparator = comparator;
+        this.tree = new RedBlackTree<>(comparator);
+        this.pendingKeys = new Object[bufferCapacity];
+        this.pendingOps = new byte[bufferCapacity];
+    }
+
+    /**
+     * Index of the pending write of the key, or {@code -(insertion point) - 1} if there is none.
+     */
+    private int search(Object key) {
+        int lo = 0;
+        int hi = pendingCount - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int cmp = comparator.compare(pendingKeys[mid], key);
+            if (cmp < 0) {
+                lo = mid + 1;
+            } else if (cmp > 0) {
+                hi = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(lo + 1);
+    }
+
+    /**
+     * Buffers the write, merging the buffer first if it is full.
+     */
+    private void buffer(Object key, byte op) {
+        if (pendingCount == pendingKeys.length) {
+            flush();
+        }
+
+        int index = -(search(key) + 1);
+        System.arraycopy(pendingKeys, index, pendingKeys, index + 1, pendingCount - index);
+        System.arraycopy(pendingOps, index, pendingOps, index + 1, pendingCount - index);
+        pendingKeys[index] = key;
+        pendingOps[index] = op;
+        pendingCount++;
+        if (op == ADD) {
+            pendingAdditions++;
+        }
+        modCount++;
+    }
+
+    /**
+     * Drops the pending write, which the opposite write cancels.
+     */
+    private void cancel(int index) {
+        if (pendingOps[index] == ADD) {
+            pendingAdditions--;
+        }
+        pendingCount--;
+        System.arraycopy(pendingKeys, index + 1, pendingKeys, index, pendingCount - index);
+        System.arraycopy(pendingOps, index + 1, pendingOps, index, pendingCount - index);
+        pendingKeys[pendingCount] = null;
+        modCount++;
+    }
+
+    @Override
+    public boolean add(T element) {
+        int index = search(element);
+        if (index >= 0) {
+            if (pendingOps[index] == ADD) return false;
+
+            cancel(index);
+            return true;
+        }
+
+        if (tree.contains(element)) return false;
+
+        buffer(element, ADD);
+        return true;
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        int index = search(o);
+        if (index >= 0) {
+            if (pendingOps[index] == REMOVE) return false;
+
+            cancel(index);
+            return true;
+        }
+
+        if (!tree.contains(o)) return false;
+
+        buffer(o, REMOVE);
+        return true;
+    }
+
+    /**
+     * Elements of a batch larger than the buffer are sorted and merged into the tree at once, after
+     * buffered writes, without looking up each of them first; smaller batches are buffered element by element.
+     */
+    @Override
+    public boolean addAll(Collection<? extends T> c) {
+        if (c.size() <= pendingKeys.length) {
+            return super.addAll(c);
+        }
+
+        flush();
+        Object[] sorted = c.toArray();
+        Arrays.sort(sorted, comparator);
+        @SuppressWarnings("unchecked") List<T> elements = (List<T>) Arrays.asList(sorted);
+        if (tree.addAscending(elements.iterator()) == 0) return false;
+
+        modCount++;
+        return true;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        int index = search(o);
+        if (index >= 0) {
+            return pendingOps[index] == ADD;
+        }
+        return tree.contains(o);
+    }
+
+    @Override
+    public int size() {
+        int pendingRemovals = pendingCount - pendingAdditions;
+        return tree.size() + pendingAdditions - pendingRemovals;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    @Override
+    public void clear() {
+        tree.clear();
+        Arrays.fill(pendingKeys, 0, pendingCount, null);
+        pendingCount = 0;
+        pendingAdditions = 0;
+        modCount++;
+    }
+
+    /**
+     * Number of buffered writes, which are not merged into the tree yet.
+     */
+    public int pendingWrites() {
+        return pendingCount;
+    }
+
+    /**
+     * Merges buffered writes into the tree.
+     */
+    public void flush() {
+        if (pendingCount == 0) return;
+
+        for (int i = 0; i < pendingCount; i++) {
+            if (pendingOps[i] == REMOVE) {
+                tree.remove(pendingKeys[i]);
+            }
+        }
+        if (pendingAdditions > 0) {
+            tree.addAscending(new Iterator<>() {
+                private int index = nextAddition(0);
+
+                @Override
+                public boolean hasNext() {
+                    return index < pendingCount;
+                }
+
+                @Override
+                public T next() {
+                    @SuppressWarnings("unchecked") T key = (T) pendingKeys[index];
+                    index = nextAddition(index + 1);
+                    return key;
+                }
+            });
+        }
+
+        Arrays.fill(pendingKeys, 0, pendingCount, null);
+        pendingCount = 0;
+        pendingAdditions = 0;
+        modCount++;
+    }
+
+    private int nextAddition(int from) {
+        int index = from;
+        while (index < pendingCount && pendingOps[index] != ADD) {
+            index++;
+        }
+        return index;
+    }
+
+    /**
+     * Merges buffered writes and iterates over all elements in ascending order.
+     */
+    @Override
+    public Iterator<T> iterator() {
+        flush();
+        return new Iterator<>() {
+            private final Iterator<T> elements = tree.iterator();
+            private int expectedModCount = modCount;
+
+            @Override
+            public boolean hasNext() {
+                return elements.hasNext();
+            }
+
+            @Override
+            public T next() {
+                if (modCount != expectedModCount) {
+                    throw new ConcurrentModificationException();
+                }
+                return elements.next();
+            }
+
+            @Override
+            public void remove() {
+                if (modCount != expectedModCount) {
+                    throw new ConcurrentModificationException();
+                }
+                elements.remove();
+                expectedModCount = ++modCount;
+            }
+        };
+    }
+
+    public Comparator<Object> comparator() {
+        return comparator;
+    }
+
+    /**
+     * @throws NoSuchElementException if the set is empty
+     */
+    public T first() {
+        flush();
+        return tree.first();
+    }
+
+    /**
+     * @throws NoSuchElementException if the set is empty
+     */
+    public T last() {
+        flush();
+        return tree.last();
+    }
+}
@@ -0,0 +1,220 @@
+package arx.dukalis.collections;
+
+import java.util.*;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Supplier;
+
+/**
+ * Thread-safe {@link RedBlackTree} for read-mostly workloads.
+ * <p>
+ * Lookups run under optimistic reads of a {@link StampedLock}: they take no lock at all
+ * and are retried if a writer interfered, falling back to a shared read lock only after
+ * several failed attempts. Writers take the exclusive stamp.
+ * <p>
+ * Iterators are weakly consistent: they never throw {@link ConcurrentModificationException},
+ * reflect every element which was present during the whole iteration, and may or may not reflect
+ * concurrent modifications. Each step is a separate O(log n) lookup of the next greater element.
+ */
+public class ConcurrentRedBlackTree<T> implements Collection<T> {
+
+    /**
+     * Number of optimistic attempts before falling back to the read lock.
+     */
+    private static final int OPTIMISTIC_ATTEMPTS = 3;
+
+    private final RedBlackTree<T> tree;
+
+    private final StampedLock lock = new StampedLock();
+
+    public ConcurrentRedBlackTree(Comparator<Object> comparator) {
+        this.tree = new RedBlackTree<>(comparator);
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        for (int attempt = 0; attempt < OPTIMISTIC_ATTEMPTS; attempt++) {
+            long stamp = lock.tryOptimisticRead();
+            if (stamp == 0) break;
+
+            try {
+                boolean found = tree.containsOptimistically(o);
+                if (lock.validate(stamp)) {
+                    return found;
+                }
+            } catch (RuntimeException e) {
+                // Torn read is expected to fail arbitrarily, but a consistent one has to be reported.
+                if (lock.validate(stamp)) {
+                    throw e;
+                }
+            }
+        }
+
+        long stamp = lock.readLock();
+        try {
+            return tree.contains(o);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Runs a read, which tolerates concurrent writers, under an optimistic stamp, see {@link #contains}.
+     */
+    private <R> R read(Supplier<R> reader) {
+        for (int attempt = 0; attempt < OPTIMISTIC_ATTEMPTS; attempt++) {
+            long stamp = lock.tryOptimisticRead();
+            if (stamp == 0) break;
+
+            try {
+                R result = reader.get();
+                if (lock.validate(stamp)) {
+                    return result;
+                }
+            } catch (RuntimeException e) {
+                if (lock.validate(stamp)) {
+                    throw e;
+                }
+            }
+        }
+
+        long stamp = lock.readLock();
+        try {
+            return reader.get();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private <R> R write(Supplier<R> writer) {
+        long stamp = lock.writeLock();
+        try {
+            return writer.get();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public int size() {
+        return read(tree::size);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return read(tree::isEmpty);
+    }
+
+    /**
+     * Returns the least element greater than the given one, or {@code null} if there is no such element.
+     */
+    public T higher(T t) {
+        return elementOrNull(read(() -> tree.higherOptimistically(t)));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T elementOrNull(Object element) {
+        return element == RedBlackTree.UNBOUNDED ? null : (T) element;
+    }
+
+    public class ConcurrentRedBlackTreeIterator implements Iterator<T> {
+        private Object next;
+        private Object lastReturned = RedBlackTree.UNBOUNDED;
+
+        private ConcurrentRedBlackTreeIterator() {
+            next = following(RedBlackTree.UNBOUNDED);
+        }
+
+        private Object following(Object key) {
+            return read(() -> tree.higherOptimistically(key));
+        }
+
+        public boolean hasNext() {
+            return next != RedBlackTree.UNBOUNDED;
+        }
+
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            lastReturned = next;
+            next = following(lastReturned);
+            return elementOrNull(lastReturned);
+        }
+
+        public void remove() {
+            if (lastReturned == RedBlackTree.UNBOUNDED) {
+                throw new IllegalStateException();
+            }
+            ConcurrentRedBlackTree.this.remove(lastReturned);
+            lastReturned = RedBlackTree.UNBOUNDED;
+        }
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return new ConcurrentRedBlackTreeIterator();
+    }
+
+    @Override
+    public Object[] toArray() {
+        long stamp = lock.readLock();
+        try {
+            return tree.toArray();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public <U> U[] toArray(U[] a) {
+        long stamp = lock.readLock();
+        try {
+            return tree.toArray(a);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public boolean add(T t) {
+        return write(() -> tree.add(t));
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        return write(() -> tree.remove(o));
+    }
+
+    @Override
+    public boolean containsAll(Collection<?> c) {
+        for (Object o : c) {
+            if (!contains(o)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends T> c) {
+        return write(() -> tree.addAll(c));
+    }
+
+    @Override
+    public boolean removeAll(Collection<?> c) {
+        return write(() -> tree.removeAll(c));
+    }
+
+    @Override
+    public boolean retainAll(Collection<?> c) {
+        return write(() -> tree.retainAll(c));
+    }
+
+    @Override
+    public void clear() {
+        write(() -> {
+            tree.clear();
+            return null;
+        });
+    }
+}
@@ -0,0 +1,474 @@
+package arx.dukalis.collections;
+
+import java.util.*;
+
+/**
+ * Red-black tree of primitive {@code int} keys with set-like programming interface.
+ * <p>
+ * Insert - O(log n)
+ * Lookup - O(log n)
+ * Remove - O(log n)
+ * <p>
+ * Mirrors {@link RedBlackTree}, but keys are stored unboxed and compared natively,
+ * so lookups don't allocate and don't go through a {@link Comparator}.
+ */
+public class IntRedBlackTree {
+
+    /**
+     * Root of red-black tree.
+     */
+    private Node root = null;
+
+    /**
+     * The size of the IntRedBlackTree (the number of elements it contains).
+     */
+    private int size = 0;
+
+    public IntRedBlackTree() {
+    }
+
+    /**
+     * Color of red-black tree.
+     */
+    private enum Color {RED, BLACK}
+
+    /**
+     * Node of red-black tree.
+     */
+    private static final class Node {
+        int key;
+        Node parent;
+        Node leftChild;
+        Node rightChild;
+        Color color;
+
+        public Node(int key,
+                    Node parent,
+                    Node leftChild,
+                    Node rightChild,
+                    Color color) {
+            this.key = key;
+            this.parent = parent;
+            this.leftChild = leftChild;
+            this.rightChild = rightChild;
+            this.color = color;
+        }
+
+        Node findGrandparent() {
+            if (this.parent == null) return null;
+            return this.parent.parent;
+        }
+
+        Node findUncle() {
+            Node grandpa = findGrandparent();
+            if (grandpa == null) return null;
+            if (this.parent == grandpa.leftChild) {
+                return grandpa.rightChild;
+            }
+            return grandpa.leftChild;
+        }
+    }
+
+    /**
+     * Absent children are leaves, and leaves are black.
+     */
+    private static boolean isRed(Node node) {
+        return node != null && node.color == Color.RED;
+    }
+
+    private static Node siblingOf(Node node, Node parent) {
+        if (node == parent.leftChild) return parent.rightChild;
+        return parent.leftChild;
+    }
+
+    private void leftRotate(Node u) {
+        if (u == null) return;
+        if (u.rightChild == null) return;
+
+        Node v = u.rightChild;
+        u.rightChild = v.leftChild;
+
+        if (v.leftChild != null) {
+            v.leftChild.parent = u;
+        }
+
+        v.parent = u.parent;
+        if (u.parent == null) {
+            root = v;
+        } else {
+            if (u == u.parent.leftChild) {
+                u.parent.leftChild = v;
+            } else {
+                u.parent.rightChild = v;
+            }
+        }
+
+        v.leftChild = u;
+        u.parent = v;
+    }
+
+    private void rightRotate(Node u) {
+        if (u == null) return;
+        if (u.leftChild == null) return;
+
+        Node v = u.leftChild;
+        u.leftChild = v.rightChild;
+
+        if (v.rightChild != null) {
+            v.rightChild.parent = u;
+        }
+
+        v.parent = u.parent;
+        if (u.parent == null) {
+            root = v;
+        } else {
+            if (u == u.parent.leftChild) {
+                u.parent.leftChild = v;
+            } else {
+                u.parent.rightChild = v;
+            }
+        }
+
+        v.rightChild = u;
+        u.parent = v;
+    }
+
+    private void insertFixup(Node node) {
+        insertCaseNo1(node);
+    }
+
+    private void insertCaseNo1(Node z) {
+        if (z == null) return;
+
+        if (z.parent == null) {
+            z.color = Color.BLACK;
+        } else {
+            insertCaseNo2(z);
+        }
+    }
+
+    private void insertCaseNo2(Node z) {
+        if (z.parent.color != Color.BLACK) {
+            insertCaseNo3(z);
+        }
+    }
+
+    private void insertCaseNo3(Node z) {
+        Node u = z.findUncle();
+
+        if (isRed(u)) {
+            z.parent.color = Color.BLACK;
+            u.color = Color.BLACK;
+
+            Node g = z.findGrandparent();
+            Objects.requireNonNull(g).color = Color.RED;
+            insertCaseNo1(g);
+        } else {
+            insertCaseNo4(z);
+        }
+    }
+
+    private void insertCaseNo4(Node node) {
+        Node z = node;
+        Node g = Objects.requireNonNull(z.findGrandparent());
+
+        if (z == z.parent.rightChild && z.parent == g.leftChild) {
+            leftRotate(z.parent);
+            z = z.leftChild;
+        } else if (z == z.parent.leftChild && z.parent == g.rightChild) {
+            rightRotate(z.parent);
+            z = z.rightChild;
+        }
+
+        insertCaseNo5(z);
+    }
+
+    private void insertCaseNo5(Node z) {
+        Node g = Objects.requireNonNull(z.findGrandparent());
+
+        z.parent.color = Color.BLACK;
+        g.color = Color.RED;
+
+        if (z == z.parent.leftChild && z.parent == g.leftChild) {
+            rightRotate(g);
+        } else {
+            leftRotate(g);
+        }
+    }
+
+    private void removeImpl(Node current) {
+        Node removable;
+        if (current.leftChild == null || current.rightChild == null) {
+            removable = current;
+        } else {
+            removable = successorOf(current);
+        }
+
+        Node child;
+        if (removable.leftChild != null) {
+            child = removable.leftChild;
+        } else {
+            child = removable.rightChild;
+        }
+
+        Node parent = removable.parent;
+        if (child != null) {
+            child.parent = parent;
+        }
+
+        if (parent == null) {
+            root = child;
+        } else if (removable == parent.leftChild) {
+            parent.leftChild = child;
+        } else {
+            parent.rightChild = child;
+        }
+
+        if (removable != current) {
+            current.key = removable.key;
+        }
+
+        if (removable.color == Color.BLACK) {
+            if (isRed(child)) {
+                child.color = Color.BLACK;
+            } else {
+                removeFixup(child, parent);
+            }
+        }
+
+        removable.parent = null;
+        removable.leftChild = null;
+        removable.rightChild = null;
+    }
+
+    private void removeFixup(Node x, Node parent) {
+        removeCaseNo1(x, parent);
+    }
+
+    private void removeCaseNo1(Node z, Node parent) {
+        if (parent != null) {
+            removeCaseNo2(z, parent);
+        }
+    }
+
+    private void removeCaseNo2(Node z, Node parent) {
+        Node s = siblingOf(z, parent);
+        if (isRed(s)) {
+            parent.color = Color.RED;
+            s.color = Color.BLACK;
+
+            if (z == parent.leftChild) {
+                leftRotate(parent);
+            } else {
+                rightRotate(parent);
+            }
+        }
+        removeCaseNo3(z, parent);
+    }
+
+    private void removeCaseNo3(Node z, Node parent) {
+        Node s = siblingOf(z, parent);
+
+        if (!isRed(parent) &&
+                !isRed(s) &&
+                !isRed(s.leftChild) &&
+                !isRed(s.rightChild)) {
+            s.color = Color.RED;
+            removeCaseNo1(parent, parent.parent);
+        } else {
+            removeCaseNo4(z, parent);
+        }
+    }
+
+    private void removeCaseNo4(Node z, Node parent) {
+        Node s = siblingOf(z, parent);
+
+        if (isRed(parent) &&
+                !isRed(s) &&
+                !isRed(s.leftChild) &&
+                !isRed(s.rightChild)) {
+            s.color = Color.RED;
+            parent.color = Color.BLACK;
+        } else {
+            removeCaseNo5(z, parent);
+        }
+    }
+
+    private void removeCaseNo5(Node z, Node parent) {
+        Node s = siblingOf(z, parent);
+
+        if (!isRed(s)) {
+            if (z == parent.leftChild &&
+                    !isRed(s.rightChild) &&
+                    isRed(s.leftChild)) {
+                s.color = Color.RED;
+                s.leftChild.color = Color.BLACK;
+                rightRotate(s);
+            } else if (z == parent.rightChild &&
+                    !isRed(s.leftChild) &&
+                    isRed(s.rightChild)) {
+                s.color = Color.RED;
+                s.rightChild.color = Color.BLACK;
+                leftRotate(s);
+            }
+        }
+        removeCaseNo6(z, parent);
+    }
+
+    private void removeCaseNo6(Node z, Node parent) {
+        Node s = siblingOf(z, parent);
+
+        s.color = parent.color;
+        parent.color = Color.BLACK;
+
+        if (z == parent.leftChild) {
+            s.rightChild.color = Color.BLACK;
+            leftRotate(parent);
+        } else {
+            s.leftChild.color = Color.BLACK;
+            rightRotate(parent);
+        }
+    }
+
+    private Node minimum(Node node) {
+        if (node == null) return null;
+
+        Node current = node;
+        while (current.leftChild != null) {
+            current = current.leftChild;
+        }
+
+        return current;
+    }
+
+    private Node successorOf(Node node) {
+        if (node == null) return null;
+
+        if (node.rightChild != null) {
+            return minimum(node.rightChild);
+        }
+
+        Node current = node;
+        Node upward = current.parent;
+
+        while (upward != null && current == upward.rightChild) {
+            current = upward;
+            upward = current.parent;
+        }
+
+        return upward;
+    }
+
+    private Node find(int key) {
+        Node current = root;
+
+        while (current != null) {
+            if (key < current.key) {
+                current = current.leftChild;
+            } else if (key > current.key) {
+                current = current.rightChild;
+            } else {
+                return current;
+            }
+        }
+
+        return null;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return root == null;
+    }
+
+    public boolean contains(int key) {
+        return find(key) != null;
+    }
+
+    public class IntRedBlackTreeIterator implements PrimitiveIterator.OfInt {
+        private Node next;
+
+        private IntRedBlackTreeIterator(Node root) {
+            next = minimum(root);
+        }
+
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        public int nextInt() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            int result = next.key;
+            next = successorOf(next);
+            return result;
+        }
+    }
+
+    public PrimitiveIterator.OfInt iterator() {
+        return new IntRedBlackTreeIterator(root);
+    }
+
+    public int[] toArray() {
+        int[] a = new int[size];
+        int i = 0;
+        for (Node n = minimum(root); n != null; n = successorOf(n)) {
+            a[i++] = n.key;
+        }
+        return a;
+    }
+
+    /**
+     * Adds key to the tree with a single descent.
+     *
+     * @return {@code true} if the tree did not already contain the key
+     */
+    public boolean add(int key) {
+        Node current = root;
+        Node previous = null;
+
+        while (current != null) {
+            previous = current;
+
+            if (key < current.key) {
+                current = current.leftChild;
+            } else if (key > current.key) {
+                current = current.rightChild;
+            } else {
+                return false;
+            }
+        }
+
+        Node inserting = new Node(key, previous, null, null, Color.RED);
+
+        if (previous == null) {
+            root = inserting;
+        } else if (key < previous.key) {
+            previous.leftChild = inserting;
+        } else {
+            previous.rightChild = inserting;
+        }
+
+        insertFixup(inserting);
+        size++;
+        return true;
+    }
+
+    public boolean remove(int key) {
+        Node node = find(key);
+        if (node == null) {
+            return false;
+        }
+        removeImpl(node);
+        size--;
+        return true;
+    }
+
+    public void clear() {
+        root = null;
+        size = 0;
+    }
+}
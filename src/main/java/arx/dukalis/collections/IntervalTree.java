@@ -0,0 +1,229 @@
+package arx.dukalis.collections;
+
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.ToLongFunction;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Set of closed intervals {@code [start, end]} on the balancing engine of {@link RedBlackTree},
+ * augmented for overlap queries.
+ * <p>
+ * Insert - O(log n)
+ * Remove - O(log n)
+ * Overlap query - O((k + 1) log n) for k results
+ * <p>
+ * Elements are ordered by start, then by end, then by the tie-breaking comparator, which tells apart
+ * elements with the same endpoints. Every node also keeps the greatest end of its subtree; insertion,
+ * removal and rotations of the engine update it along the way, so queries skip subtrees which end
+ * before the queried range.
+ * <p>
+ * Results of {@link #overlapping} and {@link #stabbing} are lazy streams in ascending order, which walk
+ * the tree as they are consumed and fail fast with {@link ConcurrentModificationException}
+ * if the tree is modified meanwhile.
+ */
+public class IntervalTree<T> extends AbstractSet<T> {
+
+    private final ToLongFunction<? super T> start;
+    private final ToLongFunction<? super T> end;
+
+    /**
+     * Balancing engine, whose nodes are {@link IntervalNode}s.
+     */
+    private final RedBlackTree<T> tree;
+
+    /**
+     * @param start      start of an element's interval
+     * @param end        end of an element's interval, inclusive
+     * @param tieBreaker order of elements with equal endpoints
+     */
+    public IntervalTree(ToLongFunction<? super T> start, ToLongFunction<? super T> end, Comparator<Object> tieBreaker) {
+        this.start = start;
+        this.end = end;
+
+        Comparator<Object> comparator = (a, b) -> {
+            @SuppressWarnings("unchecked") T x = (T) a;
+            @SuppressWarnings("unchecked") T y = (T) b;
+
+            int cmp = Long.compare(start.applyAsLong(x), start.applyAsLong(y));
+            if (cmp != 0) return cmp;
+            cmp = Long.compare(end.applyAsLong(x), end.applyAsLong(y));
+            if (cmp != 0) return cmp;
+            return tieBreaker.compare(a, b);
+        };
+        this.tree = new RedBlackTree<>(comparator, false, true) {
+            @Override
+            Node<T> newNode(T key, Node<T> parent) {
+                return new IntervalNode<>(key, parent, start.applyAsLong(key), end.applyAsLong(key));
+            }
+        };
+    }
+
+    /**
+     * Tree of plain intervals, which are equal if their endpoints are.
+     */
+    public static IntervalTree<Interval> ofIntervals() {
+        return new IntervalTree<>(Interval::start, Interval::end, (a, b) -> 0);
+    }
+
+    public record Interval(long start, long end) {
+        public Interval {
+            if (start > end) {
+                throw new IllegalArgumentException("Interval ends before it starts: [" + start + ", " + end + "]");
+            }
+        }
+    }
+
+    /**
+     * Node of red-black tree, which also holds endpoints of its interval and the greatest end in its subtree.
+     */
+    private static final class IntervalNode<T> extends RedBlackTree.Node<T> {
+        long start;
+        long end;
+        long maxEnd;
+
+        IntervalNode(T key, RedBlackTree.Node<T> parent, long start, long end) {
+            super(key, parent);
+            this.start = start;
+            this.end = end;
+            this.maxEnd = end;
+        }
+
+        @Override
+        void takeOver(RedBlackTree.Node<T> other) {
+            super.takeOver(other);
+            IntervalNode<T> node = intervalNode(other);
+            start = node.start;
+            end = node.end;
+        }
+
+        @Override
+        void update() {
+            long max = end;
+            if (leftChild != null) {
+                max = Math.max(max, intervalNode(leftChild).maxEnd);
+            }
+            if (rightChild != null) {
+                max = Math.max(max, intervalNode(rightChild).maxEnd);
+            }
+            maxEnd = max;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> IntervalNode<T> intervalNode(RedBlackTree.Node<T> node) {
+        return (IntervalNode<T>) node;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the element's interval ends before it starts
+     */
+    @Override
+    public boolean add(T element) {
+        if (start.applyAsLong(element) > end.applyAsLong(element)) {
+            throw new IllegalArgumentException("Interval of " + element + " ends before it starts");
+        }
+        return tree.add(element);
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        return tree.remove(o);
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return tree.contains(o);
+    }
+
+    @Override
+    public int size() {
+        return tree.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return tree.isEmpty();
+    }
+
+    @Override
+    public void clear() {
+        tree.clear();
+    }
+
+    /**
+     * Iterates over all elements in ascending order.
+     */
+    @Override
+    public Iterator<T> iterator() {
+        return tree.iterator();
+    }
+
+    /**
+     * Elements whose intervals share at least one point with {@code [from, to]}, in ascending order.
+     */
+    public Stream<T> overlapping(long from, long to) {
+        if (from > to) {
+            throw new IllegalArgumentException("from > to");
+        }
+        return StreamSupport.stream(new OverlapSpliterator(from, to), false);
+    }
+
+    /**
+     * Elements whose intervals contain the point, in ascending order.
+     */
+    public Stream<T> stabbing(long point) {
+        return overlapping(point, point);
+    }
+
+    /**
+     * In-order walk over the nodes which may overlap the range, with an explicit stack of pending ancestors.
+     * <p>
+     * A subtree is skipped whole if its greatest end is below the range, and the walk stops at the first
+     * node which starts above the range, as every node after it does too.
+     */
+    private final class OverlapSpliterator extends Spliterators.AbstractSpliterator<T> {
+        private final long from;
+        private final long to;
+        private final ArrayDeque<IntervalNode<T>> pending = new ArrayDeque<>();
+        private final int expectedModCount = tree.modCount();
+
+        OverlapSpliterator(long from, long to) {
+            super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL);
+            this.from = from;
+            this.to = to;
+            pushLeftSpine(tree.rootNode());
+        }
+
+        private void pushLeftSpine(RedBlackTree.Node<T> node) {
+            for (IntervalNode<T> current = intervalNode(node);
+                 current != null && current.maxEnd >= from;
+                 current = intervalNode(current.leftChild)) {
+                pending.push(current);
+            }
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            while (!pending.isEmpty()) {
+                if (tree.modCount() != expectedModCount) {
+                    throw new ConcurrentModificationException();
+                }
+
+                IntervalNode<T> node = pending.pop();
+                if (node.start > to) {
+                    pending.clear();
+                    return false;
+                }
+
+                pushLeftSpine(node.rightChild);
+                if (node.end >= from) {
+                    action.accept(node.key);
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
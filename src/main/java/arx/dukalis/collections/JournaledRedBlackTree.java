@@ -0,0 +1,653 @@
+package arx.dukalis.collections;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.zip.CRC32C;
+
+/**
+ * Durable {@link RedBlackTree}, which survives crashes by journaling every modification to a write-ahead log.
+ * <p>
+ * The tree lives in a directory of two files: {@code checkpoint.<generation>}, a snapshot written by
+ * {@link RedBlackTree#writeSnapshot}, and {@code journal}, an append-only log of modifications made since.
+ * A modification returns once its record is forced to disk. Records are appended to an in-memory batch,
+ * and whichever waiting thread gets to the journal first writes and forces the whole batch for everyone
+ * who appended to it, so concurrent writers, as well as elements of {@link #addAll}, {@link #removeAll}
+ * and {@link #retainAll}, share one {@link FileChannel#force}.
+ * <p>
+ * Once the journal grows beyond the checkpoint threshold, the tree is atomically renamed into a checkpoint
+ * of the next generation, and the journal is truncated and restarted with that generation. {@link #open}
+ * loads the latest checkpoint and replays the journal only if it belongs to the same generation, so a crash
+ * between the two steps doesn't replay modifications which the checkpoint already has. A torn record
+ * at the end of the journal, left by a crash in the middle of a write, is truncated along with everything after it.
+ * <p>
+ * Journal layout, big-endian:
+ * <pre>
+ * int    magic "RBTJ"
+ * int    format version
+ * long   generation of the checkpoint the journal continues
+ * int    length of the operation and the key, followed by the operation byte and the key encoded by
+ *        {@link KeyCodec}, then CRC32C of the operation and the key, for each record
+ * </pre>
+ * Access is serialized by a lock, and iterators are weakly consistent, like those of {@link ConcurrentRedBlackTree}.
+ * A checkpoint holds the lock while it writes the snapshot.
+ */
+public class JournaledRedBlackTree<T> implements Collection<T>, Closeable {
+
+    private static final int MAGIC = 0x5242544A;
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 2 * Integer.BYTES + Long.BYTES;
+    private static final int RECORD_OVERHEAD = 2 * Integer.BYTES;
+    private static final int BUFFER_BYTES = 1 << 16;
+
+    private static final byte ADD = 1;
+    private static final byte REMOVE = 2;
+    private static final byte CLEAR = 3;
+
+    /**
+     * Journal size which triggers a checkpoint by default.
+     */
+    public static final long DEFAULT_CHECKPOINT_BYTES = 64L << 20;
+
+    private final Path directory;
+    private final KeyCodec<T> codec;
+    private final long checkpointBytes;
+    private final RedBlackTree<T> tree;
+    private final FileChannel journal;
+
+    /**
+     * Generation of the latest checkpoint, 0 if there is none yet.
+     */
+    private long generation;
+
+    /**
+     * Guards the tree and the pending batch.
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * Guards writes to the journal and checkpoints; always taken before {@link #lock}.
+     */
+    private final ReentrantLock journalLock = new ReentrantLock();
+
+    private final CRC32C checksum = new CRC32C();
+
+    /**
+     * Records appended since the last write to the journal.
+     */
+    private ByteBuffer pending = ByteBuffer.allocateDirect(BUFFER_BYTES);
+
+    /**
+     * Buffer which the next writer of the journal swaps with {@link #pending}.
+     */
+    private ByteBuffer spare = ByteBuffer.allocateDirect(BUFFER_BYTES);
+
+    /**
+     * Total number of bytes of records ever appended, which serves as a ticket of a modification.
+     */
+    private long appended = 0;
+
+    /**
+     * Number of appended bytes which are on disk, in the journal or in the checkpoint.
+     */
+    private volatile long durable = 0;
+
+    /**
+     * Failure of a journal write, or of restarting the journal after a checkpoint, after which the tree
+     * refuses modifications, as records may be lost or the journal may have no header.
+     */
+    private volatile IOException failure = null;
+
+    /**
+     * Journal size at which the next commit takes a checkpoint; a failed checkpoint postpones it.
+     */
+    private long nextCheckpoint;
+
+    private JournaledRedBlackTree(Path directory, KeyCodec<T> codec, long checkpointBytes,
+                                  RedBlackTree<T> tree, FileChannel journal, long generation) {
+        this.directory = directory;
+        this.codec = codec;
+        this.checkpointBytes = checkpointBytes;
+        this.tree = tree;
+        this.journal = journal;
+        this.generation = generation;
+        this.nextCheckpoint = checkpointBytes;
+    }
+
+    private static Path checkpointPath(Path directory, long generation) {
+        return directory.resolve("checkpoint." + generation);
+    }
+
+    public static <T> JournaledRedBlackTree<T> open(Path directory, Comparator<Object> comparator,
+                                                    KeyCodec<T> codec) throws IOException {
+        return open(directory, comparator, codec, DEFAULT_CHECKPOINT_BYTES);
+    }
+
+    /**
+     * Opens the tree in the directory, creating it if necessary, and recovers its contents.
+     *
+     * @param checkpointBytes journal size which triggers a checkpoint
+     * @throws IOException if the checkpoint is corrupt or the journal is not a journal of a tree
+     */
+    public static <T> JournaledRedBlackTree<T> open(Path directory, Comparator<Object> comparator,
+                                                    KeyCodec<T> codec, long checkpointBytes) throws IOException {
+        Files.createDirectories(directory);
+        Files.deleteIfExists(directory.resolve("checkpoint.tmp"));
+
+        long generation = 0;
+        List<Long> stale = new ArrayList<>();
+        try (DirectoryStream<Path> checkpoints = Files.newDirectoryStream(directory, "checkpoint.*")) {
+            for (Path checkpoint : checkpoints) {
+                long found = Long.parseLong(checkpoint.getFileName().toString().substring("checkpoint.".length()));
+                stale.add(found);
+                generation = Math.max(found, generation);
+            }
+        } catch (NumberFormatException e) {
+            throw new IOException("Unexpected checkpoint file", e);
+        }
+
+        RedBlackTree<T> tree = generation > 0
+                ? RedBlackTree.readSnapshot(checkpointPath(directory, generation), comparator, codec)
+                : new RedBlackTree<>(comparator);
+
+        Path journalPath = directory.resolve("journal");
+        boolean created = Files.notExists(journalPath);
+        FileChannel journal = FileChannel.open(journalPath,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            if (hasTornHeader(journal)) {
+                // Left by a crash while the journal was restarted, after the checkpoint it continues was taken.
+                restartJournal(journal, generation);
+                if (created) {
+                    forceDirectory(directory);
+                }
+            } else {
+                replay(journal, tree, codec, generation);
+            }
+            journal.position(journal.size());
+        } catch (IOException | RuntimeException e) {
+            journal.close();
+            throw e;
+        }
+
+        // Checkpoints left by a crash right after a newer one was taken.
+        for (long old : stale) {
+            if (old != generation) {
+                Files.deleteIfExists(checkpointPath(directory, old));
+            }
+        }
+
+        return new JournaledRedBlackTree<>(directory, codec, checkpointBytes, tree, journal, generation);
+    }
+
+    /**
+     * Whether the journal is shorter than a header, and what it has matches the magic and the version,
+     * as a header cut short by a crash does.
+     */
+    private static boolean hasTornHeader(FileChannel journal) throws IOException {
+        long size = journal.size();
+        if (size >= HEADER_BYTES) return false;
+
+        ByteBuffer found = ByteBuffer.allocate((int) size);
+        while (found.hasRemaining()) {
+            if (journal.read(found, found.position()) < 0) break;
+        }
+        ByteBuffer expected = ByteBuffer.allocate(HEADER_BYTES).putInt(MAGIC).putInt(VERSION);
+        int compared = (int) Math.min(size, expected.position());
+        return found.flip().limit(compared).equals(expected.flip().limit(compared));
+    }
+
+    /**
+     * Forces the directory itself, so that files created or renamed in it survive a crash.
+     */
+    private static void forceDirectory(Path directory) throws IOException {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        }
+    }
+
+    /**
+     * Truncates the journal to a header of the given generation.
+     */
+    private static void restartJournal(FileChannel journal, long generation) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).putInt(MAGIC).putInt(VERSION).putLong(generation).flip();
+        journal.truncate(0);
+        while (header.hasRemaining()) {
+            journal.write(header, header.position());
+        }
+        journal.position(HEADER_BYTES);
+        journal.force(false);
+    }
+
+    /**
+     * Applies records of the journal to the tree, truncating the journal at the first incomplete or corrupt one.
+     * A journal of an older generation is restarted instead, as the checkpoint has its modifications.
+     */
+    private static <T> void replay(FileChannel journal, RedBlackTree<T> tree, KeyCodec<T> codec,
+                                   long generation) throws IOException {
+        Input input = new Input(journal);
+
+        if (!input.fill(HEADER_BYTES) || input.buffer.getInt() != MAGIC) {
+            throw new IOException("Not a red-black tree journal");
+        }
+        int version = input.buffer.getInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported journal version " + version);
+        }
+        long journalGeneration = input.buffer.getLong();
+        if (journalGeneration > generation) {
+            throw new IOException("Journal of generation " + journalGeneration
+                    + " continues a missing checkpoint, the latest is " + generation);
+        }
+        if (journalGeneration < generation) {
+            restartJournal(journal, generation);
+            return;
+        }
+
+        long position = HEADER_BYTES;
+        CRC32C checksum = new CRC32C();
+        while (input.fill(Integer.BYTES)) {
+            int length = input.buffer.getInt(input.buffer.position());
+            if (length < 1 || position + RECORD_OVERHEAD + length > journal.size()
+                    || !input.fill(RECORD_OVERHEAD + length)) break;
+
+            ByteBuffer buffer = input.buffer;
+            int start = buffer.position() + Integer.BYTES;
+            checksum.reset();
+            checksum.update(buffer.slice(start, length));
+            if (buffer.getInt(start + length) != (int) checksum.getValue()) break;
+
+            byte operation = buffer.get(start);
+            ByteBuffer key = buffer.slice(start + 1, length - 1);
+            switch (operation) {
+                case ADD -> tree.add(codec.decode(key));
+                case REMOVE -> tree.remove(codec.decode(key));
+                case CLEAR -> tree.clear();
+                default -> throw new IOException("Corrupt journal: unknown operation " + operation);
+            }
+
+            buffer.position(start + length + Integer.BYTES);
+            position += RECORD_OVERHEAD + length;
+        }
+
+        if (position < journal.size()) {
+            journal.truncate(position);
+            journal.force(false);
+        }
+    }
+
+    /**
+     * Buffered sequential reader of the journal.
+     */
+    private static final class Input {
+        private final FileChannel channel;
+        private ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES).limit(0);
+
+        Input(FileChannel channel) throws IOException {
+            this.channel = channel.position(0);
+        }
+
+        /**
+         * Reads from the channel until the buffer has at least the given number of bytes available.
+         *
+         * @return {@code false} if the channel ended before that
+         */
+        boolean fill(int bytes) throws IOException {
+            if (buffer.remaining() >= bytes) return true;
+
+            if (buffer.capacity() < bytes) {
+                buffer = ByteBuffer.allocateDirect(bytes).put(buffer);
+            } else {
+                buffer.compact();
+            }
+            while (buffer.position() < bytes) {
+                if (channel.read(buffer) < 0) {
+                    buffer.flip();
+                    return false;
+                }
+            }
+            buffer.flip();
+            return true;
+        }
+    }
+
+    /**
+     * Appends a record to the pending batch and applies the change to the tree, discarding the record
+     * if the tree didn't change or the change failed; must be called under {@link #lock}.
+     * <p>
+     * Encoding comes first, so that a failing codec leaves the tree untouched.
+     */
+    private boolean journaled(byte operation, T key, Predicate<T> change) {
+        int mark = pending.position();
+        long before = appended;
+
+        boolean changed = false;
+        try {
+            append(operation, key);
+            changed = change.test(key);
+        } finally {
+            if (!changed) {
+                pending.position(mark);
+                appended = before;
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * @throws NullPointerException if the key of an addition or a removal is null, as only clearing has no key
+     */
+    private void append(byte operation, T key) {
+        if (operation != CLEAR) {
+            Objects.requireNonNull(key, "Journaled tree doesn't hold null");
+        }
+
+        int length = 1 + (operation == CLEAR ? 0 : codec.encodedSize(key));
+        int bytes = RECORD_OVERHEAD + length;
+        if (pending.remaining() < bytes) {
+            ByteBuffer larger = ByteBuffer.allocateDirect(Math.max(pending.capacity() * 2, pending.position() + bytes));
+            pending.flip();
+            pending = larger.put(pending);
+        }
+
+        pending.putInt(length);
+        int start = pending.position();
+        pending.put(operation);
+        if (operation != CLEAR) {
+            codec.encode(key, pending);
+        }
+        if (pending.position() - start != length) {
+            throw new IllegalStateException("Codec wrote " + (pending.position() - start - 1)
+                    + " bytes instead of " + (length - 1) + " for " + key);
+        }
+
+        checksum.reset();
+        checksum.update(pending.slice(start, length));
+        pending.putInt((int) checksum.getValue());
+
+        appended += bytes;
+    }
+
+    /**
+     * Waits until records up to the ticket are on disk, writing the pending batch unless another thread does.
+     */
+    private void commit(long ticket) {
+        if (durable >= ticket) return;
+
+        journalLock.lock();
+        try {
+            if (durable >= ticket) return;
+            checkFailure();
+
+            ByteBuffer batch;
+            long target;
+            lock.lock();
+            try {
+                batch = pending;
+                pending = spare;
+                target = appended;
+            } finally {
+                lock.unlock();
+            }
+
+            try {
+                batch.flip();
+                while (batch.hasRemaining()) {
+                    journal.write(batch);
+                }
+                journal.force(false);
+            } catch (IOException e) {
+                failure = e;
+                throw new UncheckedIOException(e);
+            } finally {
+                spare = batch.clear();
+            }
+            durable = target;
+
+            try {
+                if (journal.position() >= nextCheckpoint) {
+                    checkpoint();
+                }
+            } catch (IOException e) {
+                // The batch is durable regardless. A checkpoint which failed before replacing the previous one
+                // is retried once the journal grows further, and one which failed after it has set the failure.
+                nextCheckpoint += checkpointBytes;
+            }
+        } finally {
+            journalLock.unlock();
+        }
+    }
+
+    private void checkFailure() {
+        if (failure != null) {
+            throw new UncheckedIOException("Journal write failed earlier", failure);
+        }
+    }
+
+    /**
+     * Runs a modification under the lock, commits its records and returns its result.
+     */
+    private boolean modify(Predicate<RedBlackTree<T>> modification) {
+        long ticket;
+        boolean changed;
+        lock.lock();
+        try {
+            checkFailure();
+            long before = appended;
+            changed = modification.test(tree);
+            ticket = appended == before ? 0 : appended;
+        } finally {
+            lock.unlock();
+        }
+
+        commit(ticket);
+        return changed;
+    }
+
+    /**
+     * Writes the tree to a new checkpoint and truncates the journal, waiting for writes in progress.
+     *
+     * @throws IOException if the checkpoint couldn't be written, in which case the journal stays as it is,
+     *                     or if it failed after replacing the previous checkpoint, in which case the tree
+     *                     refuses further modifications until it is reopened
+     */
+    public void checkpoint() throws IOException {
+        journalLock.lock();
+        try {
+            lock.lock();
+            try {
+                checkFailure();
+
+                Path temporary = directory.resolve("checkpoint.tmp");
+                tree.writeSnapshot(temporary, codec);
+                Files.move(temporary, checkpointPath(directory, generation + 1), StandardCopyOption.ATOMIC_MOVE);
+                // The journal must not be restarted, nor the previous checkpoint deleted, before the rename is
+                // on disk, or a crash could leave a journal of the new generation with no checkpoint to continue.
+                forceDirectory(directory);
+
+                // Everything appended so far is in the checkpoint, written or not.
+                pending.clear();
+                durable = appended;
+                try {
+                    restartJournal(journal, generation + 1);
+                    generation++;
+                    nextCheckpoint = checkpointBytes;
+                    Files.deleteIfExists(checkpointPath(directory, generation - 1));
+                } catch (IOException e) {
+                    // The journal may have lost its header, so it must not be written anymore; open() loads
+                    // the new checkpoint and restarts a journal of an older generation or with a torn header.
+                    failure = e;
+                    throw e;
+                }
+            } finally {
+                lock.unlock();
+            }
+        } finally {
+            journalLock.unlock();
+        }
+    }
+
+    /**
+     * Number of bytes in the journal, which a checkpoint truncates.
+     */
+    public long journalSize() throws IOException {
+        return journal.size();
+    }
+
+    /**
+     * Closes the journal; every modification which has returned is already on disk.
+     */
+    @Override
+    public void close() throws IOException {
+        journalLock.lock();
+        try {
+            journal.close();
+        } finally {
+            journalLock.unlock();
+        }
+    }
+
+    private <R> R read(Supplier<R> reader) {
+        lock.lock();
+        try {
+            return reader.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        return read(tree::size);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return read(tree::isEmpty);
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return read(() -> tree.contains(o));
+    }
+
+    @Override
+    public boolean containsAll(Collection<?> c) {
+        return read(() -> tree.containsAll(c));
+    }
+
+    @Override
+    public Object[] toArray() {
+        return read(tree::toArray);
+    }
+
+    @Override
+    public <U> U[] toArray(U[] a) {
+        return read(() -> tree.toArray(a));
+    }
+
+    /**
+     * Weakly consistent iterator, each step of which is a separate O(log n) lookup of the next greater element.
+     */
+    @Override
+    public Iterator<T> iterator() {
+        return new Iterator<>() {
+            private T next = read(() -> tree.isEmpty() ? null : tree.first());
+            private T lastReturned = null;
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public T next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                lastReturned = next;
+                next = read(() -> tree.higher(lastReturned));
+                return lastReturned;
+            }
+
+            @Override
+            public void remove() {
+                if (lastReturned == null) {
+                    throw new IllegalStateException();
+                }
+                JournaledRedBlackTree.this.remove(lastReturned);
+                lastReturned = null;
+            }
+        };
+    }
+
+    @Override
+    public boolean add(T t) {
+        return modify(tree -> journaled(ADD, t, tree::add));
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean remove(Object o) {
+        return modify(tree -> journaled(REMOVE, (T) o, tree::remove));
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends T> c) {
+        return modify(tree -> {
+            boolean changed = false;
+            for (T t : c) {
+                changed |= journaled(ADD, t, tree::add);
+            }
+            return changed;
+        });
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean removeAll(Collection<?> c) {
+        return modify(tree -> {
+            boolean changed = false;
+            for (Object o : c) {
+                changed |= journaled(REMOVE, (T) o, tree::remove);
+            }
+            return changed;
+        });
+    }
+
+    @Override
+    public boolean retainAll(Collection<?> c) {
+        return modify(tree -> {
+            List<T> removed = new ArrayList<>();
+            for (T key : tree) {
+                if (!c.contains(key)) {
+                    removed.add(key);
+                }
+            }
+            for (T key : removed) {
+                journaled(REMOVE, key, tree::remove);
+            }
+            return !removed.isEmpty();
+        });
+    }
+
+    @Override
+    public void clear() {
+        modify(tree -> journaled(CLEAR, null, key -> {
+            if (tree.isEmpty()) return false;
+            tree.clear();
+            return true;
+        }));
+    }
+}
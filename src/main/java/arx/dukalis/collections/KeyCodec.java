@@ -0,0 +1,122 @@
+package arx.dukalis.collections;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Binary encoding of keys for snapshots of {@link RedBlackTree} and for {@link MappedSortedIndex}.
+ */
+public interface KeyCodec<T> {
+
+    /**
+     * Number of bytes {@link #encode} writes for the key.
+     */
+    int encodedSize(T key);
+
+    /**
+     * Writes exactly {@link #encodedSize} bytes of the key at the buffer's position.
+     */
+    void encode(T key, ByteBuffer target);
+
+    /**
+     * Reads a key from all remaining bytes of the buffer, which holds exactly one encoded key.
+     */
+    T decode(ByteBuffer source);
+
+    /**
+     * Number of bytes of every encoded key, or 0 if sizes vary.
+     */
+    default int fixedWidth() {
+        return 0;
+    }
+
+    static KeyCodec<Integer> ofIntegers() {
+        return new KeyCodec<>() {
+            @Override
+            public int encodedSize(Integer key) {
+                return Integer.BYTES;
+            }
+
+            @Override
+            public void encode(Integer key, ByteBuffer target) {
+                target.putInt(key);
+            }
+
+            @Override
+            public Integer decode(ByteBuffer source) {
+                return source.getInt();
+            }
+
+            @Override
+            public int fixedWidth() {
+                return Integer.BYTES;
+            }
+        };
+    }
+
+    static KeyCodec<Long> ofLongs() {
+        return new KeyCodec<>() {
+            @Override
+            public int encodedSize(Long key) {
+                return Long.BYTES;
+            }
+
+            @Override
+            public void encode(Long key, ByteBuffer target) {
+                target.putLong(key);
+            }
+
+            @Override
+            public Long decode(ByteBuffer source) {
+                return source.getLong();
+            }
+
+            @Override
+            public int fixedWidth() {
+                return Long.BYTES;
+            }
+        };
+    }
+
+    /**
+     * UTF-8 encoded strings.
+     */
+    static KeyCodec<String> ofStrings() {
+        return new KeyCodec<>() {
+            @Override
+            public int encodedSize(String key) {
+                int size = 0;
+                for (int i = 0; i < key.length(); i++) {
+                    char c = key.charAt(i);
+                    if (c < 0x80) {
+                        size += 1;
+                    } else if (c < 0x800) {
+                        size += 2;
+                    } else if (Character.isHighSurrogate(c) && i + 1 < key.length()
+                            && Character.isLowSurrogate(key.charAt(i + 1))) {
+                        size += 4;
+                        i++;
+                    } else if (Character.isSurrogate(c)) {
+                        // Unpaired surrogate is replaced with '?' by the encoder.
+                        size += 1;
+                    } else {
+                        size += 3;
+                    }
+                }
+                return size;
+            }
+
+            @Override
+            public void encode(String key, ByteBuffer target) {
+                target.put(key.getBytes(StandardCharsets.UTF_8));
+            }
+
+            @Override
+            public String decode(ByteBuffer source) {
+                byte[] bytes = new byte[source.remaining()];
+                source.get(bytes);
+                return new String(bytes, StandardCharsets.UTF_8);
+            }
+        };
+    }
+}
@@ -0,0 +1,287 @@
+package arx.dukalis.collections;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * Immutable sorted set of keys in a memory-mapped file, frozen from a {@link RedBlackTree}.
+ * <p>
+ * Lookup - O(log n)
+ * Range view - O(log n)
+ * <p>
+ * Keys stay in the file: lookups are binary searches over the {@link MappedByteBuffer}, and iteration
+ * decodes keys one by one straight from the mapped pages. Heap cost doesn't depend on the number of keys,
+ * and processes which open the same file share its page cache.
+ * <p>
+ * Layout, big-endian:
+ * <pre>
+ * int    magic "RBTI"
+ * int    format version
+ * int    number of keys
+ * int    bytes per key, or 0 if keys are offset-indexed
+ * int    offset of each key and of the end of keys, relative to the first key, if offset-indexed
+ * keys encoded by {@link KeyCodec}, in ascending order
+ * </pre>
+ * Keys are fixed-width if the codec declares {@link KeyCodec#fixedWidth}. A single mapping is limited to 2 GiB.
+ * <p>
+ * Views returned by {@link #subSet}, {@link #headSet} and {@link #tailSet} are index ranges of the same mapping;
+ * bounds outside of a view are clamped to it. Absolute reads leave the shared buffer untouched,
+ * so an index may be used by many threads at once.
+ */
+public final class MappedSortedIndex<T> extends AbstractSet<T> implements SortedSet<T> {
+
+    private static final int MAGIC = 0x52425449;
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 4 * Integer.BYTES;
+
+    private final ByteBuffer buffer;
+    private final Comparator<Object> comparator;
+    private final KeyCodec<? extends T> codec;
+
+    /**
+     * Bytes per key, or 0 if keys are offset-indexed.
+     */
+    private final int width;
+
+    private final int keysStart;
+
+    /**
+     * Index range of the view, {@code [from, to)}.
+     */
+    private final int from;
+    private final int to;
+
+    private MappedSortedIndex(ByteBuffer buffer, Comparator<Object> comparator, KeyCodec<? extends T> codec,
+                              int width, int keysStart, int from, int to) {
+        this.buffer = buffer;
+        this.comparator = comparator;
+        this.codec = codec;
+        this.width = width;
+        this.keysStart = keysStart;
+        this.from = from;
+        this.to = to;
+    }
+
+    /**
+     * Writes keys of the set, in its iteration order, to an index file.
+     */
+    public static <T> void write(Path path, SortedSet<? extends T> keys, KeyCodec<? super T> codec) throws IOException {
+        int count = keys.size();
+        int width = codec.fixedWidth();
+
+        long size = HEADER_BYTES;
+        if (width > 0) {
+            size += (long) width * count;
+        } else {
+            size += (long) Integer.BYTES * (count + 1);
+            for (T key : keys) {
+                size += codec.encodedSize(key);
+            }
+        }
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Index exceeds 2 GiB: " + size + " bytes");
+        }
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            MappedByteBuffer target = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            target.putInt(MAGIC).putInt(VERSION).putInt(count).putInt(width);
+
+            int keysStart = width > 0 ? HEADER_BYTES : HEADER_BYTES + Integer.BYTES * (count + 1);
+            int offsetPosition = HEADER_BYTES;
+            target.position(keysStart);
+
+            int written = 0;
+            for (T key : keys) {
+                int start = target.position();
+                if (width == 0) {
+                    target.putInt(offsetPosition, start - keysStart);
+                    offsetPosition += Integer.BYTES;
+                }
+
+                codec.encode(key, target);
+                int length = target.position() - start;
+                if (length != codec.encodedSize(key) || (width > 0 && length != width)) {
+                    throw new IllegalStateException("Codec wrote " + length + " bytes of unexpected size for " + key);
+                }
+                written++;
+            }
+            if (written != count) {
+                throw new ConcurrentModificationException();
+            }
+            if (width == 0) {
+                target.putInt(offsetPosition, target.position() - keysStart);
+            }
+
+            target.force();
+        }
+    }
+
+    /**
+     * Maps an index file written by {@link #write}; the comparator has to agree with the order of its keys.
+     */
+    public static <T> MappedSortedIndex<T> open(Path path, Comparator<Object> comparator,
+                                                KeyCodec<? extends T> codec) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_BYTES || channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Not a sorted index: " + channel.size() + " bytes");
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+            if (buffer.getInt(0) != MAGIC) {
+                throw new IOException("Not a sorted index");
+            }
+            int version = buffer.getInt(Integer.BYTES);
+            if (version != VERSION) {
+                throw new IOException("Unsupported index version " + version);
+            }
+            int count = buffer.getInt(2 * Integer.BYTES);
+            int width = buffer.getInt(3 * Integer.BYTES);
+            if (count < 0 || width < 0) {
+                throw new IOException("Corrupt index header");
+            }
+
+            long keysStart = width > 0 ? HEADER_BYTES : HEADER_BYTES + (long) Integer.BYTES * (count + 1);
+            if (keysStart > buffer.capacity()) {
+                throw new IOException("Corrupt index: truncated offsets");
+            }
+            long keysEnd = width > 0 ? keysStart + (long) width * count : keysStart + buffer.getInt((int) keysStart - Integer.BYTES);
+            if (keysEnd != buffer.capacity()) {
+                throw new IOException("Corrupt index: expected " + keysEnd + " bytes, found " + buffer.capacity());
+            }
+
+            return new MappedSortedIndex<>(buffer, comparator, codec, width, (int) keysStart, 0, count);
+        }
+    }
+
+    private T keyAt(int index) {
+        if (width > 0) {
+            return codec.decode(buffer.slice(keysStart + index * width, width));
+        }
+
+        int offsetPosition = HEADER_BYTES + index * Integer.BYTES;
+        int start = buffer.getInt(offsetPosition);
+        int end = buffer.getInt(offsetPosition + Integer.BYTES);
+        return codec.decode(buffer.slice(keysStart + start, end - start));
+    }
+
+    /**
+     * Index of the first key of the view greater than (or equal to, if inclusive) the given key,
+     * or {@link #to} if there is none.
+     */
+    private int indexAbove(Object key, boolean inclusive) {
+        int lo = from;
+        int hi = to;
+
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            int cmp = Objects.compare(keyAt(mid), key, comparator);
+            if (cmp < 0 || (cmp == 0 && !inclusive)) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+
+        return lo;
+    }
+
+    private MappedSortedIndex<T> view(int from, int to) {
+        return new MappedSortedIndex<>(buffer, comparator, codec, width, keysStart, from, Math.max(from, to));
+    }
+
+    @Override
+    public int size() {
+        return to - from;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return from == to;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        int index = indexAbove(o, true);
+        return index < to && Objects.compare(keyAt(index), o, comparator) == 0;
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return new Iterator<>() {
+            private int next = from;
+
+            @Override
+            public boolean hasNext() {
+                return next < to;
+            }
+
+            @Override
+            public T next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return keyAt(next++);
+            }
+        };
+    }
+
+    @Override
+    public Comparator<? super T> comparator() {
+        return comparator;
+    }
+
+    @Override
+    public T first() {
+        if (isEmpty()) {
+            throw new NoSuchElementException();
+        }
+        return keyAt(from);
+    }
+
+    @Override
+    public T last() {
+        if (isEmpty()) {
+            throw new NoSuchElementException();
+        }
+        return keyAt(to - 1);
+    }
+
+    @Override
+    public SortedSet<T> subSet(T fromElement, T toElement) {
+        if (Objects.compare(fromElement, toElement, comparator) > 0) {
+            throw new IllegalArgumentException("fromElement > toElement");
+        }
+        return view(indexAbove(fromElement, true), indexAbove(toElement, true));
+    }
+
+    @Override
+    public SortedSet<T> headSet(T toElement) {
+        return view(from, indexAbove(toElement, true));
+    }
+
+    @Override
+    public SortedSet<T> tailSet(T fromElement) {
+        return view(indexAbove(fromElement, true), to);
+    }
+
+    @Override
+    public boolean add(T t) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void clear() {
+        throw new UnsupportedOperationException();
+    }
+}
@@ -0,0 +1,50 @@
+package arx.dukalis.collections;
+
+import com.sun.management.HotSpotDiagnosticMXBean;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Estimates of HotSpot object layout used for footprint reporting.
+ * <p>
+ * Falls back to the layout of a 64-bit VM with compressed pointers (the default for heaps
+ * under 32 GB) when VM options can't be queried.
+ */
+final class MemoryLayout {
+    static final int REFERENCE_BYTES;
+    static final int OBJECT_HEADER_BYTES;
+    static final int ARRAY_HEADER_BYTES;
+    static final int OBJECT_ALIGNMENT = 8;
+
+    static {
+        boolean compressedOops = vmFlag("UseCompressedOops", true);
+        boolean compressedClassPointers = vmFlag("UseCompressedClassPointers", true);
+
+        REFERENCE_BYTES = compressedOops ? 4 : 8;
+        OBJECT_HEADER_BYTES = compressedClassPointers ? 12 : 16;
+        ARRAY_HEADER_BYTES = compressedClassPointers ? 16 : 20;
+    }
+
+    private MemoryLayout() {
+    }
+
+    private static boolean vmFlag(String name, boolean fallback) {
+        try {
+            HotSpotDiagnosticMXBean bean = ManagementFactory.getPlatformMXBean(HotSpotDiagnosticMXBean.class);
+            return Boolean.parseBoolean(bean.getVMOption(name).getValue());
+        } catch (RuntimeException | LinkageError e) {
+            return fallback;
+        }
+    }
+
+    /**
+     * Size of an object with the given number of reference and {@code int} fields, padded to alignment.
+     */
+    static long objectBytes(int references, int ints) {
+        return align(OBJECT_HEADER_BYTES + (long) references * REFERENCE_BYTES + ints * 4L);
+    }
+
+    static long align(long bytes) {
+        return (bytes + OBJECT_ALIGNMENT - 1) / OBJECT_ALIGNMENT * OBJECT_ALIGNMENT;
+    }
+}
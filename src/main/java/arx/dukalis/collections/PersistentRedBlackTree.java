@@ -0,0 +1,331 @@
+package arx.dukalis.collections;
+
+import java.util.*;
+
+/**
+ * Purely functional red-black tree: every update returns a new version, and all versions stay valid.
+ * <p>
+ * Insert - O(log n)
+ * Lookup - O(log n)
+ * Remove - O(log n)
+ * Snapshot - O(1)
+ * <p>
+ * An update copies only the O(log n) nodes on the path to the changed key and shares the rest
+ * with the previous version, so keeping a version around is as cheap as keeping a reference to it.
+ * Insertion follows Okasaki's "Purely functional data structures", removal follows Kahrs'
+ * "Red-black trees with types", which is equivalent to Might's algorithm without the double-black
+ * and negative-black colors.
+ * <p>
+ * Versions are immutable, so they can be shared between threads without locking, e.g. a single writer
+ * publishing versions for readers:
+ * <pre>{@code
+ * AtomicReference<PersistentRedBlackTree<Integer>> current = new AtomicReference<>(PersistentRedBlackTree.empty(comparator));
+ *
+ * // writer
+ * current.set(current.get().plus(42));
+ *
+ * // reader sees a consistent snapshot
+ * PersistentRedBlackTree<Integer> snapshot = current.get();
+ * }</pre>
+ */
+public final class PersistentRedBlackTree<T> implements Iterable<T> {
+
+    private final Comparator<Object> comparator;
+
+    /**
+     * Root of red-black tree.
+     */
+    private final Node<T> root;
+
+    /**
+     * The size of the PersistentRedBlackTree (the number of elements it contains).
+     */
+    private final int size;
+
+    private PersistentRedBlackTree(Comparator<Object> comparator, Node<T> root, int size) {
+        this.comparator = comparator;
+        this.root = root;
+        this.size = size;
+    }
+
+    public static <T> PersistentRedBlackTree<T> empty(Comparator<Object> comparator) {
+        return new PersistentRedBlackTree<>(comparator, null, 0);
+    }
+
+    /**
+     * Color of red-black tree.
+     */
+    private enum Color {RED, BLACK}
+
+    /**
+     * Immutable node of red-black tree.
+     */
+    private static final class Node<T> {
+        final Color color;
+        final Node<T> leftChild;
+        final T key;
+        final Node<T> rightChild;
+
+        Node(Color color, Node<T> leftChild, T key, Node<T> rightChild) {
+            this.color = color;
+            this.leftChild = leftChild;
+            this.key = key;
+            this.rightChild = rightChild;
+        }
+    }
+
+    private static <T> Node<T> red(Node<T> leftChild, T key, Node<T> rightChild) {
+        return new Node<>(Color.RED, leftChild, key, rightChild);
+    }
+
+    private static <T> Node<T> black(Node<T> leftChild, T key, Node<T> rightChild) {
+        return new Node<>(Color.BLACK, leftChild, key, rightChild);
+    }
+
+    private static boolean isRed(Node<?> node) {
+        return node != null && node.color == Color.RED;
+    }
+
+    /**
+     * Unlike {@code !isRed(node)}, doesn't hold for absent leaves.
+     */
+    private static boolean isBlack(Node<?> node) {
+        return node != null && node.color == Color.BLACK;
+    }
+
+    private int compare(Object a, Object b) {
+        return Objects.compare(a, b, comparator);
+    }
+
+    /**
+     * Restores the invariant when one of the subtrees has a red node with a red child.
+     */
+    private static <T> Node<T> balance(Node<T> a, T x, Node<T> b) {
+        if (isRed(a) && isRed(b)) {
+            return red(black(a.leftChild, a.key, a.rightChild), x, black(b.leftChild, b.key, b.rightChild));
+        }
+        if (isRed(a)) {
+            if (isRed(a.leftChild)) {
+                Node<T> l = a.leftChild;
+                return red(black(l.leftChild, l.key, l.rightChild), a.key, black(a.rightChild, x, b));
+            }
+            if (isRed(a.rightChild)) {
+                Node<T> r = a.rightChild;
+                return red(black(a.leftChild, a.key, r.leftChild), r.key, black(r.rightChild, x, b));
+            }
+        }
+        if (isRed(b)) {
+            if (isRed(b.rightChild)) {
+                Node<T> r = b.rightChild;
+                return red(black(a, x, b.leftChild), b.key, black(r.leftChild, r.key, r.rightChild));
+            }
+            if (isRed(b.leftChild)) {
+                Node<T> l = b.leftChild;
+                return red(black(a, x, l.leftChild), l.key, black(l.rightChild, b.key, b.rightChild));
+            }
+        }
+        return black(a, x, b);
+    }
+
+    /**
+     * Returns the same node when the key is already present.
+     */
+    private Node<T> insert(Node<T> node, T x) {
+        if (node == null) return red(null, x, null);
+
+        int cmp = compare(x, node.key);
+        if (cmp == 0) return node;
+
+        if (cmp < 0) {
+            Node<T> left = insert(node.leftChild, x);
+            if (left == node.leftChild) return node;
+            return isBlack(node)
+                    ? balance(left, node.key, node.rightChild)
+                    : red(left, node.key, node.rightChild);
+        } else {
+            Node<T> right = insert(node.rightChild, x);
+            if (right == node.rightChild) return node;
+            return isBlack(node)
+                    ? balance(node.leftChild, node.key, right)
+                    : red(node.leftChild, node.key, right);
+        }
+    }
+
+    private Node<T> remove(Node<T> node, Object x) {
+        if (node == null) return null;
+
+        int cmp = compare(x, node.key);
+        if (cmp < 0) {
+            if (isBlack(node.leftChild)) {
+                return balanceLeft(remove(node.leftChild, x), node.key, node.rightChild);
+            }
+            return red(remove(node.leftChild, x), node.key, node.rightChild);
+        } else if (cmp > 0) {
+            if (isBlack(node.rightChild)) {
+                return balanceRight(node.leftChild, node.key, remove(node.rightChild, x));
+            }
+            return red(node.leftChild, node.key, remove(node.rightChild, x));
+        } else {
+            return append(node.leftChild, node.rightChild);
+        }
+    }
+
+    /**
+     * Rebalances a node whose left subtree has black height one less than the right one.
+     */
+    private static <T> Node<T> balanceLeft(Node<T> left, T x, Node<T> right) {
+        if (isRed(left)) {
+            return red(black(left.leftChild, left.key, left.rightChild), x, right);
+        }
+        if (isBlack(right)) {
+            return balance(left, x, red(right.leftChild, right.key, right.rightChild));
+        }
+        if (isRed(right) && isBlack(right.leftChild)) {
+            Node<T> rl = right.leftChild;
+            return red(black(left, x, rl.leftChild), rl.key, balance(rl.rightChild, right.key, redden(right.rightChild)));
+        }
+        throw new IllegalStateException("Red-black tree invariant violated");
+    }
+
+    /**
+     * Rebalances a node whose right subtree has black height one less than the left one.
+     */
+    private static <T> Node<T> balanceRight(Node<T> left, T x, Node<T> right) {
+        if (isRed(right)) {
+            return red(left, x, black(right.leftChild, right.key, right.rightChild));
+        }
+        if (isBlack(left)) {
+            return balance(red(left.leftChild, left.key, left.rightChild), x, right);
+        }
+        if (isRed(left) && isBlack(left.rightChild)) {
+            Node<T> lr = left.rightChild;
+            return red(balance(redden(left.leftChild), left.key, lr.leftChild), lr.key, black(lr.rightChild, x, right));
+        }
+        throw new IllegalStateException("Red-black tree invariant violated");
+    }
+
+    private static <T> Node<T> redden(Node<T> node) {
+        if (!isBlack(node)) {
+            throw new IllegalStateException("Red-black tree invariant violated");
+        }
+        return red(node.leftChild, node.key, node.rightChild);
+    }
+
+    /**
+     * Joins two subtrees of equal black height, all keys of the left one being less than of the right one.
+     */
+    private static <T> Node<T> append(Node<T> left, Node<T> right) {
+        if (left == null) return right;
+        if (right == null) return left;
+
+        if (isRed(left) && isRed(right)) {
+            Node<T> middle = append(left.rightChild, right.leftChild);
+            if (isRed(middle)) {
+                return red(red(left.leftChild, left.key, middle.leftChild), middle.key, red(middle.rightChild, right.key, right.rightChild));
+            }
+            return red(left.leftChild, left.key, red(middle, right.key, right.rightChild));
+        }
+        if (isBlack(left) && isBlack(right)) {
+            Node<T> middle = append(left.rightChild, right.leftChild);
+            if (isRed(middle)) {
+                return red(black(left.leftChild, left.key, middle.leftChild), middle.key, black(middle.rightChild, right.key, right.rightChild));
+            }
+            return balanceLeft(left.leftChild, left.key, black(middle, right.key, right.rightChild));
+        }
+        if (isRed(right)) {
+            return red(append(left, right.leftChild), right.key, right.rightChild);
+        }
+        return red(left.leftChild, left.key, append(left.rightChild, right));
+    }
+
+    private static <T> Node<T> blacken(Node<T> node) {
+        if (node == null || node.color == Color.BLACK) return node;
+        return black(node.leftChild, node.key, node.rightChild);
+    }
+
+    /**
+     * Returns a version with the given element, or this version if the element is already present.
+     */
+    public PersistentRedBlackTree<T> plus(T t) {
+        Node<T> inserted = insert(root, t);
+        if (inserted == root) return this;
+        return new PersistentRedBlackTree<>(comparator, blacken(inserted), size + 1);
+    }
+
+    /**
+     * Returns a version without the given element, or this version if the element is absent.
+     */
+    public PersistentRedBlackTree<T> minus(Object o) {
+        if (!contains(o)) return this;
+        return new PersistentRedBlackTree<>(comparator, blacken(remove(root, o)), size - 1);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return root == null;
+    }
+
+    public boolean contains(Object o) {
+        Node<T> current = root;
+
+        while (current != null) {
+            int cmp = compare(o, current.key);
+            if (cmp < 0) {
+                current = current.leftChild;
+            } else if (cmp > 0) {
+                current = current.rightChild;
+            } else {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * In-order iterator; nodes don't know their parents, so the path is kept on a stack.
+     */
+    public class PersistentRedBlackTreeIterator implements Iterator<T> {
+        private final Deque<Node<T>> path = new ArrayDeque<>();
+
+        private PersistentRedBlackTreeIterator(Node<T> root) {
+            descendLeft(root);
+        }
+
+        private void descendLeft(Node<T> node) {
+            for (Node<T> current = node; current != null; current = current.leftChild) {
+                path.push(current);
+            }
+        }
+
+        public boolean hasNext() {
+            return !path.isEmpty();
+        }
+
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Node<T> node = path.pop();
+            descendLeft(node.rightChild);
+            return node.key;
+        }
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return new PersistentRedBlackTreeIterator(root);
+    }
+
+    public Object[] toArray() {
+        Object[] a = new Object[size];
+        int i = 0;
+        for (T v : this) {
+            a[i++] = v;
+        }
+        return a;
+    }
+}
@@ -0,0 +1,614 @@
+package arx.dukalis.collections;
+
+import java.util.*;
+
+/**
+ * Red-black tree with set-like programming interface, which keeps its nodes in a pool of parallel arrays.
+ * <p>
+ * Insert - O(log n)
+ * Lookup - O(log n)
+ * Remove - O(log n)
+ * <p>
+ * Nodes are addressed by {@code int} indices instead of references: keys, parents and children
+ * live in separate arrays and colors are packed into a bit set. Compared to {@link RedBlackTree}
+ * there are no per-node object headers, the GC has only a handful of arrays to trace,
+ * and slots of removed nodes are reused by later insertions.
+ */
+public class PooledRedBlackTree<T> implements Collection<T> {
+
+    /**
+     * Index of absent node (leaf).
+     */
+    private static final int NIL = -1;
+
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private final Comparator<Object> comparator;
+
+    private Object[] keys;
+    private int[] parents;
+    private int[] leftChildren;
+    private int[] rightChildren;
+
+    /**
+     * Bit is set for red nodes.
+     */
+    private long[] colors;
+
+    /**
+     * Root of red-black tree.
+     */
+    private int root = NIL;
+
+    /**
+     * Head of the list of freed slots, chained through {@link #rightChildren}.
+     */
+    private int freeList = NIL;
+
+    /**
+     * Number of slots that were ever handed out; slots above it are untouched.
+     */
+    private int used = 0;
+
+    /**
+     * The size of the PooledRedBlackTree (the number of elements it contains).
+     */
+    private int size = 0;
+
+    public PooledRedBlackTree(Comparator<Object> comparator) {
+        this(comparator, DEFAULT_CAPACITY);
+    }
+
+    public PooledRedBlackTree(Comparator<Object> comparator, int initialCapacity) {
+        if (initialCapacity < 1) {
+            throw new IllegalArgumentException("Initial capacity must be positive: " + initialCapacity);
+        }
+        this.comparator = comparator;
+        this.keys = new Object[initialCapacity];
+        this.parents = new int[initialCapacity];
+        this.leftChildren = new int[initialCapacity];
+        this.rightChildren = new int[initialCapacity];
+        this.colors = new long[(initialCapacity + 63) >>> 6];
+    }
+
+    /**
+     * Number of node slots the pool can hold without growing.
+     */
+    public int capacity() {
+        return keys.length;
+    }
+
+    /**
+     * Estimated number of bytes the tree structure occupies per element, excluding the keys themselves.
+     * <p>
+     * Includes unused pool capacity, so it is comparable with {@link RedBlackTree#bytesPerElement()}.
+     */
+    public double bytesPerElement() {
+        if (size == 0) return 0;
+
+        int capacity = keys.length;
+        long bytes = MemoryLayout.align(MemoryLayout.ARRAY_HEADER_BYTES + (long) capacity * MemoryLayout.REFERENCE_BYTES)
+                + 3 * MemoryLayout.align(MemoryLayout.ARRAY_HEADER_BYTES + capacity * 4L)
+                + MemoryLayout.align(MemoryLayout.ARRAY_HEADER_BYTES + colors.length * 8L);
+        return (double) bytes / size;
+    }
+
+    private boolean isRed(int node) {
+        return node != NIL && (colors[node >>> 6] & (1L << node)) != 0;
+    }
+
+    private void setRed(int node) {
+        colors[node >>> 6] |= 1L << node;
+    }
+
+    private void setBlack(int node) {
+        colors[node >>> 6] &= ~(1L << node);
+    }
+
+    private void setColor(int node, boolean red) {
+        if (red) {
+            setRed(node);
+        } else {
+            setBlack(node);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private T keyOf(int node) {
+        return (T) keys[node];
+    }
+
+    private int allocate(T key, int parent) {
+        int node;
+        if (freeList != NIL) {
+            node = freeList;
+            freeList = rightChildren[node];
+        } else {
+            if (used == keys.length) {
+                grow();
+            }
+            node = used++;
+        }
+
+        keys[node] = key;
+        parents[node] = parent;
+        leftChildren[node] = NIL;
+        rightChildren[node] = NIL;
+        setRed(node);
+        return node;
+    }
+
+    private void release(int node) {
+        keys[node] = null;
+        parents[node] = NIL;
+        leftChildren[node] = NIL;
+        rightChildren[node] = freeList;
+        freeList = node;
+    }
+
+    private void grow() {
+        int capacity = keys.length + (keys.length >> 1) + 1;
+        keys = Arrays.copyOf(keys, capacity);
+        parents = Arrays.copyOf(parents, capacity);
+        leftChildren = Arrays.copyOf(leftChildren, capacity);
+        rightChildren = Arrays.copyOf(rightChildren, capacity);
+        colors = Arrays.copyOf(colors, (capacity + 63) >>> 6);
+    }
+
+    private int grandparentOf(int node) {
+        int parent = parents[node];
+        if (parent == NIL) return NIL;
+        return parents[parent];
+    }
+
+    private int uncleOf(int node) {
+        int grandpa = grandparentOf(node);
+        if (grandpa == NIL) return NIL;
+        if (parents[node] == leftChildren[grandpa]) {
+            return rightChildren[grandpa];
+        }
+        return leftChildren[grandpa];
+    }
+
+    private int siblingOf(int node, int parent) {
+        if (node == leftChildren[parent]) return rightChildren[parent];
+        return leftChildren[parent];
+    }
+
+    private void replaceChild(int parent, int oldChild, int newChild) {
+        if (parent == NIL) {
+            root = newChild;
+        } else if (oldChild == leftChildren[parent]) {
+            leftChildren[parent] = newChild;
+        } else {
+            rightChildren[parent] = newChild;
+        }
+    }
+
+    private void leftRotate(int u) {
+        if (u == NIL) return;
+        if (rightChildren[u] == NIL) return;
+
+        int v = rightChildren[u];
+        rightChildren[u] = leftChildren[v];
+
+        if (leftChildren[v] != NIL) {
+            parents[leftChildren[v]] = u;
+        }
+
+        parents[v] = parents[u];
+        replaceChild(parents[u], u, v);
+
+        leftChildren[v] = u;
+        parents[u] = v;
+    }
+
+    private void rightRotate(int u) {
+        if (u == NIL) return;
+        if (leftChildren[u] == NIL) return;
+
+        int v = leftChildren[u];
+        leftChildren[u] = rightChildren[v];
+
+        if (rightChildren[v] != NIL) {
+            parents[rightChildren[v]] = u;
+        }
+
+        parents[v] = parents[u];
+        replaceChild(parents[u], u, v);
+
+        rightChildren[v] = u;
+        parents[u] = v;
+    }
+
+    private void insertFixup(int node) {
+        insertCaseNo1(node);
+    }
+
+    private void insertCaseNo1(int z) {
+        if (parents[z] == NIL) {
+            setBlack(z);
+        } else {
+            insertCaseNo2(z);
+        }
+    }
+
+    private void insertCaseNo2(int z) {
+        if (isRed(parents[z])) {
+            insertCaseNo3(z);
+        }
+    }
+
+    private void insertCaseNo3(int z) {
+        int u = uncleOf(z);
+
+        if (isRed(u)) {
+            setBlack(parents[z]);
+            setBlack(u);
+
+            int g = grandparentOf(z);
+            setRed(g);
+            insertCaseNo1(g);
+        } else {
+            insertCaseNo4(z);
+        }
+    }
+
+    private void insertCaseNo4(int node) {
+        int z = node;
+        int g = grandparentOf(z);
+
+        if (z == rightChildren[parents[z]] && parents[z] == leftChildren[g]) {
+            leftRotate(parents[z]);
+            z = leftChildren[z];
+        } else if (z == leftChildren[parents[z]] && parents[z] == rightChildren[g]) {
+            rightRotate(parents[z]);
+            z = rightChildren[z];
+        }
+
+        insertCaseNo5(z);
+    }
+
+    private void insertCaseNo5(int z) {
+        int g = grandparentOf(z);
+
+        setBlack(parents[z]);
+        setRed(g);
+
+        if (z == leftChildren[parents[z]] && parents[z] == leftChildren[g]) {
+            rightRotate(g);
+        } else {
+            leftRotate(g);
+        }
+    }
+
+    private void removeImpl(int current) {
+        int removable;
+        if (leftChildren[current] == NIL || rightChildren[current] == NIL) {
+            removable = current;
+        } else {
+            removable = successorOf(current);
+        }
+
+        int child;
+        if (leftChildren[removable] != NIL) {
+            child = leftChildren[removable];
+        } else {
+            child = rightChildren[removable];
+        }
+
+        int parent = parents[removable];
+        if (child != NIL) {
+            parents[child] = parent;
+        }
+        replaceChild(parent, removable, child);
+
+        if (removable != current) {
+            keys[current] = keys[removable];
+        }
+
+        if (!isRed(removable)) {
+            if (isRed(child)) {
+                setBlack(child);
+            } else {
+                removeFixup(child, parent);
+            }
+        }
+
+        release(removable);
+    }
+
+    private void removeFixup(int x, int parent) {
+        removeCaseNo1(x, parent);
+    }
+
+    private void removeCaseNo1(int z, int parent) {
+        if (parent != NIL) {
+            removeCaseNo2(z, parent);
+        }
+    }
+
+    private void removeCaseNo2(int z, int parent) {
+        int s = siblingOf(z, parent);
+        if (isRed(s)) {
+            setRed(parent);
+            setBlack(s);
+
+            if (z == leftChildren[parent]) {
+                leftRotate(parent);
+            } else {
+                rightRotate(parent);
+            }
+        }
+        removeCaseNo3(z, parent);
+    }
+
+    private void removeCaseNo3(int z, int parent) {
+        int s = siblingOf(z, parent);
+
+        if (!isRed(parent) &&
+                !isRed(s) &&
+                !isRed(leftChildren[s]) &&
+                !isRed(rightChildren[s])) {
+            setRed(s);
+            removeCaseNo1(parent, parents[parent]);
+        } else {
+            removeCaseNo4(z, parent);
+        }
+    }
+
+    private void removeCaseNo4(int z, int parent) {
+        int s = siblingOf(z, parent);
+
+        if (isRed(parent) &&
+                !isRed(s) &&
+                !isRed(leftChildren[s]) &&
+                !isRed(rightChildren[s])) {
+            setRed(s);
+            setBlack(parent);
+        } else {
+            removeCaseNo5(z, parent);
+        }
+    }
+
+    private void removeCaseNo5(int z, int parent) {
+        int s = siblingOf(z, parent);
+
+        if (!isRed(s)) {
+            if (z == leftChildren[parent] &&
+                    !isRed(rightChildren[s]) &&
+                    isRed(leftChildren[s])) {
+                setRed(s);
+                setBlack(leftChildren[s]);
+                rightRotate(s);
+            } else if (z == rightChildren[parent] &&
+                    !isRed(leftChildren[s]) &&
+                    isRed(rightChildren[s])) {
+                setRed(s);
+                setBlack(rightChildren[s]);
+                leftRotate(s);
+            }
+        }
+        removeCaseNo6(z, parent);
+    }
+
+    private void removeCaseNo6(int z, int parent) {
+        int s = siblingOf(z, parent);
+
+        setColor(s, isRed(parent));
+        setBlack(parent);
+
+        if (z == leftChildren[parent]) {
+            setBlack(rightChildren[s]);
+            leftRotate(parent);
+        } else {
+            setBlack(leftChildren[s]);
+            rightRotate(parent);
+        }
+    }
+
+    private int minimum(int node) {
+        if (node == NIL) return NIL;
+
+        int current = node;
+        while (leftChildren[current] != NIL) {
+            current = leftChildren[current];
+        }
+
+        return current;
+    }
+
+    private int successorOf(int node) {
+        if (node == NIL) return NIL;
+
+        if (rightChildren[node] != NIL) {
+            return minimum(rightChildren[node]);
+        }
+
+        int current = node;
+        int upward = parents[current];
+
+        while (upward != NIL && current == rightChildren[upward]) {
+            current = upward;
+            upward = parents[current];
+        }
+
+        return upward;
+    }
+
+    private int find(Object key) {
+        int current = root;
+
+        while (current != NIL) {
+            int cmp = Objects.compare(key, keys[current], comparator);
+            if (cmp < 0) {
+                current = leftChildren[current];
+            } else if (cmp > 0) {
+                current = rightChildren[current];
+            } else {
+                return current;
+            }
+        }
+
+        return NIL;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return root == NIL;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return find(o) != NIL;
+    }
+
+    public class PooledRedBlackTreeIterator implements Iterator<T> {
+        private int next;
+
+        private PooledRedBlackTreeIterator(int root) {
+            next = minimum(root);
+        }
+
+        public boolean hasNext() {
+            return next != NIL;
+        }
+
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            T result = keyOf(next);
+            next = successorOf(next);
+            return result;
+        }
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return new PooledRedBlackTreeIterator(root);
+    }
+
+    @Override
+    public Object[] toArray() {
+        Object[] a = new Object[size];
+        int i = 0;
+        for (int n = minimum(root); n != NIL; n = successorOf(n)) {
+            a[i++] = keys[n];
+        }
+        return a;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <U> U[] toArray(U[] a) {
+        if (a.length < size) {
+            return (U[]) Arrays.copyOf(toArray(), size, a.getClass());
+        }
+        System.arraycopy(toArray(), 0, a, 0, size);
+        if (a.length > size) {
+            a[size] = null;
+        }
+        return a;
+    }
+
+    @Override
+    public boolean add(T t) {
+        int current = root;
+        int previous = NIL;
+        int cmp = 0;
+
+        while (current != NIL) {
+            previous = current;
+
+            cmp = Objects.compare(t, keys[current], comparator);
+            if (cmp < 0) {
+                current = leftChildren[current];
+            } else if (cmp > 0) {
+                current = rightChildren[current];
+            } else {
+                return false;
+            }
+        }
+
+        int inserting = allocate(t, previous);
+
+        if (previous == NIL) {
+            root = inserting;
+        } else if (cmp < 0) {
+            leftChildren[previous] = inserting;
+        } else {
+            rightChildren[previous] = inserting;
+        }
+
+        insertFixup(inserting);
+        size++;
+        return true;
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        int node = find(o);
+        if (node == NIL) {
+            return false;
+        }
+        removeImpl(node);
+        size--;
+        return true;
+    }
+
+    @Override
+    public boolean containsAll(Collection<?> c) {
+        for (Object o : c) {
+            if (!contains(o)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends T> c) {
+        boolean changed = false;
+        for (T o : c) {
+            changed |= add(o);
+        }
+        return changed;
+    }
+
+    @Override
+    public boolean removeAll(Collection<?> c) {
+        boolean changed = false;
+        for (Object o : c) {
+            changed |= remove(o);
+        }
+        return changed;
+    }
+
+    @Override
+    public boolean retainAll(Collection<?> c) {
+        boolean changed = false;
+        for (Object elem : toArray()) {
+            if (!c.contains(elem)) {
+                remove(elem);
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(keys, 0, used, null);
+        Arrays.fill(colors, 0L);
+        root = NIL;
+        freeList = NIL;
+        used = 0;
+        size = 0;
+    }
+}
@@ -0,0 +1,264 @@
+package arx.dukalis.collections;
+
+import java.util.*;
+
+/**
+ * Sorted multiset on the balancing engine of {@link RedBlackTree}, which keeps one node per distinct element.
+ * <p>
+ * Add - O(log n)
+ * Remove - O(log n)
+ * Count - O(log n)
+ * <p>
+ * where n is the number of distinct elements. Each node carries the number of occurrences of its element,
+ * so repeated elements only change a counter: neither memory nor the depth of the tree grows with them,
+ * however skewed the distribution is.
+ * <p>
+ * Iteration yields every element as many times as it occurs, in ascending order.
+ * {@link #size} is the total number of occurrences, capped at {@link Integer#MAX_VALUE}.
+ */
+public class RedBlackMultiset<T> extends AbstractCollection<T> {
+
+    /**
+     * Balancing engine, whose nodes are {@link CountNode}s.
+     */
+    private final RedBlackTree<T> tree;
+
+    private long occurrences = 0;
+
+    public RedBlackMultiset(Comparator<Object> comparator) {
+        this.tree = new RedBlackTree<>(comparator) {
+            @Override
+            Node<T> newNode(T key, Node<T> parent) {
+                return new CountNode<>(key, parent);
+            }
+        };
+    }
+
+    /**
+     * Node of red-black tree, which also holds the number of occurrences of its key.
+     */
+    private static final class CountNode<T> extends RedBlackTree.Node<T> {
+        int count;
+
+        CountNode(T key, RedBlackTree.Node<T> parent) {
+            super(key, parent);
+        }
+
+        @Override
+        void takeOver(RedBlackTree.Node<T> other) {
+            super.takeOver(other);
+            count = countNode(other).count;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> CountNode<T> countNode(RedBlackTree.Node<T> node) {
+        return (CountNode<T>) node;
+    }
+
+    private static void checkOccurrences(int occurrences) {
+        if (occurrences < 0) {
+            throw new IllegalArgumentException("Negative number of occurrences: " + occurrences);
+        }
+    }
+
+    /**
+     * Number of occurrences of the element, 0 if there are none.
+     */
+    public int count(Object element) {
+        CountNode<T> node = countNode(tree.find(element));
+        return node == null ? 0 : node.count;
+    }
+
+    /**
+     * Adds one occurrence of the element.
+     *
+     * @return {@code true}, as the multiset always changes
+     */
+    @Override
+    public boolean add(T element) {
+        add(element, 1);
+        return true;
+    }
+
+    /**
+     * Adds occurrences of the element, in a single descent.
+     *
+     * @return number of occurrences before the call
+     * @throws IllegalArgumentException if the count would exceed {@link Integer#MAX_VALUE}
+     */
+    public int add(T element, int occurrences) {
+        checkOccurrences(occurrences);
+        if (occurrences == 0) return count(element);
+
+        CountNode<T> node = countNode(tree.findOrInsertNode(element));
+        int previous = node.count;
+        if (previous > Integer.MAX_VALUE - occurrences) {
+            if (previous == 0) tree.removeNode(node);
+            throw new IllegalArgumentException("Too many occurrences of " + element);
+        }
+
+        node.count = previous + occurrences;
+        this.occurrences += occurrences;
+        return previous;
+    }
+
+    /**
+     * Removes one occurrence of the element.
+     *
+     * @return whether the element occurred in the multiset
+     */
+    @Override
+    public boolean remove(Object element) {
+        return remove(element, 1) > 0;
+    }
+
+    /**
+     * Removes up to the given number of occurrences of the element; the node goes away with the last one.
+     *
+     * @return number of occurrences before the call
+     */
+    public int remove(Object element, int occurrences) {
+        checkOccurrences(occurrences);
+
+        CountNode<T> node = countNode(tree.find(element));
+        if (node == null) return 0;
+
+        int previous = node.count;
+        if (occurrences == 0) return previous;
+
+        if (occurrences >= previous) {
+            tree.removeNode(node);
+            this.occurrences -= previous;
+        } else {
+            node.count = previous - occurrences;
+            this.occurrences -= occurrences;
+        }
+        return previous;
+    }
+
+    /**
+     * Sets the number of occurrences of the element, removing it if the count is 0.
+     *
+     * @return number of occurrences before the call
+     */
+    public int setCount(T element, int count) {
+        checkOccurrences(count);
+        if (count == 0) return remove(element, Integer.MAX_VALUE);
+
+        CountNode<T> node = countNode(tree.findOrInsertNode(element));
+        int previous = node.count;
+        node.count = count;
+        occurrences += count - previous;
+        return previous;
+    }
+
+    /**
+     * Distinct elements in ascending order, as a read-only live view.
+     */
+    public NavigableSet<T> elementSet() {
+        return Collections.unmodifiableNavigableSet(tree);
+    }
+
+    public int distinctCount() {
+        return tree.size();
+    }
+
+    public T first() {
+        return tree.first();
+    }
+
+    public T last() {
+        return tree.last();
+    }
+
+    @Override
+    public int size() {
+        return (int) Math.min(occurrences, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return tree.isEmpty();
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return tree.find(o) != null;
+    }
+
+    @Override
+    public void clear() {
+        tree.clear();
+        occurrences = 0;
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return new OccurrenceIterator();
+    }
+
+    /**
+     * Repeats every element by its count; removal takes away the occurrence returned last.
+     */
+    private final class OccurrenceIterator implements Iterator<T> {
+        private final RedBlackTree<T>.NodeIterator nodes = tree.new NodeIterator(tree.firstNode(), RedBlackTree.UNBOUNDED, true);
+        private CountNode<T> current = null;
+        private int remaining = 0;
+        private boolean canRemove = false;
+
+        @Override
+        public boolean hasNext() {
+            return remaining > 0 || nodes.hasNext();
+        }
+
+        @Override
+        public T next() {
+            if (remaining == 0) {
+                current = countNode(nodes.nextNode());
+                remaining = current.count;
+            }
+            remaining--;
+            canRemove = true;
+            return current.key;
+        }
+
+        @Override
+        public void remove() {
+            if (!canRemove) {
+                throw new IllegalStateException();
+            }
+            canRemove = false;
+            occurrences--;
+
+            if (--current.count == 0) {
+                // The last occurrence is returned only after the rest, so the node is the last one returned.
+                nodes.remove();
+            }
+        }
+    }
+
+    /**
+     * Multisets are equal if every element occurs in them the same number of times.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (o == this) return true;
+        if (!(o instanceof RedBlackMultiset<?> other)) return false;
+        if (other.occurrences != occurrences || other.distinctCount() != distinctCount()) return false;
+
+        for (RedBlackTree.Node<T> node = tree.firstNode(); node != null; node = tree.successorOf(node)) {
+            if (other.count(node.key) != countNode(node).count) return false;
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 0;
+        for (RedBlackTree.Node<T> node = tree.firstNode(); node != null; node = tree.successorOf(node)) {
+            hash += Objects.hashCode(node.key) ^ countNode(node).count;
+        }
+        return hash;
+    }
+}
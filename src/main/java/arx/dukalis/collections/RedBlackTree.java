@@ -1,6 +1,16 @@
 package arx.dukalis.collections;
 
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
 
 /**
  * Implementation of self-balancing binary search tree with set-like programming interface.
@@ -8,13 +18,34 @@ import java.util.*;
  * Insert - O(log n)
  * Lookup - O(log n)
  * Remove - O(log n)
+ * Peek least/greatest - O(1)
+ * <p>
+ * The tree keeps its least and greatest nodes at hand, so it also serves as a double-ended priority queue
+ * through {@link #peekFirst}, {@link #peekLast}, {@link #pollFirst} and {@link #pollLast}.
+ * <p>
+ * In order-statistic mode every node also keeps the size of its subtree, which makes
+ * {@link #rank}, {@link #select} and {@link #countInRange} run in O(log n).
+ * <p>
+ * Range views returned by {@link #subSet}, {@link #headSet} and {@link #tailSet} are live:
+ * they seek to their lower bound in O(log n) and stop at the upper bound.
+ * <p>
+ * {@link #writeSnapshot} saves the keys in a compact binary form, which {@link #readSnapshot}
+ * restores in O(n) through the same sorted build as {@link #fromSorted}.
+ * <p>
+ * {@link #union}, {@link #intersection} and {@link #difference} relink nodes of two trees by splits and joins
+ * instead of inserting elements one by one, and recurse on large halves in parallel.
  * <p>
  * Originally it was supposed to be an implementation of Okasaki's red-black tree from
  * "Purely functional data structures" with Matt Might's complicated `remove()` implementation,
  * but it turned out, that vanilla Java isn't suitable for purely functional programming
- * even with support of records and pattern matching.
+ * even with support of records and pattern matching. It eventually landed in {@link PersistentRedBlackTree}.
  */
-public class RedBlackTree<T> implements Collection<T> {
+public class RedBlackTree<T> implements NavigableSet<T> {
+
+    /**
+     * Fence key of range iterators which run to the end of the tree.
+     */
+    static final Object UNBOUNDED = new Object();
 
     private final Comparator<Object> comparator;
 
@@ -28,8 +59,138 @@ public class RedBlackTree<T> implements Collection<T> {
      */
     private int size = 0;
 
+    /**
+     * Number of structural modifications, by which iterators and cursors detect concurrent ones.
+     */
+    private int modCount = 0;
+
+    /**
+     * Last inserted node, and its in-order successor (or {@code null} if the finger is the maximum).
+     * <p>
+     * Insertion doesn't move keys between nodes and doesn't change in-order neighbours,
+     * so the pair stays adjacent until one of its keys is removed.
+     */
+    private Node<T> finger = null;
+    private Node<T> fingerUpper = null;
+
+    /**
+     * Nodes of the least and the greatest keys, or {@code null} if the tree is empty.
+     * <p>
+     * Rotations don't change in-order neighbours, so only attaching and removing a node move them.
+     */
+    private Node<T> leftmost = null;
+    private Node<T> rightmost = null;
+
+    /**
+     * Whether nodes are {@link SizedNode}s with up-to-date subtree sizes.
+     */
+    private final boolean orderStatistics;
+
+    /**
+     * Whether nodes keep data about their subtrees, which {@link Node#update} recomputes
+     * after the subtree changes, see {@link IntervalTree}.
+     */
+    private final boolean augmented;
+
+    /**
+     * Whether statistics can be enabled for trees at all, see {@link #enableStatistics}.
+     * <p>
+     * Running with {@code -Darx.dukalis.collections.statistics=false} lets the JIT drop the counting code
+     * altogether; otherwise it costs a null check of {@link #counters} where a tree doesn't collect statistics.
+     */
+    static final boolean STATISTICS = !"false".equals(System.getProperty("arx.dukalis.collections.statistics"));
+
+    /**
+     * Counters of the statistics mode, or {@code null} if it is off.
+     */
+    private Counters counters = null;
+
+    /**
+     * Head of the list of removed nodes kept for reuse, chained through {@link Node#rightChild},
+     * see {@link #enableNodeRecycling}.
+     */
+    private Node<T> freeNodes = null;
+    private int freeCount = 0;
+    private int maxFreeNodes = 0;
+
     public RedBlackTree(Comparator<Object> comparator) {
+        this(comparator, false);
+    }
+
+    /**
+     * @param orderStatistics whether to maintain subtree sizes for {@link #rank}, {@link #select}
+     *                        and {@link #countInRange}, at the cost of an extra field per node
+     */
+    public RedBlackTree(Comparator<Object> comparator, boolean orderStatistics) {
+        this(comparator, orderStatistics, false);
+    }
+
+    RedBlackTree(Comparator<Object> comparator, boolean orderStatistics, boolean augmented) {
         this.comparator = comparator;
+        this.orderStatistics = orderStatistics;
+        this.augmented = augmented;
+    }
+
+    /**
+     * Builds a tree from strictly ascending elements in O(n), without comparisons beyond
+     * order validation and without rotations.
+     */
+    public static <T> RedBlackTree<T> fromSorted(Comparator<Object> comparator,
+                                                 boolean orderStatistics,
+                                                 Iterator<? extends T> sorted,
+                                                 int size) {
+        RedBlackTree<T> tree = new RedBlackTree<>(comparator, orderStatistics);
+        tree.buildFromSorted(sorted, size);
+        return tree;
+    }
+
+    public static <T> RedBlackTree<T> fromSorted(Comparator<Object> comparator, Collection<? extends T> sorted) {
+        return fromSorted(comparator, false, sorted.iterator(), sorted.size());
+    }
+
+    public static <T> RedBlackTree<T> fromSorted(Comparator<Object> comparator, T[] sorted) {
+        return fromSorted(comparator, Arrays.asList(sorted));
+    }
+
+    public static <T> RedBlackTree<T> fromSorted(Comparator<Object> comparator, Stream<? extends T> sorted) {
+        return fromSorted(comparator, sorted.toList());
+    }
+
+    /**
+     * Writes a checksummed binary snapshot of the keys in ascending order, starting at the channel's position.
+     *
+     * @throws IllegalArgumentException if a key is encoded in more than 64 MiB
+     */
+    public void writeSnapshot(FileChannel channel, KeyCodec<? super T> codec) throws IOException {
+        RedBlackTreeSnapshot.write(this, size, codec, channel);
+    }
+
+    public void writeSnapshot(Path path, KeyCodec<? super T> codec) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            writeSnapshot(channel, codec);
+            channel.force(false);
+        }
+    }
+
+    /**
+     * Restores a tree written by {@link #writeSnapshot} in O(n), streaming keys into the sorted build.
+     *
+     * @throws IOException if the snapshot is truncated or corrupt, or its keys are not in ascending order
+     *                     of the comparator
+     */
+    public static <T> RedBlackTree<T> readSnapshot(FileChannel channel,
+                                                   Comparator<Object> comparator,
+                                                   boolean orderStatistics,
+                                                   KeyCodec<? extends T> codec) throws IOException {
+        return RedBlackTreeSnapshot.read(channel, comparator, orderStatistics, codec);
+    }
+
+    public static <T> RedBlackTree<T> readSnapshot(Path path, Comparator<Object> comparator,
+                                                   KeyCodec<? extends T> codec) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return readSnapshot(channel, comparator, false, codec);
+        }
     }
 
     /**
@@ -39,8 +200,10 @@ public class RedBlackTree<T> implements Collection<T> {
 
     /**
      * Node of red-black tree.
+     * <p>
+     * Package-private, so that {@link RedBlackTreeMap} can keep values in its nodes, see {@link #newNode}.
      */
-    private static final class Node<T> {
+    static class Node<T> {
         T key;
         Node<T> parent;
         Node<T> leftChild;
@@ -59,6 +222,27 @@ public class RedBlackTree<T> implements Collection<T> {
             this.color = color;
         }
 
+        /**
+         * Red leaf, as every node is created on insertion.
+         */
+        Node(T key, Node<T> parent) {
+            this(key, parent, null, null, Color.RED);
+        }
+
+        /**
+         * Moves contents of another node into this one, when removal unlinks that node in place of this one.
+         */
+        void takeOver(Node<T> other) {
+            key = other.key;
+        }
+
+        /**
+         * Recomputes data the node keeps about its subtree from its own key and its children,
+         * whose data is already up to date; only called in augmented trees.
+         */
+        void update() {
+        }
+
         Node<T> findGrandparent() {
             if (this.parent == null) return null;
             return this.parent.parent;
@@ -73,20 +257,65 @@ public class RedBlackTree<T> implements Collection<T> {
             return grandpa.leftChild;
         }
 
-        Node<T> findSibling(Node<T> parent) {
-            if (parent == null) return null;
-            if (this == parent.leftChild) return parent.rightChild;
-            return parent.leftChild;
+    }
+
+    /**
+     * Node of order-statistic tree, which knows the number of nodes in its subtree.
+     */
+    private static final class SizedNode<T> extends Node<T> {
+        int size = 1;
+
+        public SizedNode(T key, Node<T> parent) {
+            super(key, parent);
+        }
+    }
+
+    private static int sizeOf(Node<?> node) {
+        if (node == null) return 0;
+        return ((SizedNode<?>) node).size;
+    }
+
+    private static void resize(Node<?> node) {
+        ((SizedNode<?>) node).size = sizeOf(node.leftChild) + sizeOf(node.rightChild) + 1;
+    }
+
+    /**
+     * Adds delta to subtree sizes of the node and all of its ancestors.
+     */
+    private static void resizePath(Node<?> node, int delta) {
+        for (Node<?> current = node; current != null; current = current.parent) {
+            ((SizedNode<?>) current).size += delta;
         }
+    }
 
-        boolean isRed() {
-            return this.color == Color.RED;
+    /**
+     * Updates augmented data of the node and all of its ancestors.
+     */
+    private static void updatePath(Node<?> node) {
+        for (Node<?> current = node; current != null; current = current.parent) {
+            current.update();
         }
     }
 
+    /**
+     * Absent children are leaves, and leaves are black.
+     */
+    private static boolean isRed(Node<?> node) {
+        return node != null && node.color == Color.RED;
+    }
+
+    /**
+     * Unlike a method on {@link Node}, works when the node itself is an absent (black) leaf.
+     */
+    private static <T> Node<T> siblingOf(Node<T> node, Node<T> parent) {
+        if (node == parent.leftChild) return parent.rightChild;
+        return parent.leftChild;
+    }
+
     private void leftRotate(Node<T> u) {
         if (u == null) return;
         if (u.rightChild == null) return;
+        countLeftRotation();
 
         Node<T> v = u.rightChild;
         u.rightChild = v.leftChild;
@@ -108,11 +337,21 @@ public class RedBlackTree<T> implements Collection<T> {
 
         v.leftChild = u;
         u.parent = v;
+
+        if (orderStatistics) {
+            ((SizedNode<T>) v).size = sizeOf(u);
+            resize(u);
+        }
+        if (augmented) {
+            u.update();
+            v.update();
+        }
     }
 
     private void rightRotate(Node<T> u) {
         if (u == null) return;
         if (u.leftChild == null) return;
+        countRightRotation();
 
         Node<T> v = u.leftChild;
         u.leftChild = v.rightChild;
@@ -134,42 +373,262 @@ public class RedBlackTree<T> implements Collection<T> {
 
         v.rightChild = u;
         u.parent = v;
+
+        if (orderStatistics) {
+            ((SizedNode<T>) v).size = sizeOf(u);
+            resize(u);
+        }
+        if (augmented) {
+            u.update();
+            v.update();
+        }
     }
 
-    private void insert(T item) {
+    /**
+     * Inserts the item unless an equal one is present, with a single comparator-only descent.
+     * <p>
+     * The finger is tried first: an item falling right after the last inserted one is attached
+     * next to it without descending from the root.
+     *
+     * @return the node with an equal key, or {@code null} if the item was inserted,
+     * in which case its node is the {@link #finger}
+     */
+    private Node<T> insert(T item) {
+        countOperation();
+
+        if (finger != null) {
+            int cmp = compare(item, finger.key);
+            if (cmp == 0) return finger;
+
+            if (cmp > 0) {
+                int upperCmp = fingerUpper == null ? -1 : compare(item, fingerUpper.key);
+                if (upperCmp == 0) return fingerUpper;
+
+                if (upperCmp < 0) {
+                    // Successor of the finger is the leftmost node of its right subtree, if there is one.
+                    if (finger.rightChild == null) {
+                        attach(item, finger, false, fingerUpper);
+                    } else {
+                        attach(item, fingerUpper, true, fingerUpper);
+                    }
+                    return null;
+                }
+            }
+        }
+
         Node<T> current = root;
         Node<T> previous = null;
+        Node<T> upper = null;
+        int cmp = 0;
 
         while (current != null) {
             previous = current;
 
-            if (Objects.compare(item, current.key, comparator) < 0) {
+            cmp = compare(item, current.key);
+            if (cmp < 0) {
+                upper = current;
                 current = current.leftChild;
-            } else {
+            } else if (cmp > 0) {
                 current = current.rightChild;
+            } else {
+                return current;
+            }
+        }
+
+        attach(item, previous, cmp < 0, upper);
+        return null;
+    }
+
+    /**
+     * Inserts ascending items, skipping those already present, searching for the place of each one
+     * from the node of the previous one instead of the root: the search climbs to the lowest ancestor
+     * whose subtree spans the item and descends from there. A run of m items then costs
+     * O(m log(n/m + 1)) comparisons instead of O(m log n).
+     *
+     * @return number of inserted items
+     * @throws IllegalArgumentException if the items aren't ascending
+     */
+    int addAscending(Iterator<? extends T> items) {
+        int inserted = 0;
+        Node<T> previous = null;
+        while (items.hasNext()) {
+            T item = items.next();
+            countOperation();
+
+            Node<T> current = root;
+            Node<T> upper = null;
+            if (previous != null) {
+                int order = compare(item, previous.key);
+                if (order < 0) {
+                    throw new IllegalArgumentException("Items aren't ascending");
+                }
+                if (order == 0) continue;
+
+                // Subtree of a right child is bounded above by the bound of its parent, so only left children are checked.
+                current = previous;
+                while (current.parent != null) {
+                    if (current == current.parent.leftChild && compare(item, current.parent.key) < 0) {
+                        upper = current.parent;
+                        break;
+                    }
+                    current = current.parent;
+                }
+            }
+
+            Node<T> parent = null;
+            int cmp = 0;
+            while (current != null) {
+                parent = current;
+                cmp = compare(item, current.key);
+                if (cmp < 0) {
+                    upper = current;
+                    current = current.leftChild;
+                } else if (cmp > 0) {
+                    current = current.rightChild;
+                } else {
+                    break;
+                }
             }
+
+            if (current != null) {
+                previous = current;
+                continue;
+            }
+            attach(item, parent, cmp < 0, upper);
+            size++;
+            inserted++;
+            previous = finger;
         }
+        return inserted;
+    }
+
+    /**
+     * Returns the node with a key equal to the given one, inserting the key if there is none,
+     * with the same single descent as {@link #add}.
+     */
+    Node<T> findOrInsertNode(T key) {
+        Node<T> existing = insert(key);
+        if (existing != null) return existing;
+
+        size++;
+        return finger;
+    }
+
+    /**
+     * Creates a red leaf for the key; overridden by {@link RedBlackTreeMap} and {@link RedBlackMultiset} to create their nodes.
+     */
+    Node<T> newNode(T key, Node<T> parent) {
+        return orderStatistics ? new SizedNode<>(key, parent) : new Node<>(key, parent);
+    }
 
-        Node<T> inserting = new Node<>(item, previous, null, null, Color.RED);
+    /**
+     * Links a new node under the parent and makes it the finger.
+     *
+     * @param upper in-order successor of the new node
+     */
+    private void attach(T item, Node<T> parent, boolean asLeftChild, Node<T> upper) {
+        Node<T> inserting = freeNodes != null ? reuseNode(item, parent) : newNode(item, parent);
 
-        if (previous == null) {
+        if (parent == null) {
             root = inserting;
+            leftmost = inserting;
+            rightmost = inserting;
+        } else if (asLeftChild) {
+            parent.leftChild = inserting;
+            if (parent == leftmost) {
+                leftmost = inserting;
+            }
         } else {
-            if (Objects.compare(item, previous.key, comparator) < 0) {
-                previous.leftChild = inserting;
-            } else {
-                previous.rightChild = inserting;
+            parent.rightChild = inserting;
+            if (parent == rightmost) {
+                rightmost = inserting;
             }
         }
 
+        if (orderStatistics) {
+            resizePath(parent, 1);
+        }
+        if (augmented) {
+            updatePath(inserting);
+        }
+        modCount++;
+
+        finger = inserting;
+        fingerUpper = upper;
+
         insertFixup(inserting);
     }
 
+    /**
+     * Replaces contents of the empty tree with the given ascending elements.
+     * <p>
+     * The tree is built perfectly balanced with all nodes black except those on the deepest level,
+     * which may be incomplete and is colored red to keep black heights equal.
+     */
+    private void buildFromSorted(Iterator<? extends T> sorted, int count) {
+        if (count < 0) {
+            throw new IllegalArgumentException("Negative size: " + count);
+        }
+
+        root = buildFromSorted(0, 0, count - 1, redLevelOf(count), sorted, null);
+        size = count;
+        modCount++;
+        findExtremes();
+    }
+
+    private Node<T> buildFromSorted(int level, int lo, int hi, int redLevel,
+                                    Iterator<? extends T> sorted, Node<T> previous) {
+        if (hi < lo) return null;
+
+        int mid = (lo + hi) >>> 1;
+
+        Node<T> left = buildFromSorted(level + 1, lo, mid - 1, redLevel, sorted, previous);
+
+        T key = sorted.next();
+        Node<T> last = left != null ? maximum(left) : previous;
+        if (last != null && compare(last.key, key) >= 0) {
+            throw new IllegalArgumentException("Elements are not in strictly ascending order");
+        }
+
+        Node<T> middle = newNode(key, null);
+        middle.color = level == redLevel ? Color.RED : Color.BLACK;
+
+        if (left != null) {
+            middle.leftChild = left;
+            left.parent = middle;
+        }
+
+        Node<T> right = buildFromSorted(level + 1, mid + 1, hi, redLevel, sorted, middle);
+        if (right != null) {
+            middle.rightChild = right;
+            right.parent = middle;
+        }
+
+        if (orderStatistics) {
+            ((SizedNode<T>) middle).size = hi - lo + 1;
+        }
+        if (augmented) {
+            middle.update();
+        }
+
+        return middle;
+    }
+
+    /**
+     * Depth of the deepest level of a perfectly balanced tree of the given size,
+     * if that level is incomplete.
+     */
+    private static int redLevelOf(int count) {
+        return 31 - Integer.numberOfLeadingZeros(count + 1);
+    }
+
     private void insertFixup(Node<T> node) {
         insertCaseNo1(node);
     }
 
     private void insertCaseNo1(Node<T> z) {
+        countInsertCase(1);
+
         if (z == null) return;
 
         if (z.parent == null) {
@@ -180,15 +639,19 @@ public class RedBlackTree<T> implements Collection<T> {
     }
 
     private void insertCaseNo2(Node<T> z) {
+        countInsertCase(2);
+
         if (z.parent.color != Color.BLACK) {
             insertCaseNo3(z);
         }
     }
 
     private void insertCaseNo3(Node<T> z) {
+        countInsertCase(3);
+
         Node<T> u = z.findUncle();
 
-        if (u != null && u.isRed()) {
+        if (isRed(u)) {
             z.parent.color = Color.BLACK;
             u.color = Color.BLACK;
 
@@ -201,6 +664,8 @@ public class RedBlackTree<T> implements Collection<T> {
     }
 
     private void insertCaseNo4(Node<T> node) {
+        countInsertCase(4);
+
         Node<T> z = node;
         Node<T> g = Objects.requireNonNull(z.findGrandparent());
 
@@ -216,6 +681,8 @@ public class RedBlackTree<T> implements Collection<T> {
     }
 
     private void insertCaseNo5(Node<T> z) {
+        countInsertCase(5);
+
         Node<T> g = Objects.requireNonNull(z.findGrandparent());
 
         z.parent.color = Color.BLACK;
@@ -238,41 +705,67 @@ public class RedBlackTree<T> implements Collection<T> {
             removable = successorOf(current);
         }
 
-        Node<T> child = null;
-        if (removable != null) {
-            if (removable.leftChild != null) {
-                child = removable.leftChild;
-            } else {
-                child = removable.rightChild;
-            }
+        // The least and the greatest nodes have at most one child, so they are removed themselves,
+        // while the greatest key may move into the current node from its successor.
+        if (current == leftmost) {
+            leftmost = successorOf(current);
+        }
+        if (current == rightmost) {
+            rightmost = predecessorOf(current);
+        } else if (removable == rightmost) {
+            rightmost = current;
+        }
+
+        Node<T> child;
+        if (removable.leftChild != null) {
+            child = removable.leftChild;
+        } else {
+            child = removable.rightChild;
         }
 
+        Node<T> parent = removable.parent;
         if (child != null) {
-            child.parent = removable.parent;
+            child.parent = parent;
         }
 
-        if (removable != null && removable.parent == null) {
+        if (parent == null) {
             root = child;
+        } else if (removable == parent.leftChild) {
+            parent.leftChild = child;
         } else {
-            if (removable == Objects.requireNonNull(removable).parent.leftChild) {
-                removable.parent.leftChild = child;
-            } else {
-                removable.parent.rightChild = child;
-            }
+            parent.rightChild = child;
         }
 
         if (removable != current) {
-            current.key = removable.key;
+            current.takeOver(removable);
+        }
+
+        if (current == finger || current == fingerUpper) {
+            finger = null;
+            fingerUpper = null;
+        } else if (removable == finger) {
+            finger = current;
+        } else if (removable == fingerUpper) {
+            fingerUpper = current;
+        }
+
+        if (orderStatistics) {
+            resizePath(parent, -1);
+        }
+        if (augmented) {
+            // The node which took over the removed key, if any, is on the path as well.
+            updatePath(parent);
         }
 
         if (removable.color == Color.BLACK) {
-            if (child != null && child.isRed()) {
+            if (isRed(child)) {
                 child.color = Color.BLACK;
             } else {
-                removeFixup(child, child != null ? child.parent : null);
+                removeFixup(child, parent);
             }
         }
 
+        removable.parent = null;
         removable.leftChild = null;
         removable.rightChild = null;
 
@@ -284,14 +777,18 @@ public class RedBlackTree<T> implements Collection<T> {
     }
 
     private void removeCaseNo1(Node<T> z, Node<T> parent) {
+        countRemoveCase(1);
+
         if (parent != null) {
             removeCaseNo2(z, parent);
         }
     }
 
     private void removeCaseNo2(Node<T> z, Node<T> parent) {
-        Node<T> s = z.findSibling(parent);
-        if (s.isRed()) {
+        countRemoveCase(2);
+
+        Node<T> s = siblingOf(z, parent);
+        if (isRed(s)) {
             parent.color = Color.RED;
             s.color = Color.BLACK;
 
@@ -305,13 +802,14 @@ public class RedBlackTree<T> implements Collection<T> {
     }
 
     private void removeCaseNo3(Node<T> z, Node<T> parent) {
-        Node<T> s = z.findSibling(parent);
+        countRemoveCase(3);
 
-        if (!parent.isRed() &&
-                s != null &&
-                s.color == Color.BLACK &&
-                !s.leftChild.isRed() &&
-                !s.rightChild.isRed()) {
+        Node<T> s = siblingOf(z, parent);
+
+        if (!isRed(parent) &&
+                !isRed(s) &&
+                !isRed(s.leftChild) &&
+                !isRed(s.rightChild)) {
             s.color = Color.RED;
             removeCaseNo1(parent, parent.parent);
         } else {
@@ -320,13 +818,14 @@ public class RedBlackTree<T> implements Collection<T> {
     }
 
     private void removeCaseNo4(Node<T> z, Node<T> parent) {
-        Node<T> s = z.findSibling(parent);
+        countRemoveCase(4);
+
+        Node<T> s = siblingOf(z, parent);
 
-        if (parent.isRed() &&
-                s != null &&
-                s.color == Color.BLACK &&
-                !s.leftChild.isRed() &&
-                !s.rightChild.isRed()) {
+        if (isRed(parent) &&
+                !isRed(s) &&
+                !isRed(s.leftChild) &&
+                !isRed(s.rightChild)) {
             s.color = Color.RED;
             parent.color = Color.BLACK;
         } else {
@@ -335,18 +834,20 @@ public class RedBlackTree<T> implements Collection<T> {
     }
 
     private void removeCaseNo5(Node<T> z, Node<T> parent) {
-        Node<T> s = z.findSibling(parent);
+        countRemoveCase(5);
 
-        if (s != null && s.color == Color.BLACK) {
+        Node<T> s = siblingOf(z, parent);
+
+        if (!isRed(s)) {
             if (z == parent.leftChild &&
-                    !s.rightChild.isRed() &&
-                    s.leftChild.isRed()) {
+                    !isRed(s.rightChild) &&
+                    isRed(s.leftChild)) {
                 s.color = Color.RED;
                 s.leftChild.color = Color.BLACK;
                 rightRotate(s);
             } else if (z == parent.rightChild &&
-                    !s.leftChild.isRed() &&
-                    s.rightChild.isRed()) {
+                    !isRed(s.leftChild) &&
+                    isRed(s.rightChild)) {
                 s.color = Color.RED;
                 s.rightChild.color = Color.BLACK;
                 leftRotate(s);
@@ -356,23 +857,23 @@ public class RedBlackTree<T> implements Collection<T> {
     }
 
     private void removeCaseNo6(Node<T> z, Node<T> parent) {
-        Node<T> s = z.findSibling(parent);
+        countRemoveCase(6);
 
-        if (s != null) {
-            s.color = parent.color;
-            parent.color = Color.BLACK;
+        Node<T> s = siblingOf(z, parent);
 
-            if (z == parent.leftChild) {
-                s.rightChild.color = Color.BLACK;
-                leftRotate(parent);
-            } else {
-                s.rightChild.color = Color.BLACK;
-                rightRotate(parent);
-            }
+        s.color = parent.color;
+        parent.color = Color.BLACK;
+
+        if (z == parent.leftChild) {
+            s.rightChild.color = Color.BLACK;
+            leftRotate(parent);
+        } else {
+            s.leftChild.color = Color.BLACK;
+            rightRotate(parent);
         }
     }
 
-    private Node<T> minimum(Node<T> node) {
+    Node<T> minimum(Node<T> node) {
         if (node == null) return null;
 
         Node<T> current =  node;
@@ -383,7 +884,7 @@ public class RedBlackTree<T> implements Collection<T> {
         return current;
     }
 
-    private Node<T> successorOf(Node<T> node) {
+    Node<T> successorOf(Node<T> node) {
         if (node == null) return null;
 
         if (node.rightChild != null) {
@@ -401,63 +902,421 @@ public class RedBlackTree<T> implements Collection<T> {
         return upward;
     }
 
-    private Node<T> find(Object key) {
+    Node<T> maximum(Node<T> node) {
+        if (node == null) return null;
+
+        Node<T> current = node;
+        while (current.rightChild != null) {
+            current = current.rightChild;
+        }
+
+        return current;
+    }
+
+    Node<T> predecessorOf(Node<T> node) {
+        if (node == null) return null;
+
+        if (node.leftChild != null) {
+            return maximum(node.leftChild);
+        }
+
+        Node<T> current = node;
+        Node<T> upward = current.parent;
+
+        while (upward != null && current == upward.leftChild) {
+            current = upward;
+            upward = current.parent;
+        }
+
+        return upward;
+    }
+
+    int compare(Object a, Object b) {
+        countComparison();
+        return Objects.compare(a, b, comparator);
+    }
+
+    /**
+     * Finds the node with the least key greater than (or equal to, if inclusive) the given key.
+     */
+    Node<T> leastAbove(Object key, boolean inclusive) {
+        countOperation();
+
         Node<T> current = root;
+        Node<T> candidate = null;
 
-        while (true) {
-            if (current == null) return null;
-            if (Objects.equals(current.key, key)) return current;
+        while (current != null) {
+            int cmp = compare(key, current.key);
+            if (cmp == 0 && inclusive) return current;
 
-            if (Objects.compare(key, current.key, comparator) < 0) {
+            if (cmp < 0) {
+                candidate = current;
                 current = current.leftChild;
             } else {
                 current = current.rightChild;
             }
         }
-    }
-
-    @Override
-    public int size() {
-        return size;
-    }
-
-    @Override
-    public boolean isEmpty() {
-        return root == null;
-    }
 
-    @Override
-    public boolean contains(Object o) {
-        return find(o) != null;
+        return candidate;
     }
 
-    public class RedBlackTreeIterator implements Iterator<T> {
-        private Node<T> next;
+    /**
+     * Finds the node with the greatest key less than (or equal to, if inclusive) the given key.
+     */
+    Node<T> greatestBelow(Object key, boolean inclusive) {
+        countOperation();
 
-        public RedBlackTreeIterator(Node<T> root) {
-            next = minimum(root);
-        }
+        Node<T> current = root;
+        Node<T> candidate = null;
 
-        public boolean hasNext(){
-            return next != null;
-        }
+        while (current != null) {
+            int cmp = compare(key, current.key);
+            if (cmp == 0 && inclusive) return current;
 
-        public T next() {
-            if (!hasNext()) {
-                throw new NoSuchElementException();
+            if (cmp > 0) {
+                candidate = current;
+                current = current.rightChild;
+            } else {
+                current = current.leftChild;
             }
-            T result = next.key;
-            next = successorOf(next);
-            return result;
         }
+
+        return candidate;
     }
 
-    @Override
-    public Iterator<T> iterator() {
-        return new RedBlackTreeIterator(root);
+    static <T> T keyOrNull(Node<T> node) {
+        return node == null ? null : node.key;
     }
 
-    @Override
+    static <T> T keyOrThrow(Node<T> node) {
+        if (node == null) {
+            throw new NoSuchElementException();
+        }
+        return node.key;
+    }
+
+    void removeNode(Node<T> node) {
+        Node<T> removed = removeImpl(node);
+        if (freeCount < maxFreeNodes) {
+            recycleNode(removed);
+        }
+        size--;
+        modCount++;
+    }
+
+    private T pollNode(Node<T> node) {
+        if (node == null) return null;
+
+        T key = node.key;
+        removeNode(node);
+        return key;
+    }
+
+    Node<T> firstNode() {
+        return leftmost;
+    }
+
+    Node<T> rootNode() {
+        return root;
+    }
+
+    /**
+     * Number of structural modifications so far, for views which walk nodes on their own to fail fast.
+     */
+    int modCount() {
+        return modCount;
+    }
+
+    Node<T> lastNode() {
+        return rightmost;
+    }
+
+    Node<T> find(Object key) {
+        countOperation();
+
+        Node<T> current = root;
+
+        while (current != null) {
+            int cmp = compare(key, current.key);
+            if (cmp < 0) {
+                current = current.leftChild;
+            } else if (cmp > 0) {
+                current = current.rightChild;
+            } else {
+                return current;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Height of a red-black tree with up to {@link Integer#MAX_VALUE} elements doesn't exceed 2 log(n + 1).
+     */
+    private static final int MAX_HEIGHT = 64;
+
+    /**
+     * Ratio of removed to kept elements above which {@link #removeIf} rebuilds the tree.
+     * <p>
+     * Relinking costs about as much as the filtering pass itself, while unlinking grows with every removal
+     * and overtakes it at a few percent of removed elements.
+     */
+    private static final double REBUILD_RATIO = 0.02;
+
+    /**
+     * Lookup for optimistic readers, which may run concurrently with a writer.
+     * <p>
+     * Such a reader can observe a rotation halfway done, including transient cycles,
+     * so it gives up after more steps than a valid tree can be deep.
+     *
+     * @throws ConcurrentModificationException if the descent ran too long
+     */
+    boolean containsOptimistically(Object key) {
+        Node<T> current = root;
+
+        for (int depth = 0; depth < MAX_HEIGHT; depth++) {
+            if (current == null) return false;
+
+            int cmp = compare(key, current.key);
+            if (cmp < 0) {
+                current = current.leftChild;
+            } else if (cmp > 0) {
+                current = current.rightChild;
+            } else {
+                return true;
+            }
+        }
+
+        throw new ConcurrentModificationException();
+    }
+
+    /**
+     * Counterpart of {@link #higher} for optimistic readers, see {@link #containsOptimistically}.
+     * Starts from the least element when the key is {@link #UNBOUNDED}, and returns
+     * {@link #UNBOUNDED} when there is no greater element.
+     *
+     * @throws ConcurrentModificationException if the descent ran too long
+     */
+    Object higherOptimistically(Object key) {
+        Node<T> current = root;
+        Object candidate = UNBOUNDED;
+
+        for (int depth = 0; depth < MAX_HEIGHT; depth++) {
+            if (current == null) return candidate;
+
+            if (key == UNBOUNDED || compare(key, current.key) < 0) {
+                candidate = current.key;
+                current = current.leftChild;
+            } else {
+                current = current.rightChild;
+            }
+        }
+
+        throw new ConcurrentModificationException();
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return root == null;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return find(o) != null;
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return new RedBlackTreeIterator(leftmost, UNBOUNDED, true);
+    }
+
+    /**
+     * Estimated number of bytes the tree structure occupies per element, excluding the keys themselves.
+     * <p>
+     * Every element costs one {@link Node}: an object header plus references to the key,
+     * parent, both children and color, and the subtree size in order-statistic mode.
+     */
+    public double bytesPerElement() {
+        if (size == 0) return 0;
+        return MemoryLayout.objectBytes(5, orderStatistics ? 1 : 0);
+    }
+
+    /**
+     * Spliterator which splits on subtree boundaries.
+     * <p>
+     * Its remaining elements are a sequence of units, each being either a single node or a whole subtree,
+     * kept on a stack with the first unit on top. Splitting hands out everything before the first
+     * whole subtree plus that subtree's left half, so the initial split divides the tree at the root.
+     * Whole subtrees are traversed recursively, without {@link #successorOf}.
+     * <p>
+     * Sizes are exact in order-statistic mode; otherwise only the initial size is, and split parts
+     * estimate half of their parent each and stop reporting {@link Spliterator#SIZED}.
+     */
+    private final class RedBlackTreeSpliterator implements Spliterator<T> {
+        private Node<T>[] units;
+        private boolean[] whole;
+        private int top;
+        private long estimate;
+        private boolean exact;
+
+        RedBlackTreeSpliterator(Node<T> root, long estimate, boolean exact) {
+            @SuppressWarnings("unchecked") Node<T>[] units = (Node<T>[]) new Node<?>[2 * MAX_HEIGHT];
+            this.units = units;
+            this.whole = new boolean[2 * MAX_HEIGHT];
+            this.top = 0;
+            this.estimate = estimate;
+            this.exact = exact;
+
+            if (root != null) {
+                push(root, true);
+            }
+        }
+
+        private void push(Node<T> node, boolean isWhole) {
+            if (top == units.length) {
+                units = Arrays.copyOf(units, top * 2);
+                whole = Arrays.copyOf(whole, top * 2);
+            }
+            units[top] = node;
+            whole[top] = isWhole;
+            top++;
+        }
+
+        private void pushSubtree(Node<T> node) {
+            if (node != null) {
+                push(node, true);
+            }
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            Objects.requireNonNull(action);
+
+            while (top > 0 && whole[top - 1]) {
+                Node<T> node = units[--top];
+                pushSubtree(node.rightChild);
+                push(node, false);
+                pushSubtree(node.leftChild);
+            }
+            if (top == 0) return false;
+
+            Node<T> node = units[--top];
+            units[top] = null;
+            estimate--;
+            action.accept(node.key);
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super T> action) {
+            Objects.requireNonNull(action);
+
+            while (top > 0) {
+                Node<T> node = units[--top];
+                units[top] = null;
+                if (whole[top]) {
+                    forEachInSubtree(node, action);
+                } else {
+                    action.accept(node.key);
+                }
+            }
+            estimate = 0;
+        }
+
+        private void forEachInSubtree(Node<T> node, Consumer<? super T> action) {
+            for (Node<T> current = node; current != null; current = current.rightChild) {
+                forEachInSubtree(current.leftChild, action);
+                action.accept(current.key);
+            }
+        }
+
+        @Override
+        public Spliterator<T> trySplit() {
+            int split;
+            Node<T> pivot;
+
+            while (true) {
+                split = top - 1;
+                while (split >= 0 && !whole[split]) {
+                    split--;
+                }
+                if (split < 0) return null;
+
+                pivot = units[split];
+                if (pivot.leftChild != null || split < top - 1) break;
+
+                // The prefix would be empty, so move on to the right subtree of the leading node.
+                if (pivot.rightChild != null) {
+                    units[split] = pivot.rightChild;
+                    push(pivot, false);
+                } else {
+                    whole[split] = false;
+                }
+            }
+
+            RedBlackTreeSpliterator prefix = new RedBlackTreeSpliterator(null, 0, exact);
+            prefix.pushSubtree(pivot.leftChild);
+            for (int i = split + 1; i < top; i++) {
+                prefix.push(units[i], whole[i]);
+                units[i] = null;
+            }
+
+            top = split;
+            pushSubtree(pivot.rightChild);
+            push(pivot, false);
+
+            if (orderStatistics) {
+                prefix.estimate = prefix.exactSize();
+            } else {
+                prefix.estimate = estimate >>> 1;
+                exact = false;
+                prefix.exact = false;
+            }
+            estimate -= prefix.estimate;
+            return prefix;
+        }
+
+        private long exactSize() {
+            long count = 0;
+            for (int i = 0; i < top; i++) {
+                count += whole[i] ? sizeOf(units[i]) : 1;
+            }
+            return count;
+        }
+
+        @Override
+        public long estimateSize() {
+            return estimate;
+        }
+
+        @Override
+        public int characteristics() {
+            int characteristics = Spliterator.DISTINCT | Spliterator.SORTED | Spliterator.ORDERED;
+            if (orderStatistics) {
+                characteristics |= Spliterator.SIZED | Spliterator.SUBSIZED;
+            } else if (exact) {
+                characteristics |= Spliterator.SIZED;
+            }
+            return characteristics;
+        }
+
+        @Override
+        public Comparator<? super T> getComparator() {
+            return comparator;
+        }
+    }
+
+    @Override
+    public Spliterator<T> spliterator() {
+        return new RedBlackTreeSpliterator(root, size, true);
+    }
+
+    @Override
     public Object[] toArray() {
         Object[] a = new Object[size];
         int i = 0;
@@ -479,12 +1338,17 @@ public class RedBlackTree<T> implements Collection<T> {
         return a;
     }
 
+    /**
+     * Adds the element unless an equal one is present.
+     * <p>
+     * Ascending runs of insertions, e.g. almost monotonic timestamps, go through the finger
+     * and cost amortized O(1) outside of order-statistic mode.
+     */
     @Override
     public boolean add(T t) {
-        if (contains(t)) {
+        if (insert(t) != null) {
             return false;
         }
-        insert(t);
         size++;
         return true;
     }
@@ -495,8 +1359,7 @@ public class RedBlackTree<T> implements Collection<T> {
         if (node == null) {
             return false;
         }
-        removeImpl(node);
-        size--;
+        removeNode(node);
         return true;
     }
 
@@ -510,8 +1373,20 @@ public class RedBlackTree<T> implements Collection<T> {
         return true;
     }
 
+    /**
+     * Elements of a sorted set with the same comparator are built into an empty tree in O(m),
+     * and merged into a non-empty one by {@link #addAscending} in O(m log(n/m + 1)).
+     */
     @Override
     public boolean addAll(Collection<? extends T> c) {
+        if (c instanceof SortedSet<?> sorted && comparator.equals(sorted.comparator()) && !c.isEmpty()) {
+            if (root == null) {
+                buildFromSorted(c.iterator(), c.size());
+                return true;
+            }
+            return addAscending(c.iterator()) > 0;
+        }
+
         boolean changed = false;
         for (T o : c) {
             changed |= add(o);
@@ -519,8 +1394,24 @@ public class RedBlackTree<T> implements Collection<T> {
         return changed;
     }
 
+    /**
+     * Removes elements of the collection one by one, at O(log n) each, unless there are many of them
+     * compared to the tree and their membership is cheap to test: then the tree is filtered with
+     * {@link #removeIf} against a merge walk of a sorted set with the same comparator, or against
+     * {@link Set#contains} of another set.
+     */
     @Override
     public boolean removeAll(Collection<?> c) {
+        int log = 32 - Integer.numberOfLeadingZeros(size);
+        if ((long) c.size() * log >= size) {
+            if (c instanceof SortedSet<?> sorted && comparator.equals(sorted.comparator())) {
+                return removeIf(new MergeWalk(sorted.iterator()));
+            }
+            if (c instanceof Set<?>) {
+                return removeIf(c::contains);
+            }
+        }
+
         boolean changed = false;
         for (Object o : c) {
             changed |= remove(o);
@@ -528,21 +1419,1392 @@ public class RedBlackTree<T> implements Collection<T> {
         return changed;
     }
 
+    /**
+     * Matches ascending keys against the elements of an ascending iterator, advancing it along the way,
+     * so that {@link #removeIf} compares each element of both once.
+     */
+    private final class MergeWalk implements Predicate<T> {
+        private final Iterator<?> others;
+        private Object current;
+        private boolean exhausted;
+
+        MergeWalk(Iterator<?> others) {
+            this.others = others;
+            advance();
+        }
+
+        private void advance() {
+            exhausted = !others.hasNext();
+            current = exhausted ? null : others.next();
+        }
+
+        @Override
+        public boolean test(T key) {
+            while (!exhausted) {
+                int cmp = compare(current, key);
+                if (cmp == 0) return true;
+                if (cmp > 0) return false;
+                advance();
+            }
+            return false;
+        }
+    }
+
     @Override
     public boolean retainAll(Collection<?> c) {
-        boolean changed = false;
-        for (T elem : this) {
-            if (!c.contains(elem)) {
-                remove(elem);
-                changed = true;
+        Objects.requireNonNull(c);
+        return removeIf(elem -> !c.contains(elem));
+    }
+
+    /**
+     * Tests every element once, in ascending order, recording the matching nodes, then removes them in bulk:
+     * if there are more than {@link #REBUILD_RATIO} of them per kept element, the kept nodes are collected
+     * and relinked into a balanced tree in O(n) without any rebalancing, otherwise the recorded nodes are
+     * unlinked one by one, without searching for them. Memory taken is proportional to the matching elements,
+     * unless the tree is rebuilt.
+     */
+    @Override
+    public boolean removeIf(Predicate<? super T> filter) {
+        Objects.requireNonNull(filter);
+        if (root == null) return false;
+
+        int expectedModCount = modCount;
+        @SuppressWarnings("unchecked") Node<T>[] matched = (Node<T>[]) new Node<?>[16];
+        int removedCount = 0;
+
+        for (Node<T> node = leftmost; node != null; node = successorOf(node)) {
+            if (filter.test(node.key)) {
+                if (removedCount == matched.length) {
+                    matched = Arrays.copyOf(matched, 2 * removedCount);
+                }
+                matched[removedCount++] = node;
             }
         }
-        return changed;
+        if (modCount != expectedModCount) {
+            throw new ConcurrentModificationException();
+        }
+        if (removedCount == 0) return false;
+
+        int keptCount = size - removedCount;
+        if (removedCount > keptCount * REBUILD_RATIO) {
+            @SuppressWarnings("unchecked") Node<T>[] kept = (Node<T>[]) new Node<?>[keptCount];
+            int next = 0;
+            int index = 0;
+            for (Node<T> node = leftmost; node != null; node = successorOf(node)) {
+                if (next < removedCount && node == matched[next]) {
+                    next++;
+                } else {
+                    kept[index++] = node;
+                }
+            }
+            rebuild(kept, keptCount);
+        } else {
+            // From the greatest: a node with both children takes over its successor's key, which is always
+            // a kept one then, so the nodes recorded below stay in place.
+            for (int i = removedCount - 1; i >= 0; i--) {
+                removeNode(matched[i]);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Relinks the given nodes, in ascending order of their keys, into a tree shaped as by {@link #buildFromSorted}.
+     */
+    private void rebuild(Node<T>[] sorted, int count) {
+        root = link(sorted, 0, count - 1, 0, redLevelOf(count));
+        if (root != null) {
+            root.parent = null;
+        }
+        size = count;
+        modCount++;
+        finger = null;
+        fingerUpper = null;
+        findExtremes();
+    }
+
+    /**
+     * Locates the least and the greatest nodes anew, after the tree was rebuilt at once.
+     */
+    private void findExtremes() {
+        leftmost = minimum(root);
+        rightmost = maximum(root);
+    }
+
+    private Node<T> link(Node<T>[] sorted, int lo, int hi, int level, int redLevel) {
+        if (hi < lo) return null;
+
+        int mid = (lo + hi) >>> 1;
+        Node<T> middle = sorted[mid];
+
+        middle.leftChild = link(sorted, lo, mid - 1, level + 1, redLevel);
+        if (middle.leftChild != null) {
+            middle.leftChild.parent = middle;
+        }
+        middle.rightChild = link(sorted, mid + 1, hi, level + 1, redLevel);
+        if (middle.rightChild != null) {
+            middle.rightChild.parent = middle;
+        }
+
+        middle.color = level == redLevel ? Color.RED : Color.BLACK;
+        if (orderStatistics) {
+            ((SizedNode<T>) middle).size = hi - lo + 1;
+        }
+        if (augmented) {
+            middle.update();
+        }
+        return middle;
     }
 
     @Override
     public void clear() {
         root = null;
+        finger = null;
+        fingerUpper = null;
+        leftmost = null;
+        rightmost = null;
         size = 0;
+        modCount++;
+    }
+
+    /**
+     * Keeps up to the given number of removed nodes and reuses them for later insertions, so that
+     * a workload which removes and adds elements at the same rate doesn't allocate nodes at all.
+     * <p>
+     * Removal through the tree, its views, iterators and cursors recycles nodes; {@link #clear}
+     * and bulk removal drop them. Each kept node costs as much memory as an element of the tree.
+     */
+    public void enableNodeRecycling(int maxFreeNodes) {
+        if (maxFreeNodes < 0) {
+            throw new IllegalArgumentException("Negative number of free nodes: " + maxFreeNodes);
+        }
+        this.maxFreeNodes = maxFreeNodes;
+        while (freeCount > maxFreeNodes) {
+            freeNodes = freeNodes.rightChild;
+            freeCount--;
+        }
+    }
+
+    public void disableNodeRecycling() {
+        enableNodeRecycling(0);
+    }
+
+    /**
+     * Puts an unlinked node on the free list, dropping its key for the GC.
+     */
+    private void recycleNode(Node<T> node) {
+        node.key = null;
+        node.rightChild = freeNodes;
+        freeNodes = node;
+        freeCount++;
+    }
+
+    /**
+     * Takes a node off the free list and turns it into a red leaf for the key, like {@link #newNode}.
+     */
+    private Node<T> reuseNode(T key, Node<T> parent) {
+        Node<T> node = freeNodes;
+        freeNodes = node.rightChild;
+        freeCount--;
+
+        node.key = key;
+        node.parent = parent;
+        node.rightChild = null;
+        node.color = Color.RED;
+        if (orderStatistics) {
+            ((SizedNode<T>) node).size = 1;
+        }
+        return node;
+    }
+
+    /**
+     * Both operands of a set operation need at least this black height, i.e. at least
+     * {@code 2^PARALLEL_BLACK_HEIGHT - 1} elements, for its halves to run in parallel.
+     */
+    static final int PARALLEL_BLACK_HEIGHT = 11;
+
+    private enum SetOperation {UNION, INTERSECTION, DIFFERENCE}
+
+    /**
+     * Union of the trees in O(m log(n/m + 1)), where m is the size of the smaller tree.
+     * <p>
+     * Both trees are consumed: their nodes are relinked into the result, and they are left empty.
+     * Of equal elements, the one of the first tree is kept.
+     */
+    public static <T> RedBlackTree<T> union(RedBlackTree<T> a, RedBlackTree<T> b) {
+        return union(a, b, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * {@link #union(RedBlackTree, RedBlackTree)}, which recurses on large halves in parallel on the pool.
+     */
+    public static <T> RedBlackTree<T> union(RedBlackTree<T> a, RedBlackTree<T> b, ForkJoinPool pool) {
+        return combine(a, b, pool, SetOperation.UNION);
+    }
+
+    /**
+     * Intersection of the trees in O(m log(n/m + 1)), where m is the size of the smaller tree.
+     * <p>
+     * Both trees are consumed like by {@link #union}; of equal elements, the one of the first tree is kept.
+     */
+    public static <T> RedBlackTree<T> intersection(RedBlackTree<T> a, RedBlackTree<T> b) {
+        return intersection(a, b, ForkJoinPool.commonPool());
+    }
+
+    public static <T> RedBlackTree<T> intersection(RedBlackTree<T> a, RedBlackTree<T> b, ForkJoinPool pool) {
+        return combine(a, b, pool, SetOperation.INTERSECTION);
+    }
+
+    /**
+     * Elements of the first tree which are not in the second one, in O(m log(n/m + 1)),
+     * where m is the size of the smaller tree.
+     * <p>
+     * Both trees are consumed like by {@link #union}.
+     */
+    public static <T> RedBlackTree<T> difference(RedBlackTree<T> a, RedBlackTree<T> b) {
+        return difference(a, b, ForkJoinPool.commonPool());
+    }
+
+    public static <T> RedBlackTree<T> difference(RedBlackTree<T> a, RedBlackTree<T> b, ForkJoinPool pool) {
+        return combine(a, b, pool, SetOperation.DIFFERENCE);
+    }
+
+    /**
+     * Detaches nodes of both trees and recombines them in a new tree, which also serves as the workspace
+     * of joins on the calling thread.
+     */
+    private static <T> RedBlackTree<T> combine(RedBlackTree<T> a, RedBlackTree<T> b,
+                                               ForkJoinPool pool, SetOperation operation) {
+        if (!a.comparator.equals(b.comparator) || a.orderStatistics != b.orderStatistics || a.augmented || b.augmented) {
+            throw new IllegalArgumentException("Trees have different comparators or node types");
+        }
+
+        RedBlackTree<T> result = new RedBlackTree<>(a.comparator, a.orderStatistics);
+        if (a == b) {
+            if (operation != SetOperation.DIFFERENCE) {
+                result.root = a.root;
+                result.size = a.size;
+                result.findExtremes();
+            }
+            a.clear();
+            return result;
+        }
+
+        Part<T> first = Part.of(a.root);
+        Part<T> second = Part.of(b.root);
+        int firstSize = a.size;
+        int secondSize = b.size;
+        a.clear();
+        b.clear();
+
+        LongAdder matches = new LongAdder();
+        Part<T> combined = pool.invoke(ForkJoinTask.adapt(() -> switch (operation) {
+            case UNION -> result.union(first, second, matches);
+            case INTERSECTION -> result.intersection(first, second, matches);
+            case DIFFERENCE -> result.difference(first, second, matches);
+        }));
+
+        result.root = combined.root;
+        result.size = switch (operation) {
+            case UNION -> firstSize + secondSize - matches.intValue();
+            case INTERSECTION -> matches.intValue();
+            case DIFFERENCE -> firstSize - matches.intValue();
+        };
+        result.findExtremes();
+        return result;
+    }
+
+    /**
+     * Detached subtree with a black root, or an empty one, along with its black height:
+     * the number of black nodes on every path from the root down to an absent leaf.
+     */
+    private record Part<T>(Node<T> root, int blackHeight) {
+        static final Part<?> EMPTY = new Part<>(null, 0);
+
+        @SuppressWarnings("unchecked")
+        static <T> Part<T> empty() {
+            return (Part<T>) EMPTY;
+        }
+
+        /**
+         * Detaches the subtree, whose black height counting its own root is given, blackening a red root.
+         */
+        static <T> Part<T> of(Node<T> node, int blackHeight) {
+            if (node == null) return empty();
+
+            node.parent = null;
+            if (node.color == Color.RED) {
+                node.color = Color.BLACK;
+                return new Part<>(node, blackHeight + 1);
+            }
+            return new Part<>(node, blackHeight);
+        }
+
+        static <T> Part<T> of(Node<T> root) {
+            int blackHeight = 0;
+            for (Node<T> node = root; node != null; node = node.leftChild) {
+                if (node.color == Color.BLACK) {
+                    blackHeight++;
+                }
+            }
+            return of(root, blackHeight);
+        }
+
+        boolean isEmpty() {
+            return root == null;
+        }
+    }
+
+    /**
+     * Keys of a part below, equal to, and above a key.
+     */
+    private record Split<T>(Part<T> less, Node<T> equal, Part<T> greater) {
+    }
+
+    private static <T> void detach(Node<T> node) {
+        node.parent = null;
+        node.leftChild = null;
+        node.rightChild = null;
+    }
+
+    /**
+     * Black height of children of the node, whose own black height is given.
+     */
+    private static int childBlackHeight(Node<?> node, int blackHeight) {
+        return node.color == Color.BLACK ? blackHeight - 1 : blackHeight;
+    }
+
+    /**
+     * Joins parts and a detached node, whose key is between the keys of the parts, in O(|difference of black heights| + 1).
+     * <p>
+     * The node becomes a red child at the point of the taller part's spine where black heights match,
+     * then the insertion fixup restores the invariants. The taller part hangs under a black sentinel
+     * during the fixup, so that a recoloring which reaches its root is visible as a red root
+     * and shows that the black height has grown.
+     */
+    private Part<T> join(Part<T> left, Node<T> node, Part<T> right) {
+        if (left.blackHeight == right.blackHeight) {
+            link(node, left.root, right.root);
+            node.color = Color.BLACK;
+            return new Part<>(node, left.blackHeight + 1);
+        }
+
+        boolean intoLeft = left.blackHeight > right.blackHeight;
+        Part<T> taller = intoLeft ? left : right;
+        int target = intoLeft ? right.blackHeight : left.blackHeight;
+
+        Node<T> parent = null;
+        Node<T> current = taller.root;
+        int height = taller.blackHeight;
+        while (isRed(current) || height > target) {
+            height = childBlackHeight(current, height);
+            parent = current;
+            current = intoLeft ? current.rightChild : current.leftChild;
+        }
+
+        if (intoLeft) {
+            link(node, current, right.root);
+            parent.rightChild = node;
+        } else {
+            link(node, left.root, current);
+            parent.leftChild = node;
+        }
+        node.parent = parent;
+        node.color = Color.RED;
+        if (orderStatistics) {
+            for (Node<T> ancestor = parent; ancestor != null; ancestor = ancestor.parent) {
+                resize(ancestor);
+            }
+        }
+
+        Node<T> sentinel = new Node<>(null, null, taller.root, null, Color.BLACK);
+        taller.root.parent = sentinel;
+        root = sentinel;
+        insertFixup(node);
+
+        Node<T> joined = sentinel.leftChild;
+        root = null;
+        return Part.of(joined, taller.blackHeight);
+    }
+
+    /**
+     * Makes the subtrees children of the node.
+     */
+    private void link(Node<T> node, Node<T> left, Node<T> right) {
+        node.leftChild = left;
+        node.rightChild = right;
+        if (left != null) left.parent = node;
+        if (right != null) right.parent = node;
+        if (orderStatistics) {
+            resize(node);
+        }
+    }
+
+    /**
+     * Joins parts, where all keys of the left one are less than those of the right one.
+     */
+    private Part<T> join(Part<T> left, Part<T> right) {
+        if (left.isEmpty()) return right;
+        if (right.isEmpty()) return left;
+
+        Node<T> last = maximum(left.root);
+        Part<T> rest = withoutLast(left.root, left.blackHeight);
+        return join(rest, last, right);
+    }
+
+    /**
+     * Part without its greatest node, which is detached.
+     */
+    private Part<T> withoutLast(Node<T> node, int blackHeight) {
+        int childHeight = childBlackHeight(node, blackHeight);
+        Node<T> left = node.leftChild;
+        Node<T> right = node.rightChild;
+        detach(node);
+
+        if (right == null) {
+            return Part.of(left, childHeight);
+        }
+        return join(Part.of(left, childHeight), node, withoutLast(right, childHeight));
+    }
+
+    private Split<T> split(Node<T> node, int blackHeight, Object key) {
+        if (node == null) {
+            return new Split<>(Part.empty(), null, Part.empty());
+        }
+
+        int childHeight = childBlackHeight(node, blackHeight);
+        Node<T> left = node.leftChild;
+        Node<T> right = node.rightChild;
+        detach(node);
+
+        int cmp = compare(key, node.key);
+        if (cmp == 0) {
+            return new Split<>(Part.of(left, childHeight), node, Part.of(right, childHeight));
+        }
+        if (cmp < 0) {
+            Split<T> split = split(left, childHeight, key);
+            return new Split<>(split.less, split.equal, join(split.greater, node, Part.of(right, childHeight)));
+        }
+        Split<T> split = split(right, childHeight, key);
+        return new Split<>(join(Part.of(left, childHeight), node, split.less), split.equal, split.greater);
+    }
+
+    private static boolean parallel(Part<?> a, Part<?> b) {
+        return Math.min(a.blackHeight, b.blackHeight) >= PARALLEL_BLACK_HEIGHT;
+    }
+
+    /**
+     * Runs the operation on both pairs of halves, forking the first one onto a fresh workspace
+     * if the halves are large, as joins of different threads can't share one.
+     */
+    private Part<T>[] both(SetOperation operation, Part<T> a1, Part<T> b1, Part<T> a2, Part<T> b2,
+                           boolean parallel, LongAdder matches) {
+        @SuppressWarnings("unchecked") Part<T>[] halves = (Part<T>[]) new Part<?>[2];
+        if (parallel) {
+            RedBlackTree<T> workspace = new RedBlackTree<>(comparator, orderStatistics);
+            ForkJoinTask<Part<T>> first = ForkJoinTask.adapt(() -> workspace.apply(operation, a1, b1, matches)).fork();
+            halves[1] = apply(operation, a2, b2, matches);
+            halves[0] = first.join();
+        } else {
+            halves[0] = apply(operation, a1, b1, matches);
+            halves[1] = apply(operation, a2, b2, matches);
+        }
+        return halves;
+    }
+
+    private Part<T> apply(SetOperation operation, Part<T> a, Part<T> b, LongAdder matches) {
+        return switch (operation) {
+            case UNION -> union(a, b, matches);
+            case INTERSECTION -> intersection(a, b, matches);
+            case DIFFERENCE -> difference(a, b, matches);
+        };
+    }
+
+    private Part<T> union(Part<T> a, Part<T> b, LongAdder matches) {
+        if (a.isEmpty()) return b;
+        if (b.isEmpty()) return a;
+
+        Node<T> node = a.root;
+        int childHeight = a.blackHeight - 1;
+        Part<T> left = Part.of(node.leftChild, childHeight);
+        Part<T> right = Part.of(node.rightChild, childHeight);
+        detach(node);
+
+        Split<T> split = split(b.root, b.blackHeight, node.key);
+        if (split.equal != null) {
+            matches.increment();
+        }
+
+        Part<T>[] halves = both(SetOperation.UNION, left, split.less, right, split.greater, parallel(a, b), matches);
+        return join(halves[0], node, halves[1]);
+    }
+
+    private Part<T> intersection(Part<T> a, Part<T> b, LongAdder matches) {
+        if (a.isEmpty() || b.isEmpty()) return Part.empty();
+
+        Node<T> node = a.root;
+        int childHeight = a.blackHeight - 1;
+        Part<T> left = Part.of(node.leftChild, childHeight);
+        Part<T> right = Part.of(node.rightChild, childHeight);
+        detach(node);
+
+        Split<T> split = split(b.root, b.blackHeight, node.key);
+
+        Part<T>[] halves = both(SetOperation.INTERSECTION, left, split.less, right, split.greater, parallel(a, b), matches);
+        if (split.equal != null) {
+            matches.increment();
+            return join(halves[0], node, halves[1]);
+        }
+        return join(halves[0], halves[1]);
+    }
+
+    private Part<T> difference(Part<T> a, Part<T> b, LongAdder matches) {
+        if (a.isEmpty() || b.isEmpty()) return a;
+
+        Node<T> node = b.root;
+        int childHeight = b.blackHeight - 1;
+        Part<T> left = Part.of(node.leftChild, childHeight);
+        Part<T> right = Part.of(node.rightChild, childHeight);
+        detach(node);
+
+        Split<T> split = split(a.root, a.blackHeight, node.key);
+        if (split.equal != null) {
+            matches.increment();
+        }
+
+        Part<T>[] halves = both(SetOperation.DIFFERENCE, split.less, left, split.greater, right, parallel(a, b), matches);
+        return join(halves[0], halves[1]);
+    }
+
+    /**
+     * Counters of hot-path events, which are not synchronized, like the tree itself.
+     */
+    private static final class Counters {
+        long operations;
+        long comparisons;
+        long leftRotations;
+        long rightRotations;
+        final long[] insertCases = new long[5];
+        final long[] removeCases = new long[6];
+    }
+
+    private void countOperation() {
+        if (STATISTICS && counters != null) {
+            counters.operations++;
+        }
+    }
+
+    private void countComparison() {
+        if (STATISTICS && counters != null) {
+            counters.comparisons++;
+        }
+    }
+
+    private void countLeftRotation() {
+        if (STATISTICS && counters != null) {
+            counters.leftRotations++;
+        }
+    }
+
+    private void countRightRotation() {
+        if (STATISTICS && counters != null) {
+            counters.rightRotations++;
+        }
+    }
+
+    private void countInsertCase(int caseNo) {
+        if (STATISTICS && counters != null) {
+            counters.insertCases[caseNo - 1]++;
+        }
+    }
+
+    private void countRemoveCase(int caseNo) {
+        if (STATISTICS && counters != null) {
+            counters.removeCases[caseNo - 1]++;
+        }
+    }
+
+    /**
+     * Starts counting descents, comparisons, rotations and fixup cases, from zero if the tree wasn't
+     * counting them yet.
+     *
+     * @throws IllegalStateException if statistics are disabled for the JVM, see {@link #STATISTICS}
+     */
+    public void enableStatistics() {
+        if (!STATISTICS) {
+            throw new IllegalStateException("Statistics are disabled by -Darx.dukalis.collections.statistics=false");
+        }
+        if (counters == null) {
+            counters = new Counters();
+        }
+    }
+
+    public void disableStatistics() {
+        counters = null;
+    }
+
+    /**
+     * Takes a snapshot of the counters along with the current height and black height, which takes O(n).
+     *
+     * @throws IllegalStateException if statistics are not enabled for the tree
+     */
+    public RedBlackTreeStatistics statistics() {
+        Counters current = counters;
+        if (current == null) {
+            throw new IllegalStateException("Statistics are not enabled for the tree");
+        }
+
+        int blackHeight = 0;
+        for (Node<T> node = root; node != null; node = node.leftChild) {
+            if (node.color == Color.BLACK) {
+                blackHeight++;
+            }
+        }
+
+        return new RedBlackTreeStatistics(size, current.operations, current.comparisons,
+                current.leftRotations, current.rightRotations,
+                current.insertCases, current.removeCases,
+                heightOf(root), blackHeight);
+    }
+
+    private static int heightOf(Node<?> node) {
+        if (node == null) return 0;
+        return 1 + Math.max(heightOf(node.leftChild), heightOf(node.rightChild));
+    }
+
+    private void requireOrderStatistics() {
+        if (!orderStatistics) {
+            throw new IllegalStateException("Tree doesn't maintain order statistics");
+        }
+    }
+
+    /**
+     * Counts elements less than (or equal to, if inclusive) the given key.
+     */
+    private int countBelow(Object key, boolean inclusive) {
+        Node<T> current = root;
+        int count = 0;
+
+        while (current != null) {
+            int cmp = compare(key, current.key);
+            if (cmp < 0 || (cmp == 0 && !inclusive)) {
+                current = current.leftChild;
+            } else {
+                count += sizeOf(current.leftChild) + 1;
+                if (cmp == 0) break;
+                current = current.rightChild;
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Returns the number of elements strictly less than the given key.
+     * <p>
+     * Requires order-statistic mode.
+     */
+    public int rank(Object key) {
+        requireOrderStatistics();
+        return countBelow(key, false);
+    }
+
+    /**
+     * Returns the element at the given position in ascending order, e.g. {@code select(size() / 2)}
+     * is the median, and {@code select((int) Math.ceil(p * size()) - 1)} is the p-th percentile.
+     * <p>
+     * Requires order-statistic mode.
+     */
+    public T select(int index) {
+        requireOrderStatistics();
+        Objects.checkIndex(index, size);
+
+        Node<T> current = root;
+        int remaining = index;
+
+        while (true) {
+            int leftSize = sizeOf(current.leftChild);
+            if (remaining < leftSize) {
+                current = current.leftChild;
+            } else if (remaining > leftSize) {
+                remaining -= leftSize + 1;
+                current = current.rightChild;
+            } else {
+                return current.key;
+            }
+        }
+    }
+
+    /**
+     * Returns the number of elements between lo and hi, both inclusive.
+     * <p>
+     * Requires order-statistic mode.
+     */
+    public int countInRange(Object lo, Object hi) {
+        requireOrderStatistics();
+        if (compare(lo, hi) > 0) return 0;
+        return countBelow(hi, true) - countBelow(lo, false);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o == this) return true;
+        if (!(o instanceof Set<?> other)) return false;
+        if (other.size() != size) return false;
+
+        try {
+            return containsAll(other);
+        } catch (ClassCastException | NullPointerException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 0;
+        for (T elem : this) {
+            if (elem != null) {
+                hash += elem.hashCode();
+            }
+        }
+        return hash;
+    }
+
+    @Override
+    public Comparator<? super T> comparator() {
+        return comparator;
+    }
+
+    @Override
+    public T first() {
+        return keyOrThrow(leftmost);
+    }
+
+    @Override
+    public T last() {
+        return keyOrThrow(rightmost);
+    }
+
+    /**
+     * Least element in O(1), like {@link #first}, but {@code null} if the tree is empty.
+     */
+    public T peekFirst() {
+        return keyOrNull(leftmost);
+    }
+
+    /**
+     * Greatest element in O(1), like {@link #last}, but {@code null} if the tree is empty.
+     */
+    public T peekLast() {
+        return keyOrNull(rightmost);
+    }
+
+    @Override
+    public T lower(T t) {
+        return keyOrNull(greatestBelow(t, false));
+    }
+
+    @Override
+    public T floor(T t) {
+        return keyOrNull(greatestBelow(t, true));
+    }
+
+    @Override
+    public T ceiling(T t) {
+        return keyOrNull(leastAbove(t, true));
+    }
+
+    @Override
+    public T higher(T t) {
+        return keyOrNull(leastAbove(t, false));
+    }
+
+    @Override
+    public T pollFirst() {
+        return pollNode(leftmost);
+    }
+
+    @Override
+    public T pollLast() {
+        return pollNode(rightmost);
+    }
+
+    @Override
+    public NavigableSet<T> descendingSet() {
+        return new SubSet(Range.all(this, true));
+    }
+
+    @Override
+    public Iterator<T> descendingIterator() {
+        return new RedBlackTreeIterator(rightmost, UNBOUNDED, false);
+    }
+
+    @Override
+    public NavigableSet<T> subSet(T fromElement, boolean fromInclusive, T toElement, boolean toInclusive) {
+        return new SubSet(Range.between(this, fromElement, fromInclusive, toElement, toInclusive));
+    }
+
+    @Override
+    public NavigableSet<T> headSet(T toElement, boolean inclusive) {
+        return new SubSet(Range.below(this, toElement, inclusive));
+    }
+
+    @Override
+    public NavigableSet<T> tailSet(T fromElement, boolean inclusive) {
+        return new SubSet(Range.above(this, fromElement, inclusive));
+    }
+
+    @Override
+    public SortedSet<T> subSet(T fromElement, T toElement) {
+        return subSet(fromElement, true, toElement, false);
+    }
+
+    @Override
+    public SortedSet<T> headSet(T toElement) {
+        return headSet(toElement, false);
+    }
+
+    @Override
+    public SortedSet<T> tailSet(T fromElement) {
+        return tailSet(fromElement, true);
+    }
+
+    /**
+     * Iterator over consecutive nodes, which stops before the node holding the fence key.
+     * <p>
+     * The fence is compared by key identity rather than by node, because removal may move
+     * a key into another node.
+     */
+    class NodeIterator {
+        private final Object fenceKey;
+        private final boolean ascending;
+        private Node<T> next;
+        private Node<T> lastReturned = null;
+        private int expectedModCount = modCount;
+
+        NodeIterator(Node<T> first, Object fenceKey, boolean ascending) {
+            this.next = first;
+            this.fenceKey = fenceKey;
+            this.ascending = ascending;
+        }
+
+        public boolean hasNext() {
+            return next != null && next.key != fenceKey;
+        }
+
+        Node<T> nextNode() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            lastReturned = next;
+            next = ascending ? successorOf(next) : predecessorOf(next);
+            return lastReturned;
+        }
+
+        public void remove() {
+            if (lastReturned == null) {
+                throw new IllegalStateException();
+            }
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            // Node with both children takes over its successor's key, and the successor node is unlinked.
+            if (ascending && lastReturned.leftChild != null && lastReturned.rightChild != null) {
+                next = lastReturned;
+            }
+            removeNode(lastReturned);
+            expectedModCount = modCount;
+            lastReturned = null;
+        }
+    }
+
+    public final class RedBlackTreeIterator extends NodeIterator implements Iterator<T> {
+        private RedBlackTreeIterator(Node<T> first, Object fenceKey, boolean ascending) {
+            super(first, fenceKey, ascending);
+        }
+
+        @Override
+        public T next() {
+            return nextNode().key;
+        }
+    }
+
+    /**
+     * Position in the tree, which moves in both directions and removes elements in place.
+     * <p>
+     * Seeking is O(log n); moving and removal are amortized O(1), as they walk from the current node
+     * instead of searching from the root. The cursor fails fast with {@link ConcurrentModificationException}
+     * if the tree was structurally modified other than through it, until it seeks again.
+     */
+    public final class Cursor {
+        private Node<T> current;
+        private int expectedModCount;
+
+        private Cursor(Node<T> current) {
+            this.current = current;
+            this.expectedModCount = modCount;
+        }
+
+        private void checkForComodification() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+        }
+
+        private boolean moveTo(Node<T> node) {
+            current = node;
+            expectedModCount = modCount;
+            return node != null;
+        }
+
+        /**
+         * Moves to the least element greater than or equal to the key.
+         *
+         * @return whether there is such an element
+         */
+        public boolean seek(Object key) {
+            return moveTo(leastAbove(key, true));
+        }
+
+        public boolean seekFirst() {
+            return moveTo(leftmost);
+        }
+
+        public boolean seekLast() {
+            return moveTo(rightmost);
+        }
+
+        /**
+         * Whether the cursor is at an element, rather than past either end of the tree.
+         */
+        public boolean isValid() {
+            return current != null;
+        }
+
+        public T key() {
+            checkForComodification();
+            if (current == null) {
+                throw new NoSuchElementException();
+            }
+            return current.key;
+        }
+
+        /**
+         * Moves to the successor of the current element.
+         *
+         * @return whether there is one
+         */
+        public boolean next() {
+            checkForComodification();
+            if (current == null) {
+                throw new NoSuchElementException();
+            }
+            current = successorOf(current);
+            return current != null;
+        }
+
+        /**
+         * Moves to the predecessor of the current element.
+         *
+         * @return whether there is one
+         */
+        public boolean prev() {
+            checkForComodification();
+            if (current == null) {
+                throw new NoSuchElementException();
+            }
+            current = predecessorOf(current);
+            return current != null;
+        }
+
+        /**
+         * Removes the current element and moves to its successor.
+         *
+         * @return whether there is one
+         */
+        public boolean remove() {
+            checkForComodification();
+            if (current == null) {
+                throw new IllegalStateException();
+            }
+
+            // Node with both children takes over its successor's key, and the successor node is unlinked.
+            Node<T> following = current.leftChild != null && current.rightChild != null
+                    ? current
+                    : successorOf(current);
+            removeNode(current);
+            return moveTo(following);
+        }
+    }
+
+    /**
+     * Returns a cursor at the first element.
+     */
+    public Cursor cursor() {
+        return new Cursor(leftmost);
+    }
+
+    /**
+     * Returns a cursor at the least element greater than or equal to the key.
+     */
+    public Cursor cursor(Object key) {
+        return new Cursor(leastAbove(key, true));
+    }
+
+    /**
+     * Key range of a tree, possibly in descending order, which range views of the set and of
+     * {@link RedBlackTreeMap} are built on.
+     * <p>
+     * Bounds are kept in the tree's ascending order regardless of the range's direction, while
+     * {@link #first}, {@link #last}, {@link #lower} and {@link #higher} follow the direction.
+     */
+    static final class Range<T> {
+        private final RedBlackTree<T> tree;
+        private final boolean fromStart;
+        private final T lo;
+        private final boolean loInclusive;
+        private final boolean toEnd;
+        private final T hi;
+        private final boolean hiInclusive;
+        final boolean descending;
+
+        Range(RedBlackTree<T> tree,
+              boolean fromStart, T lo, boolean loInclusive,
+              boolean toEnd, T hi, boolean hiInclusive,
+              boolean descending) {
+            this.tree = tree;
+            this.fromStart = fromStart;
+            this.lo = lo;
+            this.loInclusive = loInclusive;
+            this.toEnd = toEnd;
+            this.hi = hi;
+            this.hiInclusive = hiInclusive;
+            this.descending = descending;
+        }
+
+        static <T> Range<T> all(RedBlackTree<T> tree, boolean descending) {
+            return new Range<>(tree, true, null, true, true, null, true, descending);
+        }
+
+        static <T> Range<T> between(RedBlackTree<T> tree, T from, boolean fromInclusive, T to, boolean toInclusive) {
+            if (tree.compare(from, to) > 0) {
+                throw new IllegalArgumentException("fromKey > toKey");
+            }
+            return new Range<>(tree, false, from, fromInclusive, false, to, toInclusive, false);
+        }
+
+        static <T> Range<T> below(RedBlackTree<T> tree, T to, boolean inclusive) {
+            return new Range<>(tree, true, null, true, false, to, inclusive, false);
+        }
+
+        static <T> Range<T> above(RedBlackTree<T> tree, T from, boolean inclusive) {
+            return new Range<>(tree, false, from, inclusive, true, null, true, false);
+        }
+
+        private boolean tooLow(Object key) {
+            if (fromStart) return false;
+            int cmp = tree.compare(key, lo);
+            return cmp < 0 || (cmp == 0 && !loInclusive);
+        }
+
+        private boolean tooHigh(Object key) {
+            if (toEnd) return false;
+            int cmp = tree.compare(key, hi);
+            return cmp > 0 || (cmp == 0 && !hiInclusive);
+        }
+
+        boolean inRange(Object key) {
+            return !tooLow(key) && !tooHigh(key);
+        }
+
+        private boolean inClosedRange(Object key) {
+            return (fromStart || tree.compare(key, lo) >= 0) && (toEnd || tree.compare(key, hi) <= 0);
+        }
+
+        private boolean inRange(Object key, boolean inclusive) {
+            return inclusive ? inRange(key) : inClosedRange(key);
+        }
+
+        /**
+         * Whether the range spans the whole tree.
+         */
+        boolean isWhole() {
+            return fromStart && toEnd;
+        }
+
+        private Node<T> absLowest() {
+            Node<T> node = fromStart ? tree.leftmost : tree.leastAbove(lo, loInclusive);
+            return (node == null || tooHigh(node.key)) ? null : node;
+        }
+
+        private Node<T> absHighest() {
+            Node<T> node = toEnd ? tree.rightmost : tree.greatestBelow(hi, hiInclusive);
+            return (node == null || tooLow(node.key)) ? null : node;
+        }
+
+        private Node<T> absLeastAbove(Object key, boolean inclusive) {
+            if (tooLow(key)) return absLowest();
+            Node<T> node = tree.leastAbove(key, inclusive);
+            return (node == null || tooHigh(node.key)) ? null : node;
+        }
+
+        private Node<T> absGreatestBelow(Object key, boolean inclusive) {
+            if (tooHigh(key)) return absHighest();
+            Node<T> node = tree.greatestBelow(key, inclusive);
+            return (node == null || tooLow(node.key)) ? null : node;
+        }
+
+        /**
+         * Key of the first node past the upper bound, where ascending iteration stops.
+         */
+        private Object absHighFence() {
+            if (toEnd) return UNBOUNDED;
+            Node<T> fence = tree.leastAbove(hi, !hiInclusive);
+            return fence == null ? UNBOUNDED : fence.key;
+        }
+
+        /**
+         * Key of the first node past the lower bound, where descending iteration stops.
+         */
+        private Object absLowFence() {
+            if (fromStart) return UNBOUNDED;
+            Node<T> fence = tree.greatestBelow(lo, !loInclusive);
+            return fence == null ? UNBOUNDED : fence.key;
+        }
+
+        Node<T> first() {
+            return descending ? absHighest() : absLowest();
+        }
+
+        Node<T> last() {
+            return descending ? absLowest() : absHighest();
+        }
+
+        Node<T> lower(Object key, boolean inclusive) {
+            return descending ? absLeastAbove(key, inclusive) : absGreatestBelow(key, inclusive);
+        }
+
+        Node<T> higher(Object key, boolean inclusive) {
+            return descending ? absGreatestBelow(key, inclusive) : absLeastAbove(key, inclusive);
+        }
+
+        /**
+         * Key where iteration from {@link #first} in the range's direction stops.
+         */
+        Object fence() {
+            return descending ? absLowFence() : absHighFence();
+        }
+
+        boolean isEmpty() {
+            return absLowest() == null;
+        }
+
+        /**
+         * Number of keys in the range: O(log n) with order statistics, O(k) otherwise.
+         */
+        int size() {
+            if (isWhole()) return tree.size;
+
+            if (tree.orderStatistics) {
+                int upTo = toEnd ? tree.size : tree.countBelow(hi, hiInclusive);
+                int below = fromStart ? 0 : tree.countBelow(lo, !loInclusive);
+                // With equal exclusive bounds a present key counts below the lower bound but not below the upper one.
+                return Math.max(0, upTo - below);
+            }
+
+            int count = 0;
+            RedBlackTree<T>.NodeIterator nodes = tree.new NodeIterator(first(), fence(), !descending);
+            for (; nodes.hasNext(); nodes.nextNode()) {
+                count++;
+            }
+            return count;
+        }
+
+        Comparator<Object> comparator() {
+            return descending ? Collections.reverseOrder(tree.comparator) : tree.comparator;
+        }
+
+        Range<T> reversed() {
+            return new Range<>(tree, fromStart, lo, loInclusive, toEnd, hi, hiInclusive, !descending);
+        }
+
+        private Range<T> withBounds(boolean fromStart, T lo, boolean loInclusive,
+                                    boolean toEnd, T hi, boolean hiInclusive) {
+            if (!fromStart && !inRange(lo, loInclusive)) {
+                throw new IllegalArgumentException("fromKey out of range");
+            }
+            if (!toEnd && !inRange(hi, hiInclusive)) {
+                throw new IllegalArgumentException("toKey out of range");
+            }
+            return new Range<>(tree, fromStart, lo, loInclusive, toEnd, hi, hiInclusive, descending);
+        }
+
+        /**
+         * Part of the range between the keys, given in the range's direction.
+         */
+        Range<T> subRange(T from, boolean fromInclusive, T to, boolean toInclusive) {
+            if (descending) {
+                if (tree.compare(from, to) < 0) {
+                    throw new IllegalArgumentException("fromKey > toKey");
+                }
+                return withBounds(false, to, toInclusive, false, from, fromInclusive);
+            }
+            if (tree.compare(from, to) > 0) {
+                throw new IllegalArgumentException("fromKey > toKey");
+            }
+            return withBounds(false, from, fromInclusive, false, to, toInclusive);
+        }
+
+        /**
+         * Part of the range before the key in the range's direction.
+         */
+        Range<T> headRange(T to, boolean inclusive) {
+            if (descending) {
+                return withBounds(false, to, inclusive, toEnd, hi, hiInclusive);
+            }
+            return withBounds(fromStart, lo, loInclusive, false, to, inclusive);
+        }
+
+        /**
+         * Part of the range after the key in the range's direction.
+         */
+        Range<T> tailRange(T from, boolean inclusive) {
+            if (descending) {
+                return withBounds(fromStart, lo, loInclusive, false, from, inclusive);
+            }
+            return withBounds(false, from, inclusive, toEnd, hi, hiInclusive);
+        }
+    }
+
+    /**
+     * Live view of a key range of the tree, possibly in descending order.
+     */
+    private final class SubSet extends AbstractSet<T> implements NavigableSet<T> {
+        private final Range<T> range;
+
+        SubSet(Range<T> range) {
+            this.range = range;
+        }
+
+        @Override
+        public Comparator<? super T> comparator() {
+            return range.comparator();
+        }
+
+        @Override
+        public Iterator<T> iterator() {
+            return new RedBlackTreeIterator(range.first(), range.fence(), !range.descending);
+        }
+
+        @Override
+        public Iterator<T> descendingIterator() {
+            return descendingSet().iterator();
+        }
+
+        @Override
+        public int size() {
+            return range.size();
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return range.isEmpty();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return range.inRange(o) && RedBlackTree.this.contains(o);
+        }
+
+        @Override
+        public boolean add(T t) {
+            if (!range.inRange(t)) {
+                throw new IllegalArgumentException("key out of range");
+            }
+            return RedBlackTree.this.add(t);
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            return range.inRange(o) && RedBlackTree.this.remove(o);
+        }
+
+        @Override
+        public T first() {
+            return keyOrThrow(range.first());
+        }
+
+        @Override
+        public T last() {
+            return keyOrThrow(range.last());
+        }
+
+        @Override
+        public T lower(T t) {
+            return keyOrNull(range.lower(t, false));
+        }
+
+        @Override
+        public T floor(T t) {
+            return keyOrNull(range.lower(t, true));
+        }
+
+        @Override
+        public T ceiling(T t) {
+            return keyOrNull(range.higher(t, true));
+        }
+
+        @Override
+        public T higher(T t) {
+            return keyOrNull(range.higher(t, false));
+        }
+
+        @Override
+        public T pollFirst() {
+            return pollNode(range.first());
+        }
+
+        @Override
+        public T pollLast() {
+            return pollNode(range.last());
+        }
+
+        @Override
+        public NavigableSet<T> descendingSet() {
+            return new SubSet(range.reversed());
+        }
+
+        @Override
+        public NavigableSet<T> subSet(T fromElement, boolean fromInclusive, T toElement, boolean toInclusive) {
+            return new SubSet(range.subRange(fromElement, fromInclusive, toElement, toInclusive));
+        }
+
+        @Override
+        public NavigableSet<T> headSet(T toElement, boolean inclusive) {
+            return new SubSet(range.headRange(toElement, inclusive));
+        }
+
+        @Override
+        public NavigableSet<T> tailSet(T fromElement, boolean inclusive) {
+            return new SubSet(range.tailRange(fromElement, inclusive));
+        }
+
+        @Override
+        public SortedSet<T> subSet(T fromElement, T toElement) {
+            return subSet(fromElement, true, toElement, false);
+        }
+
+        @Override
+        public SortedSet<T> headSet(T toElement) {
+            return headSet(toElement, false);
+        }
+
+        @Override
+        public SortedSet<T> tailSet(T fromElement) {
+            return tailSet(fromElement, true);
+        }
     }
-}
\ No newline at end of file
+}
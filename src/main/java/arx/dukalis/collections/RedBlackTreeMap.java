@@ -0,0 +1,790 @@
+package arx.dukalis.collections;
+
+import java.util.*;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Sorted map on the balancing engine of {@link RedBlackTree}.
+ * <p>
+ * Insert - O(log n)
+ * Lookup - O(log n)
+ * Remove - O(log n)
+ * <p>
+ * Entries are the tree's nodes with a value field, so insertion and removal go through the same
+ * fixup cases as the set. {@link #put}, {@link #putIfAbsent}, {@link #computeIfAbsent}, {@link #compute}
+ * and {@link #merge} find or create the entry in a single descent instead of a lookup followed by an insertion.
+ * While a mapping function runs, a newly created entry is already in the map with a {@code null} value;
+ * the function must not modify the map.
+ * <p>
+ * Views returned by {@link #subMap}, {@link #headMap}, {@link #tailMap} and {@link #descendingMap},
+ * as well as key and entry sets, are live.
+ */
+public class RedBlackTreeMap<K, V> extends AbstractMap<K, V> implements NavigableMap<K, V> {
+
+    private final Comparator<Object> comparator;
+
+    /**
+     * Balancing engine, whose nodes are {@link ValueNode}s.
+     */
+    private final RedBlackTree<K> tree;
+
+    public RedBlackTreeMap(Comparator<Object> comparator) {
+        this.comparator = comparator;
+        this.tree = new RedBlackTree<>(comparator) {
+            @Override
+            Node<K> newNode(K key, Node<K> parent) {
+                return new ValueNode<K, V>(key, parent);
+            }
+        };
+    }
+
+    /**
+     * Node of red-black tree, which also holds the value.
+     */
+    private static final class ValueNode<K, V> extends RedBlackTree.Node<K> implements Map.Entry<K, V> {
+        V value;
+
+        ValueNode(K key, RedBlackTree.Node<K> parent) {
+            super(key, parent);
+        }
+
+        @Override
+        void takeOver(RedBlackTree.Node<K> other) {
+            super.takeOver(other);
+            value = RedBlackTreeMap.<K, V>entry(other).value;
+        }
+
+        @Override
+        public K getKey() {
+            return key;
+        }
+
+        @Override
+        public V getValue() {
+            return value;
+        }
+
+        @Override
+        public V setValue(V value) {
+            V old = this.value;
+            this.value = value;
+            return old;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Map.Entry<?, ?> e
+                    && Objects.equals(key, e.getKey())
+                    && Objects.equals(value, e.getValue());
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(key) ^ Objects.hashCode(value);
+        }
+
+        @Override
+        public String toString() {
+            return key + "=" + value;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <K, V> ValueNode<K, V> entry(RedBlackTree.Node<K> node) {
+        return (ValueNode<K, V>) node;
+    }
+
+    /**
+     * Immutable copy of the entry, as entries returned by navigation methods don't support {@code setValue}.
+     */
+    private static <K, V> Map.Entry<K, V> exportEntry(RedBlackTree.Node<K> node) {
+        if (node == null) return null;
+        return new SimpleImmutableEntry<>(RedBlackTreeMap.<K, V>entry(node));
+    }
+
+    private Map.Entry<K, V> pollEntry(RedBlackTree.Node<K> node) {
+        if (node == null) return null;
+
+        Map.Entry<K, V> polled = exportEntry(node);
+        tree.removeNode(node);
+        return polled;
+    }
+
+    @Override
+    public int size() {
+        return tree.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return tree.isEmpty();
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return tree.find(key) != null;
+    }
+
+    @Override
+    public V get(Object key) {
+        ValueNode<K, V> e = entry(tree.find(key));
+        return e == null ? null : e.value;
+    }
+
+    @Override
+    public V put(K key, V value) {
+        ValueNode<K, V> e = entry(tree.findOrInsertNode(key));
+        return e.setValue(value);
+    }
+
+    @Override
+    public V putIfAbsent(K key, V value) {
+        ValueNode<K, V> e = entry(tree.findOrInsertNode(key));
+        V old = e.value;
+        if (old == null) {
+            e.value = value;
+        }
+        return old;
+    }
+
+    @Override
+    public V remove(Object key) {
+        ValueNode<K, V> e = entry(tree.find(key));
+        if (e == null) return null;
+
+        V old = e.value;
+        tree.removeNode(e);
+        return old;
+    }
+
+    @Override
+    public V replace(K key, V value) {
+        ValueNode<K, V> e = entry(tree.find(key));
+        return e == null ? null : e.setValue(value);
+    }
+
+    @Override
+    public boolean replace(K key, V oldValue, V newValue) {
+        ValueNode<K, V> e = entry(tree.find(key));
+        if (e == null || !Objects.equals(e.value, oldValue)) return false;
+
+        e.value = newValue;
+        return true;
+    }
+
+    @Override
+    public void clear() {
+        tree.clear();
+    }
+
+    @Override
+    public V computeIfAbsent(K key, Function<? super K, ? extends V> mappingFunction) {
+        Objects.requireNonNull(mappingFunction);
+
+        int size = tree.size();
+        ValueNode<K, V> e = entry(tree.findOrInsertNode(key));
+        if (e.value != null) return e.value;
+
+        boolean created = tree.size() != size;
+        V value;
+        try {
+            value = mappingFunction.apply(key);
+        } catch (RuntimeException | Error ex) {
+            if (created) tree.removeNode(e);
+            throw ex;
+        }
+
+        if (value != null) {
+            e.value = value;
+        } else if (created) {
+            tree.removeNode(e);
+        }
+        return value;
+    }
+
+    @Override
+    public V computeIfPresent(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        Objects.requireNonNull(remappingFunction);
+
+        ValueNode<K, V> e = entry(tree.find(key));
+        if (e == null || e.value == null) return null;
+
+        return settle(e, remappingFunction.apply(key, e.value));
+    }
+
+    @Override
+    public V compute(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        Objects.requireNonNull(remappingFunction);
+
+        int size = tree.size();
+        ValueNode<K, V> e = entry(tree.findOrInsertNode(key));
+
+        boolean created = tree.size() != size;
+        V value;
+        try {
+            value = remappingFunction.apply(key, e.value);
+        } catch (RuntimeException | Error ex) {
+            if (created) tree.removeNode(e);
+            throw ex;
+        }
+
+        return settle(e, value);
+    }
+
+    @Override
+    public V merge(K key, V value, BiFunction<? super V, ? super V, ? extends V> remappingFunction) {
+        Objects.requireNonNull(value);
+        Objects.requireNonNull(remappingFunction);
+
+        ValueNode<K, V> e = entry(tree.findOrInsertNode(key));
+        if (e.value == null) {
+            e.value = value;
+            return value;
+        }
+
+        return settle(e, remappingFunction.apply(e.value, value));
+    }
+
+    /**
+     * Stores the computed value in the entry, or removes the entry if there is no value.
+     */
+    private V settle(ValueNode<K, V> e, V value) {
+        if (value == null) {
+            tree.removeNode(e);
+        } else {
+            e.value = value;
+        }
+        return value;
+    }
+
+    @Override
+    public Comparator<? super K> comparator() {
+        return comparator;
+    }
+
+    @Override
+    public K firstKey() {
+        return RedBlackTree.keyOrThrow(tree.firstNode());
+    }
+
+    @Override
+    public K lastKey() {
+        return RedBlackTree.keyOrThrow(tree.lastNode());
+    }
+
+    @Override
+    public Map.Entry<K, V> firstEntry() {
+        return exportEntry(tree.firstNode());
+    }
+
+    @Override
+    public Map.Entry<K, V> lastEntry() {
+        return exportEntry(tree.lastNode());
+    }
+
+    @Override
+    public Map.Entry<K, V> pollFirstEntry() {
+        return pollEntry(tree.firstNode());
+    }
+
+    @Override
+    public Map.Entry<K, V> pollLastEntry() {
+        return pollEntry(tree.lastNode());
+    }
+
+    @Override
+    public Map.Entry<K, V> lowerEntry(K key) {
+        return exportEntry(tree.greatestBelow(key, false));
+    }
+
+    @Override
+    public K lowerKey(K key) {
+        return RedBlackTree.keyOrNull(tree.greatestBelow(key, false));
+    }
+
+    @Override
+    public Map.Entry<K, V> floorEntry(K key) {
+        return exportEntry(tree.greatestBelow(key, true));
+    }
+
+    @Override
+    public K floorKey(K key) {
+        return RedBlackTree.keyOrNull(tree.greatestBelow(key, true));
+    }
+
+    @Override
+    public Map.Entry<K, V> ceilingEntry(K key) {
+        return exportEntry(tree.leastAbove(key, true));
+    }
+
+    @Override
+    public K ceilingKey(K key) {
+        return RedBlackTree.keyOrNull(tree.leastAbove(key, true));
+    }
+
+    @Override
+    public Map.Entry<K, V> higherEntry(K key) {
+        return exportEntry(tree.leastAbove(key, false));
+    }
+
+    @Override
+    public K higherKey(K key) {
+        return RedBlackTree.keyOrNull(tree.leastAbove(key, false));
+    }
+
+    @Override
+    public Set<Map.Entry<K, V>> entrySet() {
+        return new SubMap(RedBlackTree.Range.all(tree, false)).entrySet();
+    }
+
+    @Override
+    public Set<K> keySet() {
+        return navigableKeySet();
+    }
+
+    @Override
+    public NavigableSet<K> navigableKeySet() {
+        return new KeySet<>(this);
+    }
+
+    @Override
+    public NavigableSet<K> descendingKeySet() {
+        return descendingMap().navigableKeySet();
+    }
+
+    @Override
+    public NavigableMap<K, V> descendingMap() {
+        return new SubMap(RedBlackTree.Range.all(tree, true));
+    }
+
+    @Override
+    public NavigableMap<K, V> subMap(K fromKey, boolean fromInclusive, K toKey, boolean toInclusive) {
+        return new SubMap(RedBlackTree.Range.between(tree, fromKey, fromInclusive, toKey, toInclusive));
+    }
+
+    @Override
+    public NavigableMap<K, V> headMap(K toKey, boolean inclusive) {
+        return new SubMap(RedBlackTree.Range.below(tree, toKey, inclusive));
+    }
+
+    @Override
+    public NavigableMap<K, V> tailMap(K fromKey, boolean inclusive) {
+        return new SubMap(RedBlackTree.Range.above(tree, fromKey, inclusive));
+    }
+
+    @Override
+    public SortedMap<K, V> subMap(K fromKey, K toKey) {
+        return subMap(fromKey, true, toKey, false);
+    }
+
+    @Override
+    public SortedMap<K, V> headMap(K toKey) {
+        return headMap(toKey, false);
+    }
+
+    @Override
+    public SortedMap<K, V> tailMap(K fromKey) {
+        return tailMap(fromKey, true);
+    }
+
+    /**
+     * Iterator over entries of a key range, which returns the live entries.
+     */
+    private final class EntryIterator implements Iterator<Map.Entry<K, V>> {
+        private final RedBlackTree<K>.NodeIterator nodes;
+
+        EntryIterator(RedBlackTree.Node<K> first, Object fenceKey, boolean ascending) {
+            this.nodes = tree.new NodeIterator(first, fenceKey, ascending);
+        }
+
+        @Override
+        public boolean hasNext() {
+            return nodes.hasNext();
+        }
+
+        @Override
+        public Map.Entry<K, V> next() {
+            return entry(nodes.nextNode());
+        }
+
+        @Override
+        public void remove() {
+            nodes.remove();
+        }
+    }
+
+    /**
+     * Live view of a key range of the map, possibly in descending order, on the same
+     * {@link RedBlackTree.Range} as the set's range views.
+     */
+    private final class SubMap extends AbstractMap<K, V> implements NavigableMap<K, V> {
+        private final RedBlackTree.Range<K> range;
+
+        SubMap(RedBlackTree.Range<K> range) {
+            this.range = range;
+        }
+
+        @Override
+        public int size() {
+            return range.size();
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return range.isEmpty();
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return range.inRange(key) && RedBlackTreeMap.this.containsKey(key);
+        }
+
+        @Override
+        public V get(Object key) {
+            return range.inRange(key) ? RedBlackTreeMap.this.get(key) : null;
+        }
+
+        @Override
+        public V put(K key, V value) {
+            if (!range.inRange(key)) {
+                throw new IllegalArgumentException("key out of range");
+            }
+            return RedBlackTreeMap.this.put(key, value);
+        }
+
+        @Override
+        public V remove(Object key) {
+            return range.inRange(key) ? RedBlackTreeMap.this.remove(key) : null;
+        }
+
+        @Override
+        public Comparator<? super K> comparator() {
+            return range.comparator();
+        }
+
+        @Override
+        public K firstKey() {
+            return RedBlackTree.keyOrThrow(range.first());
+        }
+
+        @Override
+        public K lastKey() {
+            return RedBlackTree.keyOrThrow(range.last());
+        }
+
+        @Override
+        public Map.Entry<K, V> firstEntry() {
+            return exportEntry(range.first());
+        }
+
+        @Override
+        public Map.Entry<K, V> lastEntry() {
+            return exportEntry(range.last());
+        }
+
+        @Override
+        public Map.Entry<K, V> pollFirstEntry() {
+            return pollEntry(range.first());
+        }
+
+        @Override
+        public Map.Entry<K, V> pollLastEntry() {
+            return pollEntry(range.last());
+        }
+
+        @Override
+        public Map.Entry<K, V> lowerEntry(K key) {
+            return exportEntry(range.lower(key, false));
+        }
+
+        @Override
+        public K lowerKey(K key) {
+            return RedBlackTree.keyOrNull(range.lower(key, false));
+        }
+
+        @Override
+        public Map.Entry<K, V> floorEntry(K key) {
+            return exportEntry(range.lower(key, true));
+        }
+
+        @Override
+        public K floorKey(K key) {
+            return RedBlackTree.keyOrNull(range.lower(key, true));
+        }
+
+        @Override
+        public Map.Entry<K, V> ceilingEntry(K key) {
+            return exportEntry(range.higher(key, true));
+        }
+
+        @Override
+        public K ceilingKey(K key) {
+            return RedBlackTree.keyOrNull(range.higher(key, true));
+        }
+
+        @Override
+        public Map.Entry<K, V> higherEntry(K key) {
+            return exportEntry(range.higher(key, false));
+        }
+
+        @Override
+        public K higherKey(K key) {
+            return RedBlackTree.keyOrNull(range.higher(key, false));
+        }
+
+        @Override
+        public Set<Map.Entry<K, V>> entrySet() {
+            return new EntrySet();
+        }
+
+        @Override
+        public Set<K> keySet() {
+            return navigableKeySet();
+        }
+
+        @Override
+        public NavigableSet<K> navigableKeySet() {
+            return new KeySet<>(this);
+        }
+
+        @Override
+        public NavigableSet<K> descendingKeySet() {
+            return descendingMap().navigableKeySet();
+        }
+
+        @Override
+        public NavigableMap<K, V> descendingMap() {
+            return new SubMap(range.reversed());
+        }
+
+        @Override
+        public NavigableMap<K, V> subMap(K fromKey, boolean fromInclusive, K toKey, boolean toInclusive) {
+            return new SubMap(range.subRange(fromKey, fromInclusive, toKey, toInclusive));
+        }
+
+        @Override
+        public NavigableMap<K, V> headMap(K toKey, boolean inclusive) {
+            return new SubMap(range.headRange(toKey, inclusive));
+        }
+
+        @Override
+        public NavigableMap<K, V> tailMap(K fromKey, boolean inclusive) {
+            return new SubMap(range.tailRange(fromKey, inclusive));
+        }
+
+        @Override
+        public SortedMap<K, V> subMap(K fromKey, K toKey) {
+            return subMap(fromKey, true, toKey, false);
+        }
+
+        @Override
+        public SortedMap<K, V> headMap(K toKey) {
+            return headMap(toKey, false);
+        }
+
+        @Override
+        public SortedMap<K, V> tailMap(K fromKey) {
+            return tailMap(fromKey, true);
+        }
+
+        private final class EntrySet extends AbstractSet<Map.Entry<K, V>> {
+            @Override
+            public Iterator<Map.Entry<K, V>> iterator() {
+                return new EntryIterator(range.first(), range.fence(), !range.descending);
+            }
+
+            @Override
+            public int size() {
+                return SubMap.this.size();
+            }
+
+            @Override
+            public boolean isEmpty() {
+                return SubMap.this.isEmpty();
+            }
+
+            @Override
+            public boolean contains(Object o) {
+                return o instanceof Map.Entry<?, ?> e && matching(e) != null;
+            }
+
+            @Override
+            public boolean remove(Object o) {
+                if (!(o instanceof Map.Entry<?, ?> e)) return false;
+
+                RedBlackTree.Node<K> node = matching(e);
+                if (node == null) return false;
+
+                tree.removeNode(node);
+                return true;
+            }
+
+            private RedBlackTree.Node<K> matching(Map.Entry<?, ?> e) {
+                if (!range.inRange(e.getKey())) return null;
+
+                ValueNode<K, V> node = entry(tree.find(e.getKey()));
+                return node != null && Objects.equals(node.value, e.getValue()) ? node : null;
+            }
+
+            @Override
+            public void clear() {
+                if (range.isWhole()) {
+                    tree.clear();
+                } else {
+                    super.clear();
+                }
+            }
+        }
+    }
+
+    /**
+     * Key set view of a map, with iteration driven by the map's entry set.
+     */
+    private static final class KeySet<K> extends AbstractSet<K> implements NavigableSet<K> {
+        private final NavigableMap<K, ?> map;
+
+        KeySet(NavigableMap<K, ?> map) {
+            this.map = map;
+        }
+
+        @Override
+        public Iterator<K> iterator() {
+            return keysOf(map);
+        }
+
+        @Override
+        public Iterator<K> descendingIterator() {
+            return keysOf(map.descendingMap());
+        }
+
+        private static <K> Iterator<K> keysOf(NavigableMap<K, ?> map) {
+            Iterator<? extends Map.Entry<K, ?>> entries = map.entrySet().iterator();
+            return new Iterator<>() {
+                @Override
+                public boolean hasNext() {
+                    return entries.hasNext();
+                }
+
+                @Override
+                public K next() {
+                    return entries.next().getKey();
+                }
+
+                @Override
+                public void remove() {
+                    entries.remove();
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return map.size();
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return map.isEmpty();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return map.containsKey(o);
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            int size = map.size();
+            map.remove(o);
+            return map.size() != size;
+        }
+
+        @Override
+        public void clear() {
+            map.clear();
+        }
+
+        @Override
+        public Comparator<? super K> comparator() {
+            return map.comparator();
+        }
+
+        @Override
+        public K first() {
+            return map.firstKey();
+        }
+
+        @Override
+        public K last() {
+            return map.lastKey();
+        }
+
+        @Override
+        public K lower(K k) {
+            return map.lowerKey(k);
+        }
+
+        @Override
+        public K floor(K k) {
+            return map.floorKey(k);
+        }
+
+        @Override
+        public K ceiling(K k) {
+            return map.ceilingKey(k);
+        }
+
+        @Override
+        public K higher(K k) {
+            return map.higherKey(k);
+        }
+
+        @Override
+        public K pollFirst() {
+            Map.Entry<K, ?> e = map.pollFirstEntry();
+            return e == null ? null : e.getKey();
+        }
+
+        @Override
+        public K pollLast() {
+            Map.Entry<K, ?> e = map.pollLastEntry();
+            return e == null ? null : e.getKey();
+        }
+
+        @Override
+        public NavigableSet<K> descendingSet() {
+            return new KeySet<>(map.descendingMap());
+        }
+
+        @Override
+        public NavigableSet<K> subSet(K fromElement, boolean fromInclusive, K toElement, boolean toInclusive) {
+            return new KeySet<>(map.subMap(fromElement, fromInclusive, toElement, toInclusive));
+        }
+
+        @Override
+        public NavigableSet<K> headSet(K toElement, boolean inclusive) {
+            return new KeySet<>(map.headMap(toElement, inclusive));
+        }
+
+        @Override
+        public NavigableSet<K> tailSet(K fromElement, boolean inclusive) {
+            return new KeySet<>(map.tailMap(fromElement, inclusive));
+        }
+
+        @Override
+        public SortedSet<K> subSet(K fromElement, K toElement) {
+            return subSet(fromElement, true, toElement, false);
+        }
+
+        @Override
+        public SortedSet<K> headSet(K toElement) {
+            return headSet(toElement, false);
+        }
+
+        @Override
+        public SortedSet<K> tailSet(K fromElement) {
+            return tailSet(fromElement, true);
+        }
+    }
+}
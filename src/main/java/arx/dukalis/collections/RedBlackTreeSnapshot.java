@@ -0,0 +1,254 @@
+package arx.dukalis.collections;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.zip.CRC32C;
+
+/**
+ * Binary snapshot of a {@link RedBlackTree}: keys in ascending order, so that the tree is restored
+ * by the linear-time sorted build instead of per-key insertion.
+ * <p>
+ * Layout, big-endian:
+ * <pre>
+ * int    magic "RBTS"
+ * int    format version
+ * int    number of keys
+ * int    key length, followed by that many bytes of the key encoded by {@link KeyCodec}, for each key
+ * int    CRC32C of all preceding bytes
+ * </pre>
+ * Keys are at most {@link #MAX_KEY_BYTES} long, so that a corrupt length can't make the reader allocate
+ * an arbitrary buffer. Lengths read from a seekable channel are also bounded by the bytes left in it.
+ */
+final class RedBlackTreeSnapshot {
+
+    private static final int MAGIC = 0x52425453;
+    private static final int VERSION = 1;
+    private static final int BUFFER_BYTES = 1 << 16;
+    static final int MAX_KEY_BYTES = 1 << 26;
+
+    private RedBlackTreeSnapshot() {
+    }
+
+    static <T> void write(Iterable<? extends T> sorted, int count,
+                          KeyCodec<? super T> codec, WritableByteChannel channel) throws IOException {
+        Output output = new Output(channel);
+        output.require(3 * Integer.BYTES).putInt(MAGIC).putInt(VERSION).putInt(count);
+
+        int written = 0;
+        for (T key : sorted) {
+            int length = codec.encodedSize(key);
+            if (length > MAX_KEY_BYTES) {
+                throw new IllegalArgumentException("Key of " + length + " bytes exceeds the snapshot limit of "
+                        + MAX_KEY_BYTES + ": " + key);
+            }
+            ByteBuffer buffer = output.require(Integer.BYTES + length).putInt(length);
+
+            int start = buffer.position();
+            codec.encode(key, buffer);
+            if (buffer.position() - start != length) {
+                throw new IllegalStateException("Codec wrote " + (buffer.position() - start)
+                        + " bytes instead of " + length + " for " + key);
+            }
+            written++;
+        }
+        if (written != count) {
+            throw new ConcurrentModificationException();
+        }
+
+        output.finish();
+    }
+
+    static <T> RedBlackTree<T> read(ReadableByteChannel channel, Comparator<Object> comparator,
+                                    boolean orderStatistics, KeyCodec<? extends T> codec) throws IOException {
+        Input input = new Input(channel);
+
+        ByteBuffer header = input.require(3 * Integer.BYTES);
+        if (header.getInt() != MAGIC) {
+            throw new IOException("Not a red-black tree snapshot");
+        }
+        int version = header.getInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported snapshot version " + version);
+        }
+        int count = header.getInt();
+        if (count < 0) {
+            throw new IOException("Corrupt snapshot: negative number of keys");
+        }
+        if ((long) count * Integer.BYTES > input.available()) {
+            throw new IOException("Corrupt snapshot: " + count + " keys don't fit the remaining bytes");
+        }
+
+        Iterator<T> keys = new Iterator<>() {
+            private int remaining = count;
+
+            @Override
+            public boolean hasNext() {
+                return remaining > 0;
+            }
+
+            @Override
+            public T next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                remaining--;
+                try {
+                    return input.readKey(codec);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        };
+
+        RedBlackTree<T> tree;
+        try {
+            tree = RedBlackTree.fromSorted(comparator, orderStatistics, keys, count);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Snapshot keys are not in strictly ascending order", e);
+        }
+
+        input.verifyChecksum();
+        return tree;
+    }
+
+    /**
+     * Buffered writer, which checksums every flushed byte.
+     */
+    private static final class Output {
+        private final WritableByteChannel channel;
+        private final CRC32C checksum = new CRC32C();
+        private ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+
+        Output(WritableByteChannel channel) {
+            this.channel = channel;
+        }
+
+        /**
+         * Returns the buffer with at least the given number of bytes free.
+         */
+        ByteBuffer require(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                flush();
+                if (buffer.capacity() < bytes) {
+                    buffer = ByteBuffer.allocateDirect(bytes);
+                }
+            }
+            return buffer;
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            checksum.update(buffer.duplicate());
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        void finish() throws IOException {
+            flush();
+            buffer.putInt((int) checksum.getValue()).flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+
+    /**
+     * Buffered reader, which checksums every consumed byte.
+     */
+    private static final class Input {
+        private final ReadableByteChannel channel;
+        private final CRC32C checksum = new CRC32C();
+        private ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES).limit(0);
+
+        /**
+         * Start of the consumed bytes of the buffer which are not checksummed yet.
+         */
+        private int unchecked = 0;
+
+        Input(ReadableByteChannel channel) {
+            this.channel = channel;
+        }
+
+        /**
+         * Returns the buffer with at least the given number of bytes available.
+         */
+        ByteBuffer require(int bytes) throws IOException {
+            if (buffer.remaining() >= bytes) return buffer;
+
+            updateChecksum();
+            if (buffer.capacity() < bytes) {
+                buffer = ByteBuffer.allocateDirect(bytes).put(buffer);
+            } else {
+                buffer.compact();
+            }
+            unchecked = 0;
+
+            while (buffer.position() < bytes) {
+                if (channel.read(buffer) < 0) {
+                    throw new IOException("Truncated snapshot");
+                }
+            }
+            buffer.flip();
+            return buffer;
+        }
+
+        /**
+         * Number of bytes left to read, or {@link Long#MAX_VALUE} if the channel doesn't tell.
+         */
+        long available() throws IOException {
+            if (channel instanceof SeekableByteChannel seekable) {
+                return buffer.remaining() + Math.max(0, seekable.size() - seekable.position());
+            }
+            return Long.MAX_VALUE;
+        }
+
+        /**
+         * Reads the next key; keys are decoded before the checksum is verified, so failures of the codec
+         * are reported as corruption.
+         */
+        <T> T readKey(KeyCodec<? extends T> codec) throws IOException {
+            int length = require(Integer.BYTES).getInt();
+            if (length < 0) {
+                throw new IOException("Corrupt snapshot: negative key length");
+            }
+            if (length > MAX_KEY_BYTES || (long) length + Integer.BYTES > available()) {
+                throw new IOException("Corrupt snapshot: key length " + length + " exceeds the remaining bytes");
+            }
+
+            int start = require(length).position();
+            T key;
+            try {
+                key = codec.decode(buffer.slice(start, length));
+            } catch (RuntimeException e) {
+                throw new IOException("Corrupt snapshot: undecodable key", e);
+            }
+            buffer.position(start + length);
+            return key;
+        }
+
+        void verifyChecksum() throws IOException {
+            updateChecksum();
+            int expected = (int) checksum.getValue();
+            if (require(Integer.BYTES).getInt() != expected) {
+                throw new IOException("Snapshot checksum mismatch");
+            }
+        }
+
+        private void updateChecksum() {
+            checksum.update(buffer.slice(unchecked, buffer.position() - unchecked));
+            unchecked = buffer.position();
+        }
+    }
+}
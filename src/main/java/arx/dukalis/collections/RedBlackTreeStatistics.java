@@ -0,0 +1,242 @@
+package arx.dukalis.collections;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Period;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.function.Supplier;
+
+/**
+ * Snapshot of counters collected by a {@link RedBlackTree} in statistics mode, see {@link RedBlackTree#statistics}.
+ * <p>
+ * Operations are descents from the root by lookups, insertions and navigation methods. Case hits count
+ * entries into {@code insertCaseNo1..5} and {@code removeCaseNo1..6}, indexed from zero.
+ * <p>
+ * Snapshots can be published as a JMX MXBean and as a periodic JFR event. Both take them through
+ * the given supplier on their own threads, so the supplier has to read the tree safely, e.g. under
+ * the lock which guards it.
+ */
+public record RedBlackTreeStatistics(int size,
+                                     long operations,
+                                     long comparisons,
+                                     long leftRotations,
+                                     long rightRotations,
+                                     long[] insertCaseHits,
+                                     long[] removeCaseHits,
+                                     int height,
+                                     int blackHeight) {
+
+    /**
+     * How long an MXBean serves the same snapshot, as taking one walks the whole tree.
+     */
+    private static final long MBEAN_REFRESH_NANOS = 1_000_000_000L;
+
+    public RedBlackTreeStatistics {
+        insertCaseHits = insertCaseHits.clone();
+        removeCaseHits = removeCaseHits.clone();
+    }
+
+    @Override
+    public long[] insertCaseHits() {
+        return insertCaseHits.clone();
+    }
+
+    @Override
+    public long[] removeCaseHits() {
+        return removeCaseHits.clone();
+    }
+
+    public double comparisonsPerOperation() {
+        return operations == 0 ? 0 : (double) comparisons / operations;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof RedBlackTreeStatistics other
+                && size == other.size
+                && operations == other.operations
+                && comparisons == other.comparisons
+                && leftRotations == other.leftRotations
+                && rightRotations == other.rightRotations
+                && Arrays.equals(insertCaseHits, other.insertCaseHits)
+                && Arrays.equals(removeCaseHits, other.removeCaseHits)
+                && height == other.height
+                && blackHeight == other.blackHeight;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = Arrays.hashCode(new long[]{size, operations, comparisons, leftRotations, rightRotations, height, blackHeight});
+        result = 31 * result + Arrays.hashCode(insertCaseHits);
+        return 31 * result + Arrays.hashCode(removeCaseHits);
+    }
+
+    @Override
+    public String toString() {
+        return "RedBlackTreeStatistics[size=" + size
+                + ", operations=" + operations
+                + ", comparisons=" + comparisons
+                + ", leftRotations=" + leftRotations
+                + ", rightRotations=" + rightRotations
+                + ", insertCaseHits=" + Arrays.toString(insertCaseHits)
+                + ", removeCaseHits=" + Arrays.toString(removeCaseHits)
+                + ", height=" + height
+                + ", blackHeight=" + blackHeight + "]";
+    }
+
+    /**
+     * Registers an MXBean named {@code arx.dukalis.collections:type=RedBlackTree,name=<name>}
+     * in the platform MBean server.
+     *
+     * @return name of the MXBean, to unregister it
+     */
+    public static ObjectName registerMBean(String name, Supplier<RedBlackTreeStatistics> source) throws JMException {
+        ObjectName objectName = new ObjectName("arx.dukalis.collections:type=RedBlackTree,name=" + ObjectName.quote(name));
+        ManagementFactory.getPlatformMBeanServer().registerMBean(new MXBean(source), objectName);
+        return objectName;
+    }
+
+    /**
+     * Emits a {@code arx.dukalis.collections.RedBlackTreeStatistics} JFR event for the tree once per period,
+     * one second by default, while a recording is running.
+     *
+     * @return hook to pass to {@link FlightRecorder#removePeriodicEvent}
+     */
+    public static Runnable registerEvent(String name, Supplier<RedBlackTreeStatistics> source) {
+        Runnable hook = () -> {
+            StatisticsEvent event = new StatisticsEvent();
+            if (!event.isEnabled()) return;
+
+            RedBlackTreeStatistics statistics = source.get();
+            event.tree = name;
+            event.size = statistics.size;
+            event.operations = statistics.operations;
+            event.comparisons = statistics.comparisons;
+            event.comparisonsPerOperation = statistics.comparisonsPerOperation();
+            event.leftRotations = statistics.leftRotations;
+            event.rightRotations = statistics.rightRotations;
+            event.insertCaseHits = Arrays.toString(statistics.insertCaseHits);
+            event.removeCaseHits = Arrays.toString(statistics.removeCaseHits);
+            event.height = statistics.height;
+            event.blackHeight = statistics.blackHeight;
+            event.commit();
+        };
+        FlightRecorder.addPeriodicEvent(StatisticsEvent.class, hook);
+        return hook;
+    }
+
+    @Name("arx.dukalis.collections.RedBlackTreeStatistics")
+    @Label("Red-Black Tree Statistics")
+    @Category("Collections")
+    @Period("1 s")
+    static final class StatisticsEvent extends Event {
+        @Label("Tree")
+        String tree;
+
+        @Label("Size")
+        int size;
+
+        @Label("Operations")
+        long operations;
+
+        @Label("Comparisons")
+        long comparisons;
+
+        @Label("Comparisons per Operation")
+        double comparisonsPerOperation;
+
+        @Label("Left Rotations")
+        long leftRotations;
+
+        @Label("Right Rotations")
+        long rightRotations;
+
+        @Label("Insert Case Hits")
+        String insertCaseHits;
+
+        @Label("Remove Case Hits")
+        String removeCaseHits;
+
+        @Label("Height")
+        int height;
+
+        @Label("Black Height")
+        int blackHeight;
+    }
+
+    private static final class MXBean implements RedBlackTreeStatisticsMXBean {
+        private final Supplier<RedBlackTreeStatistics> source;
+        private RedBlackTreeStatistics cached;
+        private long cachedAt;
+
+        MXBean(Supplier<RedBlackTreeStatistics> source) {
+            this.source = source;
+        }
+
+        private synchronized RedBlackTreeStatistics current() {
+            long now = System.nanoTime();
+            if (cached == null || now - cachedAt > MBEAN_REFRESH_NANOS) {
+                cached = source.get();
+                cachedAt = now;
+            }
+            return cached;
+        }
+
+        @Override
+        public int getSize() {
+            return current().size;
+        }
+
+        @Override
+        public long getOperations() {
+            return current().operations;
+        }
+
+        @Override
+        public long getComparisons() {
+            return current().comparisons;
+        }
+
+        @Override
+        public double getComparisonsPerOperation() {
+            return current().comparisonsPerOperation();
+        }
+
+        @Override
+        public long getLeftRotations() {
+            return current().leftRotations;
+        }
+
+        @Override
+        public long getRightRotations() {
+            return current().rightRotations;
+        }
+
+        @Override
+        public long[] getInsertCaseHits() {
+            return current().insertCaseHits();
+        }
+
+        @Override
+        public long[] getRemoveCaseHits() {
+            return current().removeCaseHits();
+        }
+
+        @Override
+        public int getHeight() {
+            return current().height;
+        }
+
+        @Override
+        public int getBlackHeight() {
+            return current().blackHeight;
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package arx.dukalis.collections;
+
+/**
+ * Management interface of {@link RedBlackTreeStatistics}, see {@link RedBlackTreeStatistics#registerMBean}.
+ */
+public interface RedBlackTreeStatisticsMXBean {
+
+    int getSize();
+
+    long getOperations();
+
+    long getComparisons();
+
+    double getComparisonsPerOperation();
+
+    long getLeftRotations();
+
+    long getRightRotations();
+
+    long[] getInsertCaseHits();
+
+    long[] getRemoveCaseHits();
+
+    int getHeight();
+
+    int getBlackHeight();
+}
@@ -2,102 +2,238 @@ package arx.dukalis.unit;
 
 import arx.dukalis.unit.api.After;
 import arx.dukalis.unit.api.Before;
+import arx.dukalis.unit.api.Parallel;
 import arx.dukalis.unit.api.Test;
 import arx.dukalis.unit.internal.Report;
 
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.util.ArrayList;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
+/**
+ * Runs test classes on a pool of threads, one class per task.
+ * <p>
+ * Test methods of classes annotated with {@link Parallel} are tasks of their own, so that a large class
+ * spreads over the whole pool. Tasks never wait for each other: results of a class are collected
+ * once its last test completes.
+ */
 public class Runner {
     public static void main(String[] args) {
         int numberOfThreads = Integer.parseInt(args[0]);
 
         ExecutorService testProcessors = Executors.newFixedThreadPool(numberOfThreads);
 
+        List<CompletableFuture<Void>> classes = new ArrayList<>();
         for (int i = 1; i < args.length; i++) {
             final String className = args[i];
-            testProcessors.submit(() -> {
-                try {
-                    process(className);
-                } catch (Exception e) {
-                    e.printStackTrace();
-                }
-            });
+            classes.add(CompletableFuture
+                    .supplyAsync(() -> call(() -> Class.forName(className)), testProcessors)
+                    .thenCompose(klass -> process(klass, testProcessors))
+                    .exceptionally(e -> {
+                        (e instanceof CompletionException ? e.getCause() : e).printStackTrace();
+                        return null;
+                    }));
         }
 
+        CompletableFuture.allOf(classes.toArray(CompletableFuture[]::new)).join();
         testProcessors.shutdown();
     }
 
-    private static void process(String className) throws Exception {
-        Class<?> klass = Class.forName(className);
+    private static CompletableFuture<Void> process(Class<?> klass, Executor testProcessors) {
+        final CompletableFuture<Report> report = klass.isAnnotationPresent(Parallel.class)
+                ? processClassInParallel(klass, testProcessors)
+                : CompletableFuture.completedFuture(call(() -> processClass(klass)));
 
-        final Report report = processClass(klass);
-        System.out.println("[" + className + "] Total: " + (report.passed() + report.failed()) + ", passed: " + report.passed() + ", failed: " + report.failed());
+        return report.thenAccept(r -> System.out.println("[" + klass.getName() + "] Total: " + (r.passed() + r.failed()) + ", passed: " + r.passed() + ", failed: " + r.failed()));
     }
 
-    private static Report processClass(Class<?> klass) throws Exception {
-        final Method[] methods = klass.getDeclaredMethods();
+    /**
+     * Runs the callable, rethrowing its exception unchecked, for use in stages of futures.
+     */
+    private static <V> V call(Callable<V> callable) {
+        try {
+            return callable.call();
+        } catch (Exception e) {
+            throw new CompletionException(e);
+        }
+    }
 
-        final Queue<Method> beforeMethods = new LinkedList<>();
-        final Queue<Method> testMethods = new LinkedList<>();
-        final Queue<Method> afterMethods = new LinkedList<>();
+    /**
+     * Methods of the class, sorted by their annotations.
+     */
+    private record Methods(Queue<Method> before, Queue<Method> test, Queue<Method> after) {
+        static Methods of(Class<?> klass) {
+            final Methods methods = new Methods(new LinkedList<>(), new LinkedList<>(), new LinkedList<>());
+
+            for (Method m : klass.getDeclaredMethods()) {
+                if (m.isAnnotationPresent(Before.class)) {
+                    methods.before.add(m);
+                } else if (m.isAnnotationPresent(Test.class)) {
+                    methods.test.add(m);
+                } else if (m.isAnnotationPresent(After.class)) {
+                    methods.after.add(m);
+                } else {
+                    continue;
+                }
+                m.setAccessible(true);
+            }
 
+            return methods;
+        }
+    }
+
+    private static void invokeAll(Queue<Method> methods, Object classInstance) throws Exception {
         for (Method m : methods) {
-            if (m.isAnnotationPresent(Before.class)) {
-                beforeMethods.add(m);
-            } else if (m.isAnnotationPresent(Test.class)) {
-                testMethods.add(m);
-            } else if (m.isAnnotationPresent(After.class)) {
-                afterMethods.add(m);
-            }
+            m.invoke(classInstance);
         }
+    }
+
+    static Report processClass(Class<?> klass) throws Exception {
+        final Methods methods = Methods.of(klass);
 
         final Object classInstance = klass.getDeclaredConstructor().newInstance();
 
-        for (Method m : beforeMethods) {
-            m.setAccessible(true);
-            m.invoke(classInstance);
-        }
+        invokeAll(methods.before(), classInstance);
 
         int passed = 0;
         int failed = 0;
 
-        final String formattedClassName = "[" + klass.getName() + "] ";
+        for (Method m : methods.test()) {
+            if (runTest(klass, m, classInstance)) {
+                passed++;
+            } else {
+                failed++;
+            }
+        }
 
-        for (Method m : testMethods) {
-            final String methodName = m.getName();
-            final String messagePrefix = formattedClassName + "Test `" + methodName + "` ";
+        invokeAll(methods.after(), classInstance);
 
-            m.setAccessible(true);
+        return new Report(passed, failed);
+    }
 
-            final Class<?> shouldRaise = m.getAnnotation(Test.class).shouldRaise();
+    /**
+     * Schedules every test of the class as a separate task, with instances given by {@link Parallel#instance}.
+     * <p>
+     * A failure of the constructor, {@code @Before} or {@code @After} methods fails the tests they serve:
+     * the test itself with a per-test instance, all tests if a shared instance can't be set up, and
+     * a failure of its own if a shared instance can't be torn down.
+     */
+    static CompletableFuture<Report> processClassInParallel(Class<?> klass, Executor testProcessors) {
+        final Methods methods = Methods.of(klass);
+
+        final List<CompletableFuture<Boolean>> results = new ArrayList<>();
+
+        final CompletableFuture<Boolean> tornDown = switch (klass.getAnnotation(Parallel.class).instance()) {
+            case PER_TEST -> {
+                for (Method m : methods.test()) {
+                    results.add(CompletableFuture.supplyAsync(() -> call(() -> {
+                        final String scope = "`" + m.getName() + "`";
+                        final Object classInstance = setUp(klass, methods, scope);
+                        if (classInstance == null) {
+                            return false;
+                        }
+                        final boolean passed = runTest(klass, m, classInstance);
+                        return tearDown(klass, methods, classInstance, scope) && passed;
+                    }), testProcessors));
+                }
+                yield CompletableFuture.allOf(results.toArray(CompletableFuture[]::new)).thenApply(ignored -> true);
+            }
+            case SHARED -> {
+                final Object classInstance = setUp(klass, methods, "shared instance");
+                if (classInstance == null) {
+                    for (Method ignored : methods.test()) {
+                        results.add(CompletableFuture.completedFuture(false));
+                    }
+                    yield CompletableFuture.completedFuture(true);
+                }
+                for (Method m : methods.test()) {
+                    results.add(CompletableFuture.supplyAsync(() -> call(() -> runTest(klass, m, classInstance)), testProcessors));
+                }
+                yield CompletableFuture.allOf(results.toArray(CompletableFuture[]::new))
+                        .thenApply(ignored -> tearDown(klass, methods, classInstance, "shared instance"));
+            }
+        };
 
-            try {
-                m.invoke(classInstance);
-                System.out.println(messagePrefix + "passed");
-                passed++;
-            } catch (InvocationTargetException exception) {
-                final Throwable targetException = exception.getTargetException();
-                if (shouldRaise.isInstance(targetException)) {
-                    System.out.println(messagePrefix + "passed");
+        return tornDown.thenApply(clean -> {
+            int passed = 0;
+            for (CompletableFuture<Boolean> result : results) {
+                if (result.join()) {
                     passed++;
-                } else {
-                    System.out.println(messagePrefix + "failed");
-                    targetException.printStackTrace();
-                    failed++;
                 }
             }
+            return new Report(passed, results.size() - passed + (clean ? 0 : 1));
+        });
+    }
+
+    /**
+     * Creates an instance of the class and runs its {@code @Before} methods on it.
+     *
+     * @return the instance, or {@code null} if the set up failed, which is reported
+     */
+    private static Object setUp(Class<?> klass, Methods methods, String scope) {
+        try {
+            final Object classInstance = klass.getDeclaredConstructor().newInstance();
+            invokeAll(methods.before(), classInstance);
+            return classInstance;
+        } catch (Exception e) {
+            reportLifecycleFailure(klass, "Set up of " + scope, e);
+            return null;
         }
+    }
 
-        for (Method m : afterMethods) {
-            m.setAccessible(true);
-            m.invoke(classInstance);
+    /**
+     * Runs {@code @After} methods of the class on the instance.
+     *
+     * @return whether the tear down completed; its failure is reported
+     */
+    private static boolean tearDown(Class<?> klass, Methods methods, Object classInstance, String scope) {
+        try {
+            invokeAll(methods.after(), classInstance);
+            return true;
+        } catch (Exception e) {
+            reportLifecycleFailure(klass, "Tear down of " + scope, e);
+            return false;
         }
+    }
 
-        return new Report(passed, failed);
+    private static void reportLifecycleFailure(Class<?> klass, String stage, Exception e) {
+        System.out.println("[" + klass.getName() + "] " + stage + " failed");
+        (e instanceof InvocationTargetException i ? i.getTargetException() : e).printStackTrace();
+    }
+
+    /**
+     * Runs the test on the instance and reports its outcome.
+     *
+     * @return whether the test passed
+     */
+    private static boolean runTest(Class<?> klass, Method m, Object classInstance) throws Exception {
+        final String messagePrefix = "[" + klass.getName() + "] Test `" + m.getName() + "` ";
+
+        final Class<?> shouldRaise = m.getAnnotation(Test.class).shouldRaise();
+
+        try {
+            m.invoke(classInstance);
+            System.out.println(messagePrefix + "passed");
+            return true;
+        } catch (InvocationTargetException exception) {
+            final Throwable targetException = exception.getTargetException();
+            if (shouldRaise.isInstance(targetException)) {
+                System.out.println(messagePrefix + "passed");
+                return true;
+            } else {
+                System.out.println(messagePrefix + "failed");
+                targetException.printStackTrace();
+                return false;
+            }
+        }
     }
-}
\ No newline at end of file
+}
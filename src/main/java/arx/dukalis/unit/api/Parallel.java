@@ -0,0 +1,29 @@
+package arx.dukalis.unit.api;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Runs test methods of the class concurrently, each as a separate task of the runner's pool.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+@UnitAnnotation
+public @interface Parallel {
+    Instance instance() default Instance.PER_TEST;
+
+    enum Instance {
+        /**
+         * Every test runs on a fresh instance of the class, between its own {@code @Before} and {@code @After} calls.
+         */
+        PER_TEST,
+
+        /**
+         * All tests run on one instance, concurrently, after {@code @Before} methods and before {@code @After} ones;
+         * the tests are responsible for thread safety of the instance.
+         */
+        SHARED
+    }
+}
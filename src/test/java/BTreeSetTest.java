@@ -0,0 +1,91 @@
+import arx.dukalis.collections.BTreeSet;
+import arx.dukalis.unit.api.Test;
+
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.stream.IntStream;
+
+import static arx.dukalis.unit.api.Assertions.*;
+
+public class BTreeSetTest {
+
+    private static final Comparator<Object> COMPARATOR = Comparator.comparing(o -> ((Integer) o));
+
+    @Test
+    void properlyHandlesInsertionAndSearch() {
+        Collection<Integer> tree = new BTreeSet<>(COMPARATOR);
+        tree.add(5);
+        tree.add(1);
+        tree.add(10);
+
+        assertTrue(tree.contains(1));
+        assertTrue(tree.contains(5));
+        assertTrue(tree.contains(10));
+
+        assertFalse(tree.contains(42));
+        assertFalse(tree.add(5));
+        assertEquals(3, tree.size());
+    }
+
+    @Test
+    void properlyHandlesGroupOperations() {
+        final int SIZE = 10_000;
+
+        List<Integer> otherCollection = IntStream.range(0, SIZE).boxed().toList();
+        List<Integer> halfOfCollection = IntStream.range(0, SIZE / 2).boxed().toList();
+
+        Collection<Integer> tree = new BTreeSet<>(COMPARATOR, 8);
+
+        tree.addAll(otherCollection);
+        assertArrayEquals(otherCollection.toArray(), tree.toArray());
+
+        tree.removeAll(halfOfCollection);
+
+        for (int i = 0; i < SIZE / 2; i++) {
+            assertFalse(tree.contains(i));
+        }
+        for (int i = SIZE / 2; i < SIZE; i++) {
+            assertTrue(tree.contains(i));
+        }
+
+        tree.retainAll(halfOfCollection);
+        assertTrue(tree.isEmpty());
+    }
+
+    @Test
+    void properlyHandlesRandomOperations() {
+        final int OPERATIONS = 100_000;
+
+        for (int fanOut : new int[]{4, 6, 16, 64}) {
+            Random random = new Random(42);
+            Collection<Integer> tree = new BTreeSet<>(COMPARATOR, fanOut);
+            TreeSet<Integer> expected = new TreeSet<>();
+
+            for (int i = 0; i < OPERATIONS; i++) {
+                int key = random.nextInt(2_000);
+                if (random.nextInt(3) != 0) {
+                    assertEquals(expected.add(key), tree.add(key));
+                } else {
+                    assertEquals(expected.remove(key), tree.remove(key));
+                }
+            }
+
+            assertEquals(expected.size(), tree.size());
+            assertArrayEquals(expected.toArray(), tree.toArray());
+
+            for (Integer key : expected.toArray(new Integer[0])) {
+                assertTrue(tree.remove(key));
+            }
+            assertTrue(tree.isEmpty());
+            assertEquals(0, tree.toArray().length);
+        }
+    }
+
+    @Test(shouldRaise = IllegalArgumentException.class)
+    void rejectsOddFanOut() {
+        new BTreeSet<Integer>(COMPARATOR, 5);
+    }
+}
@@ -0,0 +1,134 @@
+import arx.dukalis.collections.BufferedRedBlackTree;
+import arx.dukalis.unit.api.Test;
+
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static arx.dukalis.unit.api.Assertions.*;
+
+public class BufferedRedBlackTreeTest {
+
+    private static final Comparator<Object> COMPARATOR = Comparator.comparing(o -> ((Integer) o));
+
+    @Test
+    void properlyHandlesRandomOperations() {
+        final int OPERATIONS = 100_000;
+
+        Random random = new Random(42);
+        BufferedRedBlackTree<Integer> tree = new BufferedRedBlackTree<>(COMPARATOR, 64);
+        TreeSet<Integer> expected = new TreeSet<>();
+
+        for (int i = 0; i < OPERATIONS; i++) {
+            int key = random.nextInt(5_000);
+            switch (random.nextInt(4)) {
+                case 0, 1 -> assertEquals(expected.add(key), tree.add(key));
+                case 2 -> assertEquals(expected.remove(key), tree.remove(key));
+                default -> assertEquals(expected.contains(key), tree.contains(key));
+            }
+            assertEquals(expected.size(), tree.size());
+            assertTrue(tree.pendingWrites() <= 64);
+
+            if (i % 10_000 == 0) {
+                assertArrayEquals(expected.toArray(), tree.toArray());
+                assertEquals(0, tree.pendingWrites());
+            }
+        }
+
+        assertEquals(expected.first(), tree.first());
+        assertEquals(expected.last(), tree.last());
+        assertArrayEquals(expected.toArray(), tree.toArray());
+    }
+
+    @Test
+    void cancelsOppositeWrites() {
+        BufferedRedBlackTree<Integer> tree = new BufferedRedBlackTree<>(COMPARATOR);
+        for (int i = 0; i < 10; i++) {
+            tree.add(i);
+        }
+        tree.flush();
+        assertEquals(0, tree.pendingWrites());
+
+        assertTrue(tree.remove(3));
+        assertFalse(tree.remove(3));
+        assertFalse(tree.contains(3));
+        assertTrue(tree.add(3));
+        assertEquals(0, tree.pendingWrites());
+
+        assertTrue(tree.add(10));
+        assertFalse(tree.add(10));
+        assertFalse(tree.add(5));
+        assertTrue(tree.remove(10));
+        assertFalse(tree.remove(11));
+        assertEquals(0, tree.pendingWrites());
+        assertEquals(10, tree.size());
+
+        tree.add(-1);
+        tree.remove(0);
+        assertEquals(2, tree.pendingWrites());
+        tree.clear();
+        assertTrue(tree.isEmpty());
+        assertFalse(tree.contains(-1));
+    }
+
+    @Test
+    void mergesWhenBufferFills() {
+        BufferedRedBlackTree<Integer> tree = new BufferedRedBlackTree<>(COMPARATOR, 100);
+        for (int i = 999; i >= 0; i--) {
+            tree.add(i);
+            assertEquals((999 - i) % 100 + 1, tree.pendingWrites());
+        }
+        assertEquals(1_000, tree.size());
+
+        Iterator<Integer> it = tree.iterator();
+        assertEquals(0, tree.pendingWrites());
+        for (int i = 0; i < 1_000; i++) {
+            assertEquals(i, it.next());
+            if (i % 2 == 0) {
+                it.remove();
+            }
+        }
+        assertEquals(500, tree.size());
+        assertFalse(tree.contains(0));
+        assertTrue(tree.contains(1));
+    }
+
+    @Test
+    void mergesLargeBatchesAtOnce() {
+        Random random = new Random(42);
+        BufferedRedBlackTree<Integer> tree = new BufferedRedBlackTree<>(COMPARATOR, 16);
+        TreeSet<Integer> expected = new TreeSet<>();
+
+        for (int round = 0; round < 100; round++) {
+            List<Integer> batch = new ArrayList<>();
+            for (int i = 0; i < (round % 2 == 0 ? 10 : 1_000); i++) {
+                batch.add(round * 100 + random.nextInt(1_000));
+            }
+            assertEquals(expected.addAll(batch), tree.addAll(batch));
+            assertTrue(tree.pendingWrites() <= 16);
+
+            int key = random.nextInt(10_000);
+            assertEquals(expected.remove(key), tree.remove(key));
+            assertEquals(expected.size(), tree.size());
+        }
+
+        assertArrayEquals(expected.toArray(), tree.toArray());
+    }
+
+    @Test(shouldRaise = ConcurrentModificationException.class)
+    void iteratorFailsFastOnModification() {
+        BufferedRedBlackTree<Integer> tree = new BufferedRedBlackTree<>(COMPARATOR);
+        for (int i = 0; i < 10; i++) {
+            tree.add(i);
+        }
+
+        Iterator<Integer> it = tree.iterator();
+        it.next();
+        tree.add(100);
+        it.next();
+    }
+}
@@ -0,0 +1,126 @@
+import arx.dukalis.collections.ConcurrentRedBlackTree;
+import arx.dukalis.unit.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static arx.dukalis.unit.api.Assertions.*;
+
+public class ConcurrentRedBlackTreeTest {
+
+    private static final Comparator<Object> COMPARATOR = Comparator.comparing(o -> ((Integer) o));
+
+    @Test
+    void properlyHandlesInsertionAndRemoval() {
+        Collection<Integer> tree = new ConcurrentRedBlackTree<>(COMPARATOR);
+        tree.add(5);
+        tree.add(1);
+        tree.add(10);
+        tree.remove(5);
+
+        assertTrue(tree.contains(1));
+        assertFalse(tree.contains(5));
+        assertTrue(tree.contains(10));
+        assertEquals(2, tree.size());
+        assertArrayEquals(new Object[]{1, 10}, tree.toArray());
+
+        Iterator<Integer> iterator = tree.iterator();
+        iterator.next();
+        iterator.remove();
+        assertArrayEquals(new Object[]{10}, tree.toArray());
+    }
+
+    /**
+     * Writers churn odd keys while readers check that even keys, which are never removed,
+     * stay visible to lookups and iteration.
+     */
+    @Test
+    void survivesConcurrentReadsAndWrites() throws Exception {
+        final int KEYS = 10_000;
+        final int WRITERS = 2;
+        final int READERS = 4;
+        final int OPERATIONS = 200_000;
+
+        ConcurrentRedBlackTree<Integer> tree = new ConcurrentRedBlackTree<>(COMPARATOR);
+        for (int i = 0; i < KEYS; i += 2) {
+            tree.add(i);
+        }
+
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        AtomicBoolean writing = new AtomicBoolean(true);
+        CountDownLatch writersDone = new CountDownLatch(WRITERS);
+        List<Thread> threads = new ArrayList<>();
+
+        for (int w = 0; w < WRITERS; w++) {
+            threads.add(new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < OPERATIONS; i++) {
+                    int key = random.nextInt(KEYS / 2) * 2 + 1;
+                    if (random.nextBoolean()) {
+                        tree.add(key);
+                    } else {
+                        tree.remove(key);
+                    }
+                }
+                writersDone.countDown();
+            }));
+        }
+
+        for (int r = 0; r < READERS; r++) {
+            threads.add(new Thread(() -> {
+                try {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    while (writing.get()) {
+                        for (int i = 0; i < 1_000; i++) {
+                            int key = random.nextInt(KEYS / 2) * 2;
+                            if (!tree.contains(key)) {
+                                throw new AssertionError("Lost stable key " + key);
+                            }
+                        }
+
+                        int expectedEven = 0;
+                        int previous = -1;
+                        for (Integer elem : tree) {
+                            if (elem <= previous) {
+                                throw new AssertionError("Iteration out of order: " + previous + ", " + elem);
+                            }
+                            if (elem % 2 == 0) {
+                                if (elem != expectedEven) {
+                                    throw new AssertionError("Iteration skipped stable key " + expectedEven);
+                                }
+                                expectedEven += 2;
+                            }
+                            previous = elem;
+                        }
+                        if (expectedEven != KEYS) {
+                            throw new AssertionError("Iteration stopped at " + expectedEven);
+                        }
+                    }
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                }
+            }));
+        }
+
+        threads.forEach(Thread::start);
+        writersDone.await();
+        writing.set(false);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        if (failure.get() != null) {
+            throw new AssertionError(failure.get());
+        }
+        for (int i = 0; i < KEYS; i += 2) {
+            assertTrue(tree.contains(i));
+        }
+    }
+}
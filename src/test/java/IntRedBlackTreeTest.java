@@ -0,0 +1,86 @@
+import arx.dukalis.collections.IntRedBlackTree;
+import arx.dukalis.unit.api.Test;
+
+import java.util.PrimitiveIterator;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.stream.IntStream;
+
+import static arx.dukalis.unit.api.Assertions.*;
+
+public class IntRedBlackTreeTest {
+
+    @Test
+    void properlyHandlesInsertionAndSearch() {
+        IntRedBlackTree tree = new IntRedBlackTree();
+        assertTrue(tree.add(5));
+        assertTrue(tree.add(1));
+        assertTrue(tree.add(10));
+        assertFalse(tree.add(5));
+
+        assertTrue(tree.contains(1));
+        assertTrue(tree.contains(5));
+        assertTrue(tree.contains(10));
+
+        assertFalse(tree.contains(42));
+        assertEquals(3, tree.size());
+    }
+
+    @Test
+    void properlyHandlesExtremeKeys() {
+        IntRedBlackTree tree = new IntRedBlackTree();
+        tree.add(Integer.MAX_VALUE);
+        tree.add(Integer.MIN_VALUE);
+        tree.add(0);
+
+        PrimitiveIterator.OfInt iterator = tree.iterator();
+        assertEquals(Integer.MIN_VALUE, iterator.nextInt());
+        assertEquals(0, iterator.nextInt());
+        assertEquals(Integer.MAX_VALUE, iterator.nextInt());
+        assertFalse(iterator.hasNext());
+    }
+
+    @Test
+    void properlyHandlesRemoval() {
+        final int SIZE = 10_000;
+
+        IntRedBlackTree tree = new IntRedBlackTree();
+        for (int i = 0; i < SIZE; i++) {
+            tree.add(i);
+        }
+
+        for (int i = 0; i < SIZE; i += 2) {
+            assertTrue(tree.remove(i));
+        }
+        assertFalse(tree.remove(0));
+
+        for (int i = 0; i < SIZE; i++) {
+            assertEquals(i % 2 != 0, tree.contains(i));
+        }
+        assertEquals(SIZE / 2, tree.size());
+
+        tree.clear();
+        assertTrue(tree.isEmpty());
+    }
+
+    @Test
+    void properlyHandlesRandomOperations() {
+        final int OPERATIONS = 100_000;
+
+        Random random = new Random(42);
+        IntRedBlackTree tree = new IntRedBlackTree();
+        TreeSet<Integer> expected = new TreeSet<>();
+
+        for (int i = 0; i < OPERATIONS; i++) {
+            int key = random.nextInt(1_000);
+            if (random.nextBoolean()) {
+                assertEquals(expected.add(key), tree.add(key));
+            } else {
+                assertEquals(expected.remove(key), tree.remove(key));
+            }
+        }
+
+        assertEquals(expected.size(), tree.size());
+        assertTrue(IntStream.of(tree.toArray()).boxed().toList().equals(expected.stream().toList()));
+    }
+}
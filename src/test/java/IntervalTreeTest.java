@@ -0,0 +1,140 @@
+import arx.dukalis.collections.IntervalTree;
+import arx.dukalis.collections.IntervalTree.Interval;
+import arx.dukalis.unit.api.Test;
+
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static arx.dukalis.unit.api.Assertions.*;
+
+public class IntervalTreeTest {
+
+    private static Object[] bruteForce(TreeSet<Interval> intervals, long from, long to) {
+        return intervals.stream().filter(i -> i.start() <= to && i.end() >= from).toArray();
+    }
+
+    private static TreeSet<Interval> expectedSet() {
+        return new TreeSet<>((a, b) -> a.start() != b.start()
+                ? Long.compare(a.start(), b.start())
+                : Long.compare(a.end(), b.end()));
+    }
+
+    @Test
+    void properlyAnswersOverlapQueries() {
+        IntervalTree<Interval> tree = IntervalTree.ofIntervals();
+        tree.add(new Interval(1, 5));
+        tree.add(new Interval(3, 3));
+        tree.add(new Interval(4, 10));
+        tree.add(new Interval(12, 20));
+        assertFalse(tree.add(new Interval(1, 5)));
+        assertEquals(4, tree.size());
+
+        assertArrayEquals(new Object[]{new Interval(1, 5), new Interval(3, 3)}, tree.stabbing(3).toArray());
+        assertArrayEquals(new Object[]{new Interval(4, 10), new Interval(12, 20)}, tree.overlapping(10, 12).toArray());
+        assertEquals(0L, tree.overlapping(11, 11).count());
+        assertEquals(0L, tree.stabbing(21).count());
+        assertEquals(4L, tree.overlapping(Long.MIN_VALUE, Long.MAX_VALUE).count());
+
+        assertTrue(tree.remove(new Interval(4, 10)));
+        assertEquals(0L, tree.overlapping(6, 11).count());
+    }
+
+    @Test
+    void properlyHandlesRandomOperations() {
+        final int OPERATIONS = 50_000;
+        final int RANGE = 100_000;
+
+        Random random = new Random(42);
+        IntervalTree<Interval> tree = IntervalTree.ofIntervals();
+        TreeSet<Interval> expected = expectedSet();
+
+        for (int i = 0; i < OPERATIONS; i++) {
+            long start = random.nextInt(RANGE);
+            Interval interval = new Interval(start, start + random.nextInt(random.nextBoolean() ? 100 : 10_000));
+            if (random.nextInt(3) > 0) {
+                assertEquals(expected.add(interval), tree.add(interval));
+            } else {
+                Interval present = expected.ceiling(interval);
+                if (present != null) {
+                    assertEquals(expected.remove(present), tree.remove(present));
+                }
+            }
+
+            if (i % 100 == 0) {
+                long from = random.nextInt(RANGE);
+                long to = from + random.nextInt(1_000);
+                assertArrayEquals(bruteForce(expected, from, to), tree.overlapping(from, to).toArray());
+                assertArrayEquals(bruteForce(expected, from, from), tree.stabbing(from).toArray());
+            }
+        }
+
+        assertEquals(expected.size(), tree.size());
+        assertArrayEquals(expected.toArray(), tree.toArray());
+
+        Iterator<Interval> it = tree.iterator();
+        while (it.hasNext()) {
+            if (it.next().start() % 2 == 0) {
+                it.remove();
+            }
+        }
+        expected.removeIf(interval -> interval.start() % 2 == 0);
+        for (int i = 0; i < 100; i++) {
+            long from = random.nextInt(RANGE);
+            long to = from + random.nextInt(10_000);
+            assertArrayEquals(bruteForce(expected, from, to), tree.overlapping(from, to).toArray());
+        }
+    }
+
+    @Test
+    void distinguishesElementsWithEqualEndpoints() {
+        record Booking(String guest, long checkIn, long checkOut) {
+        }
+
+        IntervalTree<Booking> tree = new IntervalTree<>(Booking::checkIn, Booking::checkOut,
+                (a, b) -> ((Booking) a).guest().compareTo(((Booking) b).guest()));
+        tree.add(new Booking("b", 10, 12));
+        tree.add(new Booking("a", 10, 12));
+        tree.add(new Booking("c", 1, 2));
+
+        List<String> guests = new ArrayList<>();
+        tree.stabbing(11).forEach(booking -> guests.add(booking.guest()));
+        assertArrayEquals(new Object[]{"a", "b"}, guests.toArray());
+    }
+
+    @Test
+    void streamsLazily() {
+        final int SIZE = 100_000;
+
+        IntervalTree<Interval> tree = IntervalTree.ofIntervals();
+        for (int i = 0; i < SIZE; i++) {
+            tree.add(new Interval(i, i + SIZE));
+        }
+
+        assertArrayEquals(new Object[]{new Interval(1, SIZE + 1), new Interval(2, SIZE + 2)},
+                tree.stabbing(SIZE + 1).limit(2).toArray());
+        assertEquals(new Interval(SIZE - 1, 2 * SIZE - 1), tree.stabbing(2 * SIZE - 1).findFirst().orElseThrow());
+    }
+
+    @Test(shouldRaise = ConcurrentModificationException.class)
+    void streamFailsFastOnModification() {
+        IntervalTree<Interval> tree = IntervalTree.ofIntervals();
+        for (int i = 0; i < 10; i++) {
+            tree.add(new Interval(i, i + 10));
+        }
+
+        Iterator<Interval> overlapping = tree.overlapping(0, 100).iterator();
+        overlapping.next();
+        tree.add(new Interval(100, 200));
+        overlapping.next();
+    }
+
+    @Test(shouldRaise = IllegalArgumentException.class)
+    void rejectsReversedInterval() {
+        IntervalTree<long[]> tree = new IntervalTree<>(bounds -> bounds[0], bounds -> bounds[1], (a, b) -> 0);
+        tree.add(new long[]{2, 1});
+    }
+}
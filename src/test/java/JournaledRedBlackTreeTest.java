@@ -0,0 +1,349 @@
+import arx.dukalis.collections.JournaledRedBlackTree;
+import arx.dukalis.collections.KeyCodec;
+import arx.dukalis.unit.api.Test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.stream.Stream;
+
+import static arx.dukalis.unit.api.Assertions.*;
+
+public class JournaledRedBlackTreeTest {
+
+    private static final Comparator<Object> COMPARATOR = Comparator.comparing(o -> ((Integer) o));
+
+    private static void deleteRecursively(Path directory) throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    @Test
+    void recoversFromJournal() throws Exception {
+        Path directory = Files.createTempDirectory("journaled-tree");
+        try {
+            Random random = new Random(42);
+            TreeSet<Integer> expected = new TreeSet<>();
+
+            try (JournaledRedBlackTree<Integer> tree = JournaledRedBlackTree.open(directory, COMPARATOR, KeyCodec.ofIntegers())) {
+                for (int i = 0; i < 2_000; i++) {
+                    int key = random.nextInt(1_000);
+                    if (random.nextInt(3) > 0) {
+                        assertEquals(expected.add(key), tree.add(key));
+                    } else {
+                        assertEquals(expected.remove(key), tree.remove(key));
+                    }
+                    if (i == 1_000) {
+                        tree.clear();
+                        expected.clear();
+                    }
+                }
+                assertTrue(tree.addAll(List.of(-1, -2, -3)));
+                assertTrue(tree.removeAll(List.of(-2, 5_000)));
+                expected.addAll(List.of(-1, -3));
+                assertTrue(tree.retainAll(new ArrayList<>(expected.headSet(500))));
+                expected.removeIf(key -> key >= 500);
+            }
+
+            try (JournaledRedBlackTree<Integer> tree = JournaledRedBlackTree.open(directory, COMPARATOR, KeyCodec.ofIntegers())) {
+                assertArrayEquals(expected.toArray(), tree.toArray());
+                assertFalse(Files.exists(directory.resolve("checkpoint.1")));
+            }
+        } finally {
+            deleteRecursively(directory);
+        }
+    }
+
+    @Test
+    void checkpointsAndTruncatesJournal() throws Exception {
+        final int SIZE = 10_000;
+        final long CHECKPOINT_BYTES = 4_096;
+
+        Path directory = Files.createTempDirectory("journaled-tree");
+        try {
+            try (JournaledRedBlackTree<Integer> tree = JournaledRedBlackTree.open(directory, COMPARATOR,
+                    KeyCodec.ofIntegers(), CHECKPOINT_BYTES)) {
+                for (int i = 0; i < SIZE; i++) {
+                    tree.add(i);
+                    assertTrue(tree.journalSize() < CHECKPOINT_BYTES);
+                }
+                for (int i = 0; i < SIZE; i += 2) {
+                    tree.remove(i);
+                }
+                try (Stream<Path> files = Files.list(directory)) {
+                    assertEquals(1L, files.filter(path -> path.getFileName().toString().startsWith("checkpoint.")).count());
+                }
+            }
+
+            try (JournaledRedBlackTree<Integer> tree = JournaledRedBlackTree.open(directory, COMPARATOR,
+                    KeyCodec.ofIntegers(), CHECKPOINT_BYTES)) {
+                assertEquals(SIZE / 2, tree.size());
+                assertTrue(tree.contains(1));
+                assertFalse(tree.contains(2));
+
+                tree.checkpoint();
+                assertEquals(16L, tree.journalSize());
+            }
+        } finally {
+            deleteRecursively(directory);
+        }
+    }
+
+    @Test
+    void ignoresJournalOlderThanCheckpoint() throws Exception {
+        Path directory = Files.createTempDirectory("journaled-tree");
+        try {
+            Path journal = directory.resolve("journal");
+            Path saved = directory.resolve("journal.saved");
+
+            try (JournaledRedBlackTree<Integer> tree = JournaledRedBlackTree.open(directory, COMPARATOR, KeyCodec.ofIntegers())) {
+                tree.addAll(List.of(1, 2, 3, 4));
+                tree.remove(2);
+                tree.clear();
+                tree.addAll(List.of(5, 6));
+                tree.remove(5);
+                Files.copy(journal, saved);
+
+                tree.add(7);
+                tree.checkpoint();
+            }
+
+            // Crash after the checkpoint replaced the previous one, but before the journal was truncated.
+            Files.move(saved, journal, StandardCopyOption.REPLACE_EXISTING);
+
+            try (JournaledRedBlackTree<Integer> tree = JournaledRedBlackTree.open(directory, COMPARATOR, KeyCodec.ofIntegers())) {
+                assertArrayEquals(new Object[]{6, 7}, tree.toArray());
+            }
+        } finally {
+            deleteRecursively(directory);
+        }
+    }
+
+    @Test
+    void truncatesTornRecord() throws Exception {
+        Path directory = Files.createTempDirectory("journaled-tree");
+        try {
+            try (JournaledRedBlackTree<Integer> tree = JournaledRedBlackTree.open(directory, COMPARATOR, KeyCodec.ofIntegers())) {
+                tree.add(1);
+                tree.add(2);
+            }
+
+            Path journal = directory.resolve("journal");
+            long valid = Files.size(journal);
+            try (FileChannel channel = FileChannel.open(journal, StandardOpenOption.APPEND)) {
+                // Length and operation of an addition, cut off in the middle of the key.
+                channel.write(ByteBuffer.allocate(7).putInt(5).put((byte) 1).putShort((short) 3).flip());
+            }
+
+            try (JournaledRedBlackTree<Integer> tree = JournaledRedBlackTree.open(directory, COMPARATOR, KeyCodec.ofIntegers())) {
+                assertArrayEquals(new Object[]{1, 2}, tree.toArray());
+                assertEquals(valid, tree.journalSize());
+                tree.add(3);
+            }
+
+            try (JournaledRedBlackTree<Integer> tree = JournaledRedBlackTree.open(directory, COMPARATOR, KeyCodec.ofIntegers())) {
+                assertArrayEquals(new Object[]{1, 2, 3}, tree.toArray());
+            }
+        } finally {
+            deleteRecursively(directory);
+        }
+    }
+
+    @Test
+    void sharesCommitsBetweenWriters() throws Exception {
+        final int THREADS = 4;
+        final int PER_THREAD = 500;
+
+        Path directory = Files.createTempDirectory("journaled-tree");
+        try {
+            try (JournaledRedBlackTree<Integer> tree = JournaledRedBlackTree.open(directory, COMPARATOR, KeyCodec.ofIntegers())) {
+                List<Thread> writers = new ArrayList<>();
+                for (int t = 0; t < THREADS; t++) {
+                    int offset = t * PER_THREAD;
+                    Thread writer = new Thread(() -> {
+                        for (int i = 0; i < PER_THREAD; i++) {
+                            tree.add(offset + i);
+                        }
+                    });
+                    writer.start();
+                    writers.add(writer);
+                }
+                for (Thread writer : writers) {
+                    writer.join();
+                }
+                assertEquals(THREADS * PER_THREAD, tree.size());
+            }
+
+            try (JournaledRedBlackTree<Integer> tree = JournaledRedBlackTree.open(directory, COMPARATOR, KeyCodec.ofIntegers())) {
+                assertEquals(THREADS * PER_THREAD, tree.size());
+                assertEquals(16L + 13L * THREADS * PER_THREAD, tree.journalSize());
+            }
+        } finally {
+            deleteRecursively(directory);
+        }
+    }
+
+    @Test
+    void keepsWritingWhenCheckpointFails() throws Exception {
+        final long CHECKPOINT_BYTES = 4_096;
+
+        Path directory = Files.createTempDirectory("journaled-tree");
+        try {
+            Path blocker = directory.resolve("checkpoint.tmp");
+            try (JournaledRedBlackTree<Integer> tree = JournaledRedBlackTree.open(directory, COMPARATOR,
+                    KeyCodec.ofIntegers(), CHECKPOINT_BYTES)) {
+                // A directory in place of the temporary checkpoint makes writing it fail.
+                Files.createDirectories(blocker.resolve("blocker"));
+                for (int i = 0; i < 1_000; i++) {
+                    assertTrue(tree.add(i));
+                }
+                assertTrue(tree.journalSize() > CHECKPOINT_BYTES);
+
+                boolean failed = false;
+                try {
+                    tree.checkpoint();
+                } catch (IOException e) {
+                    failed = true;
+                }
+                assertTrue(failed);
+
+                deleteRecursively(blocker);
+                for (int i = 1_000; i < 2_000; i++) {
+                    assertTrue(tree.add(i));
+                }
+                assertTrue(tree.journalSize() < CHECKPOINT_BYTES);
+            }
+
+            try (JournaledRedBlackTree<Integer> tree = JournaledRedBlackTree.open(directory, COMPARATOR, KeyCodec.ofIntegers())) {
+                assertEquals(2_000, tree.size());
+            }
+        } finally {
+            deleteRecursively(directory);
+        }
+    }
+
+    @Test
+    void refusesWritesAfterFailedCheckpointReplacement() throws Exception {
+        Path directory = Files.createTempDirectory("journaled-tree");
+        try {
+            // A non-empty directory in place of the previous checkpoint can't be deleted by the next one.
+            Path previous = directory.resolve("checkpoint.0");
+            Files.createDirectories(previous.resolve("blocker"));
+
+            try (JournaledRedBlackTree<Integer> tree = JournaledRedBlackTree.open(directory, COMPARATOR, KeyCodec.ofIntegers())) {
+                tree.addAll(List.of(1, 2, 3));
+
+                boolean failed = false;
+                try {
+                    tree.checkpoint();
+                } catch (IOException e) {
+                    failed = true;
+                }
+                assertTrue(failed);
+
+                failed = false;
+                try {
+                    tree.add(4);
+                } catch (UncheckedIOException e) {
+                    failed = true;
+                }
+                assertTrue(failed);
+            }
+
+            deleteRecursively(previous);
+            try (JournaledRedBlackTree<Integer> tree = JournaledRedBlackTree.open(directory, COMPARATOR, KeyCodec.ofIntegers())) {
+                assertArrayEquals(new Object[]{1, 2, 3}, tree.toArray());
+                assertTrue(tree.add(4));
+            }
+        } finally {
+            deleteRecursively(directory);
+        }
+    }
+
+    @Test
+    void rejectsNullKeys() throws Exception {
+        Path directory = Files.createTempDirectory("journaled-tree");
+        try {
+            try (JournaledRedBlackTree<Integer> tree = JournaledRedBlackTree.open(directory,
+                    Comparator.nullsFirst(COMPARATOR), KeyCodec.ofIntegers())) {
+                tree.add(1);
+                for (int attempt = 0; attempt < 2; attempt++) {
+                    boolean rejected = false;
+                    try {
+                        if (attempt == 0) {
+                            tree.add(null);
+                        } else {
+                            tree.remove(null);
+                        }
+                    } catch (NullPointerException e) {
+                        rejected = true;
+                    }
+                    assertTrue(rejected);
+                }
+                tree.clear();
+                tree.add(2);
+            }
+
+            try (JournaledRedBlackTree<Integer> tree = JournaledRedBlackTree.open(directory, COMPARATOR, KeyCodec.ofIntegers())) {
+                assertArrayEquals(new Object[]{2}, tree.toArray());
+            }
+        } finally {
+            deleteRecursively(directory);
+        }
+    }
+
+    @Test
+    void recoversFromTornJournalHeader() throws Exception {
+        Path directory = Files.createTempDirectory("journaled-tree");
+        try {
+            Path journal = directory.resolve("journal");
+
+            try (JournaledRedBlackTree<Integer> tree = JournaledRedBlackTree.open(directory, COMPARATOR, KeyCodec.ofIntegers())) {
+                tree.addAll(List.of(1, 2, 3));
+                tree.checkpoint();
+            }
+
+            // Crash while the journal was restarted after the checkpoint, with a part of its header written.
+            for (int length = 0; length < 16; length += 5) {
+                try (FileChannel channel = FileChannel.open(journal, StandardOpenOption.WRITE)) {
+                    channel.truncate(length);
+                }
+
+                try (JournaledRedBlackTree<Integer> tree = JournaledRedBlackTree.open(directory, COMPARATOR, KeyCodec.ofIntegers())) {
+                    assertArrayEquals(new Object[]{1, 2, 3}, tree.toArray());
+                    tree.add(length + 10);
+                }
+                try (JournaledRedBlackTree<Integer> tree = JournaledRedBlackTree.open(directory, COMPARATOR, KeyCodec.ofIntegers())) {
+                    assertTrue(tree.contains(length + 10));
+                    tree.remove(length + 10);
+                }
+            }
+        } finally {
+            deleteRecursively(directory);
+        }
+    }
+
+    @Test(shouldRaise = IOException.class)
+    void rejectsForeignJournal() throws Exception {
+        Path directory = Files.createTempDirectory("journaled-tree");
+        try {
+            Files.write(directory.resolve("journal"), new byte[]{1, 2, 3, 4, 5, 6, 7, 8});
+            JournaledRedBlackTree.open(directory, COMPARATOR, KeyCodec.ofIntegers()).close();
+        } finally {
+            deleteRecursively(directory);
+        }
+    }
+}
@@ -0,0 +1,86 @@
+import arx.dukalis.collections.LongRedBlackTree;
+import arx.dukalis.unit.api.Test;
+
+import java.util.PrimitiveIterator;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.stream.LongStream;
+
+import static arx.dukalis.unit.api.Assertions.*;
+
+public class LongRedBlackTreeTest {
+
+    @Test
+    void properlyHandlesInsertionAndSearch() {
+        LongRedBlackTree tree = new LongRedBlackTree();
+        assertTrue(tree.add(5));
+        assertTrue(tree.add(1));
+        assertTrue(tree.add(10));
+        assertFalse(tree.add(5));
+
+        assertTrue(tree.contains(1));
+        assertTrue(tree.contains(5));
+        assertTrue(tree.contains(10));
+
+        assertFalse(tree.contains(42));
+        assertEquals(3, tree.size());
+    }
+
+    @Test
+    void properlyHandlesExtremeKeys() {
+        LongRedBlackTree tree = new LongRedBlackTree();
+        tree.add(Long.MAX_VALUE);
+        tree.add(Long.MIN_VALUE);
+        tree.add(0);
+
+        PrimitiveIterator.OfLong iterator = tree.iterator();
+        assertEquals(Long.MIN_VALUE, iterator.nextLong());
+        assertEquals(0, iterator.nextLong());
+        assertEquals(Long.MAX_VALUE, iterator.nextLong());
+        assertFalse(iterator.hasNext());
+    }
+
+    @Test
+    void properlyHandlesRemoval() {
+        final int SIZE = 10_000;
+
+        LongRedBlackTree tree = new LongRedBlackTree();
+        for (int i = 0; i < SIZE; i++) {
+            tree.add(i * (1L << 33));
+        }
+
+        for (int i = 0; i < SIZE; i += 2) {
+            assertTrue(tree.remove(i * (1L << 33)));
+        }
+        assertFalse(tree.remove(0L));
+
+        for (int i = 0; i < SIZE; i++) {
+            assertEquals(i % 2 != 0, tree.contains(i * (1L << 33)));
+        }
+        assertEquals(SIZE / 2, tree.size());
+
+        tree.clear();
+        assertTrue(tree.isEmpty());
+    }
+
+    @Test
+    void properlyHandlesRandomOperations() {
+        final int OPERATIONS = 100_000;
+
+        Random random = new Random(42);
+        LongRedBlackTree tree = new LongRedBlackTree();
+        TreeSet<Long> expected = new TreeSet<>();
+
+        for (int i = 0; i < OPERATIONS; i++) {
+            long key = random.nextInt(1_000) + (1L << 40);
+            if (random.nextBoolean()) {
+                assertEquals(expected.add(key), tree.add(key));
+            } else {
+                assertEquals(expected.remove(key), tree.remove(key));
+            }
+        }
+
+        assertEquals(expected.size(), tree.size());
+        assertTrue(LongStream.of(tree.toArray()).boxed().toList().equals(expected.stream().toList()));
+    }
+}
@@ -0,0 +1,104 @@
+import arx.dukalis.collections.KeyCodec;
+import arx.dukalis.collections.MappedSortedIndex;
+import arx.dukalis.collections.RedBlackTree;
+import arx.dukalis.unit.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Objects;
+import java.util.Random;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import static arx.dukalis.unit.api.Assertions.*;
+
+public class MappedSortedIndexTest {
+
+    private static final Comparator<Object> COMPARATOR = Comparator.comparing(o -> ((Integer) o));
+
+    @Test
+    void properlyHandlesFixedWidthKeys() throws Exception {
+        final int SIZE = 100_000;
+
+        Path file = Files.createTempFile("sorted-index", ".idx");
+        try {
+            Random random = new Random(42);
+            RedBlackTree<Integer> tree = new RedBlackTree<>(COMPARATOR);
+            TreeSet<Integer> expected = new TreeSet<>();
+            for (int i = 0; i < SIZE; i++) {
+                int key = random.nextInt(SIZE * 4);
+                tree.add(key);
+                expected.add(key);
+            }
+
+            MappedSortedIndex.write(file, tree, KeyCodec.ofIntegers());
+            assertEquals(16L + 4L * expected.size(), Files.size(file));
+
+            SortedSet<Integer> index = MappedSortedIndex.open(file, COMPARATOR, KeyCodec.ofIntegers());
+            assertEquals(expected.size(), index.size());
+            assertEquals(expected.first(), index.first());
+            assertEquals(expected.last(), index.last());
+            assertArrayEquals(expected.toArray(), index.toArray());
+
+            for (int i = 0; i < 1_000; i++) {
+                int probe = random.nextInt(SIZE * 4);
+                assertEquals(expected.contains(probe), index.contains(probe));
+
+                int lo = random.nextInt(SIZE * 4);
+                int hi = lo + random.nextInt(SIZE);
+                assertArrayEquals(expected.subSet(lo, hi).toArray(), index.subSet(lo, hi).toArray());
+                assertEquals(expected.headSet(hi).size(), index.headSet(hi).size());
+                assertEquals(expected.tailSet(lo).size(), index.tailSet(lo).size());
+                assertTrue(Objects.equals(expected.subSet(lo, hi).isEmpty() ? null : expected.subSet(lo, hi).first(),
+                        index.subSet(lo, hi).isEmpty() ? null : index.subSet(lo, hi).first()));
+                assertFalse(index.subSet(lo, hi).contains(hi));
+            }
+
+            assertTrue(index.equals(expected));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    void properlyHandlesOffsetIndexedKeys() throws Exception {
+        Path file = Files.createTempFile("sorted-index", ".idx");
+        try {
+            RedBlackTree<String> tree = new RedBlackTree<>(Comparator.comparing(o -> ((String) o)));
+            for (int i = 0; i < 1_000; i++) {
+                tree.add("key-" + i);
+            }
+            tree.add("");
+            tree.add("\u043a\u043b\u044e\u0447");
+
+            MappedSortedIndex.write(file, tree, KeyCodec.ofStrings());
+            SortedSet<String> index = MappedSortedIndex.open(file, Comparator.comparing(o -> ((String) o)), KeyCodec.ofStrings());
+
+            assertArrayEquals(tree.toArray(), index.toArray());
+            assertTrue(index.contains(""));
+            assertTrue(index.contains("key-500"));
+            assertFalse(index.contains("key-1000"));
+            assertArrayEquals(tree.subSet("key-10", "key-11").toArray(), index.subSet("key-10", "key-11").toArray());
+            assertArrayEquals(tree.tailSet("key-998").toArray(), index.tailSet("key-998").toArray());
+            assertEquals("", index.first());
+            assertEquals("\u043a\u043b\u044e\u0447", index.last());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test(shouldRaise = UnsupportedOperationException.class)
+    void rejectsModification() throws Exception {
+        Path file = Files.createTempFile("sorted-index", ".idx");
+        try {
+            RedBlackTree<Integer> tree = new RedBlackTree<>(COMPARATOR);
+            tree.add(1);
+            MappedSortedIndex.write(file, tree, KeyCodec.ofIntegers());
+
+            MappedSortedIndex.open(file, COMPARATOR, KeyCodec.ofIntegers()).add(2);
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+import arx.dukalis.unit.api.After;
+import arx.dukalis.unit.api.Before;
+import arx.dukalis.unit.api.Parallel;
+import arx.dukalis.unit.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static arx.dukalis.unit.api.Assertions.*;
+
+/**
+ * Tests run concurrently, each on its own instance, so they don't see each other's state.
+ */
+@Parallel
+public class ParallelUnitTestingTest {
+
+    private final List<String> log = new ArrayList<>();
+
+    @Before
+    void setUp() {
+        log.add("before");
+    }
+
+    @Test
+    void sleepsOnItsOwnInstance() throws Exception {
+        Thread.sleep(100);
+        log.add("sleeps");
+        assertArrayEquals(new Object[]{"before", "sleeps"}, log.toArray());
+    }
+
+    @Test
+    void sleepsLongerOnItsOwnInstance() throws Exception {
+        Thread.sleep(200);
+        log.add("sleeps longer");
+        assertArrayEquals(new Object[]{"before", "sleeps longer"}, log.toArray());
+    }
+
+    @Test
+    void seesOnlyItsBefore() {
+        assertEquals(1, log.size());
+    }
+
+    @Test(shouldRaise = IllegalStateException.class)
+    void raisesInParallel() {
+        throw new IllegalStateException();
+    }
+
+    @After
+    void tearDown() {
+        log.clear();
+    }
+}
@@ -0,0 +1,84 @@
+import arx.dukalis.collections.PersistentRedBlackTree;
+import arx.dukalis.unit.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static arx.dukalis.unit.api.Assertions.*;
+
+public class PersistentRedBlackTreeTest {
+
+    private static final Comparator<Object> COMPARATOR = Comparator.comparing(o -> ((Integer) o));
+
+    @Test
+    void properlyHandlesInsertionAndSearch() {
+        PersistentRedBlackTree<Integer> tree = PersistentRedBlackTree.<Integer>empty(COMPARATOR)
+                .plus(5)
+                .plus(1)
+                .plus(10);
+
+        assertTrue(tree.contains(1));
+        assertTrue(tree.contains(5));
+        assertTrue(tree.contains(10));
+        assertFalse(tree.contains(42));
+        assertEquals(3, tree.size());
+        assertTrue(tree.plus(5) == tree);
+        assertTrue(tree.minus(42) == tree);
+    }
+
+    @Test
+    void keepsPreviousVersionsIntact() {
+        final int SIZE = 1_000;
+
+        List<PersistentRedBlackTree<Integer>> versions = new ArrayList<>();
+        PersistentRedBlackTree<Integer> tree = PersistentRedBlackTree.empty(COMPARATOR);
+        versions.add(tree);
+
+        for (int i = 0; i < SIZE; i++) {
+            tree = tree.plus(i);
+            versions.add(tree);
+        }
+        for (int i = 0; i < SIZE; i += 2) {
+            tree = tree.minus(i);
+            versions.add(tree);
+        }
+
+        for (int v = 0; v <= SIZE; v++) {
+            PersistentRedBlackTree<Integer> version = versions.get(v);
+            assertEquals(v, version.size());
+            for (int i = 0; i < SIZE; i++) {
+                assertEquals(i < v, version.contains(i));
+            }
+        }
+        assertEquals(SIZE / 2, tree.size());
+        for (int i = 0; i < SIZE; i++) {
+            assertEquals(i % 2 != 0, tree.contains(i));
+        }
+    }
+
+    @Test
+    void properlyHandlesRandomOperations() {
+        final int OPERATIONS = 100_000;
+
+        Random random = new Random(42);
+        PersistentRedBlackTree<Integer> tree = PersistentRedBlackTree.empty(COMPARATOR);
+        TreeSet<Integer> expected = new TreeSet<>();
+
+        for (int i = 0; i < OPERATIONS; i++) {
+            int key = random.nextInt(1_000);
+            if (random.nextBoolean()) {
+                tree = tree.plus(key);
+                expected.add(key);
+            } else {
+                tree = tree.minus(key);
+                expected.remove(key);
+            }
+        }
+
+        assertEquals(expected.size(), tree.size());
+        assertArrayEquals(expected.toArray(), tree.toArray());
+    }
+}
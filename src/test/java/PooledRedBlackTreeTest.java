@@ -0,0 +1,146 @@
+import arx.dukalis.collections.PooledRedBlackTree;
+import arx.dukalis.collections.RedBlackTree;
+import arx.dukalis.unit.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+import static arx.dukalis.unit.api.Assertions.*;
+
+public class PooledRedBlackTreeTest {
+
+    @Test
+    void properlyHandlesInsertionAndSearch() {
+        Collection<Integer> tree = new PooledRedBlackTree<>(Comparator.comparing(o -> ((Integer) o)));
+        tree.add(5);
+        tree.add(1);
+        tree.add(10);
+
+        assertTrue(tree.contains(1));
+        assertTrue(tree.contains(5));
+        assertTrue(tree.contains(10));
+
+        assertFalse(tree.contains(42));
+    }
+
+    @Test
+    void properlyHandlesGroupOperations() {
+        final int SIZE = 10_000;
+
+        List<Integer> otherCollection = IntStream.range(0, SIZE).boxed().toList();
+        List<Integer> halfOfCollection = IntStream.range(0, SIZE / 2).boxed().toList();
+
+        Collection<Integer> tree = new PooledRedBlackTree<>(Comparator.comparing(o -> ((Integer) o)));
+
+        tree.addAll(otherCollection);
+        assertArrayEquals(otherCollection.toArray(), tree.toArray());
+
+        tree.removeAll(halfOfCollection);
+
+        for (int i = 0; i < SIZE / 2; i++) {
+            assertFalse(tree.contains(i));
+        }
+        for (int i = SIZE / 2; i < SIZE; i++) {
+            assertTrue(tree.contains(i));
+        }
+
+        tree.retainAll(halfOfCollection);
+        assertTrue(tree.isEmpty());
+    }
+
+    @Test
+    void properlyReusesFreedSlots() {
+        final int SIZE = 1_000;
+
+        PooledRedBlackTree<Integer> tree = new PooledRedBlackTree<>(Comparator.comparing(o -> ((Integer) o)), SIZE);
+
+        for (int round = 0; round < 10; round++) {
+            for (int i = 0; i < SIZE; i++) {
+                tree.add(round * SIZE + i);
+            }
+            for (int i = 0; i < SIZE; i++) {
+                tree.remove(round * SIZE + i);
+            }
+        }
+
+        assertTrue(tree.isEmpty());
+        assertEquals(SIZE, tree.capacity());
+    }
+
+    @Test
+    void properlyHandlesRandomOperations() {
+        final int OPERATIONS = 100_000;
+
+        Random random = new Random(42);
+        Collection<Integer> tree = new PooledRedBlackTree<>(Comparator.comparing(o -> ((Integer) o)));
+        TreeSet<Integer> expected = new TreeSet<>();
+
+        for (int i = 0; i < OPERATIONS; i++) {
+            int key = random.nextInt(1_000);
+            if (random.nextBoolean()) {
+                assertEquals(expected.add(key), tree.add(key));
+            } else {
+                assertEquals(expected.remove(key), tree.remove(key));
+            }
+        }
+
+        assertEquals(expected.size(), tree.size());
+        assertArrayEquals(expected.toArray(), tree.toArray());
+    }
+
+    /**
+     * Bytes allocated by the current thread per element to create a tree and fill it with the keys.
+     * Neither tree makes garbage while it is filled, so this is the memory the tree retains.
+     */
+    private static double allocatedBytesPerElement(Supplier<Collection<Integer>> factory, Integer[] keys) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long allocated = threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+        Collection<Integer> tree = factory.get();
+        for (Integer key : keys) {
+            tree.add(key);
+        }
+        return (double) (threads.getThreadAllocatedBytes(Thread.currentThread().getId()) - allocated) / keys.length;
+    }
+
+    @Test
+    void takesLessMemoryThanObjectNodes() {
+        final int SIZE = 100_000;
+
+        Integer[] keys = new Integer[SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            keys[i] = i;
+        }
+        Collections.shuffle(Arrays.asList(keys), new Random(42));
+
+        List<PooledRedBlackTree<Integer>> pooled = new ArrayList<>();
+        List<RedBlackTree<Integer>> objects = new ArrayList<>();
+        Supplier<Collection<Integer>> pooledFactory = () -> {
+            pooled.add(new PooledRedBlackTree<>(Comparator.comparing(o -> ((Integer) o)), SIZE));
+            return pooled.get(pooled.size() - 1);
+        };
+        Supplier<Collection<Integer>> objectFactory = () -> {
+            objects.add(new RedBlackTree<>(Comparator.comparing(o -> ((Integer) o))));
+            return objects.get(objects.size() - 1);
+        };
+
+        // Warm up both paths, so that the measurement doesn't see allocations of the compiler.
+        allocatedBytesPerElement(pooledFactory, keys);
+        allocatedBytesPerElement(objectFactory, keys);
+
+        double pooledBytes = allocatedBytesPerElement(pooledFactory, keys);
+        double objectBytes = allocatedBytesPerElement(objectFactory, keys);
+
+        assertTrue(pooledBytes < objectBytes);
+        assertTrue(Math.abs(pooled.get(1).bytesPerElement() - pooledBytes) <= 0.05 * pooledBytes);
+        assertTrue(Math.abs(objects.get(1).bytesPerElement() - objectBytes) <= 0.05 * objectBytes);
+    }
+}
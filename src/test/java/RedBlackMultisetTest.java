@@ -0,0 +1,140 @@
+import arx.dukalis.collections.RedBlackMultiset;
+import arx.dukalis.unit.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static arx.dukalis.unit.api.Assertions.*;
+
+public class RedBlackMultisetTest {
+
+    private static final Comparator<Object> COMPARATOR = Comparator.comparing(o -> ((Integer) o));
+
+    @Test
+    void properlyCountsOccurrences() {
+        RedBlackMultiset<Integer> multiset = new RedBlackMultiset<>(COMPARATOR);
+        assertTrue(multiset.add(5));
+        assertTrue(multiset.add(5));
+        assertTrue(multiset.add(1));
+        assertEquals(0, multiset.add(10, 3));
+
+        assertEquals(2, multiset.count(5));
+        assertEquals(1, multiset.count(1));
+        assertEquals(3, multiset.count(10));
+        assertEquals(0, multiset.count(42));
+        assertEquals(6, multiset.size());
+        assertEquals(3, multiset.distinctCount());
+        assertArrayEquals(new Object[]{1, 5, 5, 10, 10, 10}, multiset.toArray());
+        assertArrayEquals(new Object[]{1, 5, 10}, multiset.elementSet().toArray());
+
+        assertTrue(multiset.remove(5));
+        assertEquals(1, multiset.count(5));
+        assertEquals(3, multiset.remove(10, 2));
+        assertEquals(1, multiset.remove(10, 5));
+        assertFalse(multiset.contains(10));
+        assertFalse(multiset.remove(10));
+        assertEquals(1, multiset.setCount(1, 4));
+        assertEquals(4, multiset.setCount(1, 0));
+        assertArrayEquals(new Object[]{5}, multiset.toArray());
+        assertEquals(1, multiset.size());
+
+        multiset.clear();
+        assertTrue(multiset.isEmpty());
+        assertEquals(0, multiset.size());
+    }
+
+    @Test
+    void properlyHandlesRandomOperations() {
+        final int OPERATIONS = 100_000;
+
+        Random random = new Random(42);
+        RedBlackMultiset<Integer> multiset = new RedBlackMultiset<>(COMPARATOR);
+        TreeMap<Integer, Integer> expected = new TreeMap<>();
+
+        for (int i = 0; i < OPERATIONS; i++) {
+            int key = random.nextInt(500);
+            int occurrences = random.nextInt(4);
+            int previous = expected.getOrDefault(key, 0);
+            switch (random.nextInt(3)) {
+                case 0 -> {
+                    assertEquals(previous, multiset.add(key, occurrences));
+                    if (previous + occurrences > 0) expected.put(key, previous + occurrences);
+                }
+                case 1 -> {
+                    assertEquals(previous, multiset.remove(key, occurrences));
+                    if (previous > occurrences) expected.put(key, previous - occurrences);
+                    else if (occurrences > 0) expected.remove(key);
+                }
+                default -> assertEquals(previous, multiset.count(key));
+            }
+        }
+
+        List<Integer> occurrences = new ArrayList<>();
+        int total = 0;
+        for (Map.Entry<Integer, Integer> e : expected.entrySet()) {
+            for (int i = 0; i < e.getValue(); i++) {
+                occurrences.add(e.getKey());
+            }
+            total += e.getValue();
+        }
+        assertEquals(total, multiset.size());
+        assertEquals(expected.size(), multiset.distinctCount());
+        assertArrayEquals(occurrences.toArray(), multiset.toArray());
+    }
+
+    @Test
+    void keepsOneNodePerDistinctElement() {
+        final int SIZE = 1_000_000;
+
+        RedBlackMultiset<Integer> skewed = new RedBlackMultiset<>(COMPARATOR);
+        for (int i = 0; i < SIZE; i++) {
+            skewed.add(i % 3);
+        }
+
+        assertEquals(SIZE, skewed.size());
+        assertEquals(3, skewed.distinctCount());
+        assertEquals(SIZE / 3 + 1, skewed.count(0));
+        assertEquals(0, skewed.first());
+        assertEquals(2, skewed.last());
+    }
+
+    @Test
+    void properlyRemovesThroughIterator() {
+        RedBlackMultiset<Integer> multiset = new RedBlackMultiset<>(COMPARATOR);
+        for (int i = 0; i < 100; i++) {
+            multiset.add(i, i % 4);
+        }
+
+        Iterator<Integer> it = multiset.iterator();
+        boolean odd = false;
+        while (it.hasNext()) {
+            it.next();
+            if (odd) it.remove();
+            odd = !odd;
+        }
+
+        RedBlackMultiset<Integer> expected = new RedBlackMultiset<>(COMPARATOR);
+        odd = false;
+        for (int i = 0; i < 100; i++) {
+            for (int j = 0; j < i % 4; j++) {
+                if (!odd) expected.add(i);
+                odd = !odd;
+            }
+        }
+        assertEquals(expected.size(), multiset.size());
+        assertTrue(expected.equals(multiset));
+        assertEquals(expected.hashCode(), multiset.hashCode());
+    }
+
+    @Test(shouldRaise = IllegalArgumentException.class)
+    void rejectsCountOverflow() {
+        RedBlackMultiset<Integer> multiset = new RedBlackMultiset<>(COMPARATOR);
+        multiset.add(1, Integer.MAX_VALUE);
+        multiset.add(1);
+    }
+}
@@ -0,0 +1,201 @@
+import arx.dukalis.collections.RedBlackTreeMap;
+import arx.dukalis.unit.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static arx.dukalis.unit.api.Assertions.*;
+
+public class RedBlackTreeMapTest {
+
+    private static final Comparator<Object> COMPARATOR = Comparator.comparing(o -> ((Integer) o));
+
+    @Test
+    void properlyHandlesPutAndRemoval() {
+        Map<Integer, String> map = new RedBlackTreeMap<>(COMPARATOR);
+        assertTrue(map.put(5, "five") == null);
+        assertTrue(map.put(1, "one") == null);
+        assertTrue(map.put(10, "ten") == null);
+        assertEquals("five", map.put(5, "FIVE"));
+
+        assertEquals("one", map.get(1));
+        assertEquals("FIVE", map.get(5));
+        assertTrue(map.get(42) == null);
+        assertEquals(3, map.size());
+
+        assertEquals("FIVE", map.remove(5));
+        assertFalse(map.containsKey(5));
+        assertTrue(map.remove(5) == null);
+        assertEquals(2, map.size());
+
+        assertArrayEquals(new Object[]{1, 10}, map.keySet().toArray());
+        assertArrayEquals(new Object[]{"one", "ten"}, map.values().toArray());
+    }
+
+    @Test
+    void properlyHandlesRandomOperations() {
+        final int OPERATIONS = 100_000;
+
+        Random random = new Random(42);
+        Map<Integer, Integer> map = new RedBlackTreeMap<>(COMPARATOR);
+        Map<Integer, Integer> expected = new TreeMap<>();
+
+        for (int i = 0; i < OPERATIONS; i++) {
+            int key = random.nextInt(1_000);
+            int value = random.nextInt(100);
+            switch (random.nextInt(5)) {
+                case 0 -> assertTrue(Objects.equals(expected.put(key, value), map.put(key, value)));
+                case 1 -> assertTrue(Objects.equals(expected.remove(key), map.remove(key)));
+                case 2 -> assertTrue(Objects.equals(expected.merge(key, value, Integer::sum), map.merge(key, value, Integer::sum)));
+                case 3 -> assertTrue(Objects.equals(
+                        expected.computeIfAbsent(key, k -> value % 2 == 0 ? null : value),
+                        map.computeIfAbsent(key, k -> value % 2 == 0 ? null : value)));
+                default -> assertTrue(Objects.equals(
+                        expected.compute(key, (k, v) -> v == null || v > 50 ? null : v + value),
+                        map.compute(key, (k, v) -> v == null || v > 50 ? null : v + value)));
+            }
+        }
+
+        assertEquals(expected.size(), map.size());
+        assertTrue(map.equals(expected));
+        assertEquals(expected.hashCode(), map.hashCode());
+        assertEquals(expected.toString(), map.toString());
+    }
+
+    @Test
+    void computeIfAbsentLeavesNoEntryBehind() {
+        Map<Integer, String> map = new RedBlackTreeMap<>(COMPARATOR);
+        map.put(1, "one");
+
+        assertTrue(map.computeIfAbsent(2, k -> null) == null);
+        assertFalse(map.containsKey(2));
+
+        boolean raised = false;
+        try {
+            map.computeIfAbsent(3, k -> {
+                throw new IllegalStateException();
+            });
+        } catch (IllegalStateException e) {
+            raised = true;
+        }
+        assertTrue(raised);
+        assertFalse(map.containsKey(3));
+
+        assertEquals("one", map.computeIfAbsent(1, k -> "uno"));
+        assertEquals("two", map.computeIfAbsent(2, k -> "two"));
+        assertEquals(2, map.size());
+    }
+
+    @Test
+    void properlyHandlesNavigation() {
+        NavigableMap<Integer, Integer> map = new RedBlackTreeMap<>(COMPARATOR);
+        for (int i = 0; i < 100; i += 10) {
+            map.put(i, -i);
+        }
+
+        assertEquals(0, map.firstKey());
+        assertEquals(90, map.lastKey());
+        assertEquals(40, map.floorKey(45));
+        assertEquals(-40, map.floorEntry(40).getValue());
+        assertEquals(30, map.lowerKey(40));
+        assertEquals(50, map.ceilingKey(45));
+        assertEquals(-50, map.higherEntry(40).getValue());
+        assertTrue(map.lowerEntry(0) == null);
+        assertTrue(map.higherKey(90) == null);
+
+        assertEquals(0, map.pollFirstEntry().getKey());
+        assertEquals(-90, map.pollLastEntry().getValue());
+        assertEquals(8, map.size());
+
+        assertArrayEquals(new Object[]{80, 70, 60, 50, 40, 30, 20, 10}, map.descendingKeySet().toArray());
+        assertArrayEquals(new Object[]{-80, -70, -60, -50, -40, -30, -20, -10}, map.descendingMap().values().toArray());
+    }
+
+    @Test
+    void properlyHandlesRangeViews() {
+        final int SIZE = 200;
+
+        Random random = new Random(42);
+        NavigableMap<Integer, Integer> map = new RedBlackTreeMap<>(COMPARATOR);
+        NavigableMap<Integer, Integer> expected = new TreeMap<>();
+
+        for (int i = 0; i < SIZE; i++) {
+            int key = random.nextInt(SIZE * 2);
+            map.put(key, i);
+            expected.put(key, i);
+        }
+
+        for (int i = 0; i < 1_000; i++) {
+            int lo = random.nextInt(SIZE * 2);
+            int hi = lo + random.nextInt(SIZE);
+            boolean loInclusive = random.nextBoolean();
+            boolean hiInclusive = random.nextBoolean();
+
+            NavigableMap<Integer, Integer> view = map.subMap(lo, loInclusive, hi, hiInclusive);
+            NavigableMap<Integer, Integer> expectedView = expected.subMap(lo, loInclusive, hi, hiInclusive);
+
+            assertEquals(expectedView.size(), view.size());
+            assertTrue(view.equals(expectedView));
+            assertArrayEquals(expectedView.descendingMap().entrySet().toArray(), view.descendingMap().entrySet().toArray());
+            assertArrayEquals(expectedView.navigableKeySet().toArray(), view.navigableKeySet().toArray());
+            assertTrue(map.headMap(hi, hiInclusive).equals(expected.headMap(hi, hiInclusive)));
+            assertTrue(map.tailMap(lo, loInclusive).equals(expected.tailMap(lo, loInclusive)));
+
+            int probe = random.nextInt(SIZE * 3) - SIZE / 2;
+            assertTrue(Objects.equals(expectedView.floorEntry(probe), view.floorEntry(probe)));
+            assertTrue(Objects.equals(expectedView.ceilingKey(probe), view.ceilingKey(probe)));
+            assertTrue(Objects.equals(expectedView.get(probe), view.get(probe)));
+            assertTrue(Objects.equals(expectedView.descendingMap().higherEntry(probe), view.descendingMap().higherEntry(probe)));
+            assertTrue(Objects.equals(expectedView.descendingKeySet().floor(probe), view.descendingKeySet().floor(probe)));
+        }
+
+        NavigableMap<Integer, Integer> view = map.subMap(SIZE / 2, true, SIZE, false);
+        view.clear();
+        expected.subMap(SIZE / 2, true, SIZE, false).clear();
+        assertTrue(view.isEmpty());
+        assertTrue(map.equals(expected));
+    }
+
+    @Test(shouldRaise = IllegalArgumentException.class)
+    void rejectsKeysOutsideOfView() {
+        NavigableMap<Integer, Integer> map = new RedBlackTreeMap<>(COMPARATOR);
+        map.headMap(10, false).put(10, 0);
+    }
+
+    @Test
+    void properlyUpdatesThroughEntrySet() {
+        NavigableMap<Integer, Integer> map = new RedBlackTreeMap<>(COMPARATOR);
+        for (int i = 0; i < 1_000; i++) {
+            map.put(i, i);
+        }
+
+        Iterator<Map.Entry<Integer, Integer>> iterator = map.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Integer, Integer> entry = iterator.next();
+            if (entry.getKey() % 3 != 0) {
+                iterator.remove();
+            } else {
+                entry.setValue(-entry.getKey());
+            }
+        }
+
+        assertEquals(334, map.size());
+        for (Map.Entry<Integer, Integer> entry : map.entrySet()) {
+            assertEquals(0, entry.getKey() % 3);
+            assertEquals(-entry.getKey(), entry.getValue());
+        }
+
+        assertTrue(map.entrySet().remove(Map.entry(3, -3)));
+        assertFalse(map.entrySet().remove(Map.entry(6, 6)));
+        assertTrue(map.navigableKeySet().remove(6));
+        map.descendingKeySet().removeIf(key -> key > 900);
+        assertEquals(900, map.lastKey());
+        assertEquals(new ArrayList<>(map.keySet()).size(), map.size());
+    }
+}
@@ -1,10 +1,29 @@
+import arx.dukalis.collections.KeyCodec;
 import arx.dukalis.collections.RedBlackTree;
+import arx.dukalis.collections.RedBlackTreeStatistics;
 import arx.dukalis.unit.api.Test;
 
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NavigableSet;
+import java.util.Objects;
+import java.util.Random;
+import java.util.Spliterator;
+import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
 import java.util.stream.IntStream;
 
 import static arx.dukalis.unit.api.Assertions.*;
@@ -142,4 +161,895 @@ public class RedBlackTreeTest {
         tree.retainAll(halfOfCollection);
         assertTrue(tree.isEmpty());
     }
+
+    @Test
+    void properlyHandlesRandomOperations() {
+        final int OPERATIONS = 100_000;
+
+        Random random = new Random(42);
+        Collection<Integer> tree = new RedBlackTree<>(Comparator.comparing(o -> ((Integer) o)));
+        TreeSet<Integer> expected = new TreeSet<>();
+
+        for (int i = 0; i < OPERATIONS; i++) {
+            int key = random.nextInt(1_000);
+            if (random.nextBoolean()) {
+                assertEquals(expected.add(key), tree.add(key));
+            } else {
+                assertEquals(expected.remove(key), tree.remove(key));
+            }
+        }
+
+        assertEquals(expected.size(), tree.size());
+        assertArrayEquals(expected.toArray(), tree.toArray());
+    }
+
+    @Test
+    void properlyHandlesNavigation() {
+        NavigableSet<Integer> tree = new RedBlackTree<>(Comparator.comparing(o -> ((Integer) o)));
+        for (int i = 0; i < 100; i += 10) {
+            tree.add(i);
+        }
+
+        assertEquals(0, tree.first());
+        assertEquals(90, tree.last());
+        assertEquals(40, tree.floor(45));
+        assertEquals(40, tree.floor(40));
+        assertEquals(30, tree.lower(40));
+        assertEquals(50, tree.ceiling(45));
+        assertEquals(50, tree.higher(40));
+        assertTrue(tree.lower(0) == null);
+        assertTrue(tree.higher(90) == null);
+
+        assertEquals(0, tree.pollFirst());
+        assertEquals(90, tree.pollLast());
+        assertEquals(8, tree.size());
+
+        assertArrayEquals(new Object[]{80, 70, 60, 50, 40, 30, 20, 10}, tree.descendingSet().toArray());
+    }
+
+    @Test
+    void properlyHandlesRangeViews() {
+        final int SIZE = 200;
+
+        Random random = new Random(42);
+        NavigableSet<Integer> tree = new RedBlackTree<>(Comparator.comparing(o -> ((Integer) o)));
+        NavigableSet<Integer> expected = new TreeSet<>();
+
+        for (int i = 0; i < SIZE; i++) {
+            int key = random.nextInt(SIZE * 2);
+            tree.add(key);
+            expected.add(key);
+        }
+
+        for (int i = 0; i < 1_000; i++) {
+            int lo = random.nextInt(SIZE * 2);
+            int hi = lo + random.nextInt(SIZE);
+            boolean loInclusive = random.nextBoolean();
+            boolean hiInclusive = random.nextBoolean();
+
+            NavigableSet<Integer> view = tree.subSet(lo, loInclusive, hi, hiInclusive);
+            NavigableSet<Integer> expectedView = expected.subSet(lo, loInclusive, hi, hiInclusive);
+
+            assertEquals(expectedView.size(), view.size());
+            assertArrayEquals(expectedView.toArray(), view.toArray());
+            assertArrayEquals(expectedView.descendingSet().toArray(), view.descendingSet().toArray());
+            assertArrayEquals(expected.headSet(hi, hiInclusive).toArray(), tree.headSet(hi, hiInclusive).toArray());
+            assertArrayEquals(expected.tailSet(lo, loInclusive).toArray(), tree.tailSet(lo, loInclusive).toArray());
+
+            int probe = random.nextInt(SIZE * 3) - SIZE / 2;
+            assertTrue(Objects.equals(expectedView.floor(probe), view.floor(probe)));
+            assertTrue(Objects.equals(expectedView.ceiling(probe), view.ceiling(probe)));
+            assertTrue(Objects.equals(expectedView.lower(probe), view.lower(probe)));
+            assertTrue(Objects.equals(expectedView.higher(probe), view.higher(probe)));
+            assertTrue(Objects.equals(expectedView.descendingSet().floor(probe), view.descendingSet().floor(probe)));
+            assertTrue(Objects.equals(expectedView.descendingSet().higher(probe), view.descendingSet().higher(probe)));
+        }
+
+        NavigableSet<Integer> view = tree.subSet(SIZE / 2, true, SIZE, false);
+        view.clear();
+        expected.subSet(SIZE / 2, true, SIZE, false).clear();
+        assertTrue(view.isEmpty());
+        assertArrayEquals(expected.toArray(), tree.toArray());
+
+        assertTrue(tree.equals(expected));
+        assertEquals(expected.hashCode(), tree.hashCode());
+    }
+
+    @Test
+    void properlyRemovesThroughDescendingIterator() {
+        NavigableSet<Integer> tree = new RedBlackTree<>(Comparator.comparing(o -> ((Integer) o)));
+        for (int i = 0; i < 1_000; i++) {
+            tree.add(i);
+        }
+
+        Iterator<Integer> iterator = tree.descendingIterator();
+        while (iterator.hasNext()) {
+            if (iterator.next() % 3 != 0) {
+                iterator.remove();
+            }
+        }
+
+        assertEquals(334, tree.size());
+        for (Integer elem : tree) {
+            assertEquals(0, elem % 3);
+        }
+    }
+
+    @Test
+    void properlyHandlesOrderStatistics() {
+        final int OPERATIONS = 20_000;
+
+        Random random = new Random(42);
+        RedBlackTree<Integer> tree = new RedBlackTree<>(Comparator.comparing(o -> ((Integer) o)), true);
+        TreeSet<Integer> expected = new TreeSet<>();
+
+        for (int i = 0; i < OPERATIONS; i++) {
+            int key = random.nextInt(2_000);
+            if (random.nextInt(3) != 0) {
+                tree.add(key);
+                expected.add(key);
+            } else {
+                tree.remove(key);
+                expected.remove(key);
+            }
+        }
+
+        List<Integer> sorted = expected.stream().toList();
+        for (int i = 0; i < sorted.size(); i++) {
+            assertEquals(sorted.get(i), tree.select(i));
+            assertEquals(i, tree.rank(sorted.get(i)));
+        }
+
+        for (int i = 0; i < 1_000; i++) {
+            int lo = random.nextInt(2_000);
+            int hi = lo + random.nextInt(500);
+            assertEquals(expected.subSet(lo, true, hi, true).size(), tree.countInRange(lo, hi));
+            assertEquals(expected.subSet(lo, false, hi, true).size(), tree.subSet(lo, false, hi, true).size());
+            assertEquals(expected.subSet(lo, false, lo, false).size(), tree.subSet(lo, false, lo, false).size());
+        }
+    }
+
+    @Test(shouldRaise = IllegalStateException.class)
+    void rejectsOrderStatisticsWhenNotMaintained() {
+        RedBlackTree<Integer> tree = new RedBlackTree<>(Comparator.comparing(o -> ((Integer) o)));
+        tree.add(1);
+        tree.rank(1);
+    }
+
+    @Test
+    void properlyBuildsFromSorted() {
+        for (int size = 0; size < 300; size++) {
+            Integer[] sorted = IntStream.range(0, size).boxed().toArray(Integer[]::new);
+
+            RedBlackTree<Integer> tree = RedBlackTree.fromSorted(Comparator.comparing(o -> ((Integer) o)), sorted);
+            assertEquals(size, tree.size());
+            assertArrayEquals(sorted, tree.toArray());
+
+            tree.add(-1);
+            tree.add(size);
+            tree.remove(size / 2);
+            assertEquals(size + 1, tree.size());
+        }
+    }
+
+    @Test
+    void usesSortedBuildForSortedSets() {
+        final int SIZE = 10_000;
+
+        Comparator<Object> comparator = Comparator.comparing(o -> ((Integer) o));
+        RedBlackTree<Integer> source = RedBlackTree.fromSorted(comparator, IntStream.range(0, SIZE).boxed());
+        RedBlackTree<Integer> tree = new RedBlackTree<>(comparator, true);
+
+        assertTrue(tree.addAll(source));
+        assertTrue(tree.equals(source));
+        assertEquals(SIZE / 2, tree.rank(SIZE / 2));
+        assertEquals(SIZE - 1, tree.select(SIZE - 1));
+    }
+
+    @Test
+    void mergesSortedSetsIntoNonEmptyTree() {
+        Comparator<Object> comparator = Comparator.comparing(o -> ((Integer) o));
+        Random random = new Random(42);
+        RedBlackTree<Integer> tree = new RedBlackTree<>(comparator, true);
+        TreeSet<Integer> expected = new TreeSet<>();
+
+        for (int round = 0; round < 50; round++) {
+            RedBlackTree<Integer> batch = new RedBlackTree<>(comparator);
+            for (int i = 0; i < 500; i++) {
+                batch.add(random.nextInt(20_000));
+            }
+            assertEquals(expected.addAll(batch), tree.addAll(batch));
+            assertFalse(tree.addAll(batch));
+            assertEquals(expected.size(), tree.size());
+        }
+
+        assertArrayEquals(expected.toArray(), tree.toArray());
+        int index = 0;
+        for (Integer key : expected) {
+            assertEquals(index++, tree.rank(key));
+        }
+        assertEquals(expected.first(), tree.peekFirst());
+        assertEquals(expected.last(), tree.peekLast());
+    }
+
+    @Test(shouldRaise = IllegalArgumentException.class)
+    void rejectsUnsortedInput() {
+        RedBlackTree.fromSorted(Comparator.comparing(o -> ((Integer) o)), new Integer[]{1, 3, 2});
+    }
+
+    @Test
+    void properlyHandlesSpliterator() {
+        final int SIZE = 10_000;
+
+        for (boolean orderStatistics : new boolean[]{false, true}) {
+            RedBlackTree<Integer> tree = new RedBlackTree<>(Comparator.comparing(o -> ((Integer) o)), orderStatistics);
+            for (int i = 0; i < SIZE; i++) {
+                tree.add(i);
+            }
+
+            Spliterator<Integer> spliterator = tree.spliterator();
+            assertEquals(SIZE, spliterator.getExactSizeIfKnown());
+            assertTrue(spliterator.hasCharacteristics(Spliterator.SORTED | Spliterator.DISTINCT | Spliterator.ORDERED));
+
+            List<Integer> collected = new ArrayList<>();
+            splitRecursively(spliterator, collected, orderStatistics);
+            assertArrayEquals(tree.toArray(), collected.toArray());
+
+            long expectedSum = (long) SIZE * (SIZE - 1) / 2;
+            assertEquals(expectedSum, tree.parallelStream().mapToLong(Integer::longValue).sum());
+            assertEquals(SIZE, tree.parallelStream().toList().size());
+        }
+    }
+
+    private static void splitRecursively(Spliterator<Integer> spliterator, List<Integer> collected, boolean exact) {
+        long expected = spliterator.estimateSize();
+        int before = collected.size();
+
+        Spliterator<Integer> prefix = spliterator.trySplit();
+        if (prefix == null) {
+            while (spliterator.tryAdvance(collected::add)) {
+                // Only single nodes are left.
+            }
+        } else {
+            splitRecursively(prefix, collected, exact);
+            if (collected.size() % 2 == 0) {
+                spliterator.forEachRemaining(collected::add);
+            } else {
+                splitRecursively(spliterator, collected, exact);
+            }
+        }
+
+        if (exact) {
+            assertEquals(expected, (long) (collected.size() - before));
+        }
+    }
+
+    @Test
+    void appendsThroughFingerWithConstantComparisons() {
+        final int SIZE = 100_000;
+
+        long[] comparisons = {0};
+        RedBlackTree<Integer> tree = new RedBlackTree<>((a, b) -> {
+            comparisons[0]++;
+            return Integer.compare((Integer) a, (Integer) b);
+        });
+
+        for (int i = 0; i < SIZE; i++) {
+            tree.add(i);
+        }
+
+        assertEquals(SIZE, tree.size());
+        assertTrue(comparisons[0] < 2L * SIZE);
+        assertFalse(tree.add(SIZE - 1));
+    }
+
+    @Test
+    void properlyHandlesNearlySortedInsertions() {
+        final int SIZE = 50_000;
+
+        Random random = new Random(42);
+        RedBlackTree<Integer> tree = new RedBlackTree<>(Comparator.comparing(o -> ((Integer) o)), true);
+        TreeSet<Integer> expected = new TreeSet<>();
+
+        for (int i = 0; i < SIZE; i++) {
+            int key = i * 4 + random.nextInt(16) - 8;
+            assertEquals(expected.add(key), tree.add(key));
+
+            if (random.nextInt(8) == 0) {
+                int removed = key - random.nextInt(32);
+                assertEquals(expected.remove(removed), tree.remove(removed));
+            }
+        }
+
+        assertArrayEquals(expected.toArray(), tree.toArray());
+        for (int i = 0; i < expected.size(); i += 997) {
+            assertEquals(i, tree.rank(tree.select(i)));
+        }
+    }
+
+    @Test
+    void properlyRestoresSnapshot() throws Exception {
+        final int SIZE = 1_000_000;
+
+        Path file = Files.createTempFile("red-black-tree", ".snapshot");
+        try {
+            RedBlackTree<Integer> tree = new RedBlackTree<>(Comparator.comparing(o -> ((Integer) o)));
+            Random random = new Random(42);
+            for (int i = 0; i < SIZE; i++) {
+                tree.add(random.nextInt());
+            }
+
+            tree.writeSnapshot(file, KeyCodec.ofIntegers());
+            RedBlackTree<Integer> restored = RedBlackTree.readSnapshot(file, Comparator.comparing(o -> ((Integer) o)), KeyCodec.ofIntegers());
+
+            assertTrue(restored.equals(tree));
+            assertArrayEquals(tree.toArray(), restored.toArray());
+
+            RedBlackTree<String> strings = new RedBlackTree<>(Comparator.comparing(o -> ((String) o)));
+            strings.add("");
+            strings.add("ascii");
+            strings.add("\u043a\u0438\u0440\u0438\u043b\u043b\u0438\u0446\u0430");
+            strings.add("\uD83C\uDF33 tree");
+            strings.add("x".repeat(100_000));
+            strings.writeSnapshot(file, KeyCodec.ofStrings());
+
+            try (FileChannel channel = FileChannel.open(file)) {
+                RedBlackTree<String> restoredStrings = RedBlackTree.readSnapshot(channel,
+                        Comparator.comparing(o -> ((String) o)), true, KeyCodec.ofStrings());
+                assertArrayEquals(strings.toArray(), restoredStrings.toArray());
+                assertEquals("ascii", restoredStrings.select(1));
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test(shouldRaise = IOException.class)
+    void rejectsCorruptSnapshot() throws Exception {
+        Path file = Files.createTempFile("red-black-tree", ".snapshot");
+        try {
+            RedBlackTree<Long> tree = new RedBlackTree<>(Comparator.comparing(o -> ((Long) o)));
+            for (long i = 0; i < 1_000; i++) {
+                tree.add(i);
+            }
+            tree.writeSnapshot(file, KeyCodec.ofLongs());
+
+            byte[] bytes = Files.readAllBytes(file);
+            bytes[bytes.length / 2] ^= 1;
+            Files.write(file, bytes);
+
+            RedBlackTree.readSnapshot(file, Comparator.comparing(o -> ((Long) o)), KeyCodec.ofLongs());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    void rejectsCorruptKeyLengths() throws Exception {
+        Path file = Files.createTempFile("red-black-tree", ".snapshot");
+        try {
+            RedBlackTree<Integer> tree = new RedBlackTree<>(Comparator.comparing(o -> ((Integer) o)));
+            for (int i = 0; i < 1_000; i++) {
+                tree.add(i);
+            }
+            tree.writeSnapshot(file, KeyCodec.ofIntegers());
+            byte[] original = Files.readAllBytes(file);
+
+            for (int length : new int[]{Integer.MAX_VALUE, 1 << 20, 2}) {
+                byte[] bytes = original.clone();
+                ByteBuffer.wrap(bytes).putInt(3 * Integer.BYTES, length);
+                Files.write(file, bytes);
+
+                boolean rejected = false;
+                try {
+                    RedBlackTree.readSnapshot(file, Comparator.comparing(o -> ((Integer) o)), KeyCodec.ofIntegers());
+                } catch (IOException e) {
+                    rejected = e.getMessage().startsWith("Corrupt snapshot");
+                }
+                assertTrue(rejected);
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    void properlyMovesAndRemovesThroughCursor() {
+        final int SIZE = 10_000;
+
+        Random random = new Random(42);
+        RedBlackTree<Integer> tree = new RedBlackTree<>(Comparator.comparing(o -> ((Integer) o)));
+        TreeSet<Integer> expected = new TreeSet<>();
+        for (int i = 0; i < SIZE; i++) {
+            tree.add(i * 2);
+            expected.add(i * 2);
+        }
+
+        RedBlackTree<Integer>.Cursor cursor = tree.cursor();
+        assertEquals(0, cursor.key());
+        assertFalse(cursor.prev());
+        assertFalse(cursor.isValid());
+
+        for (int i = 0; i < 1_000; i++) {
+            int probe = random.nextInt(SIZE * 2 + 10);
+            Integer ceiling = expected.ceiling(probe);
+            assertEquals(ceiling != null, cursor.seek(probe));
+            if (ceiling == null) continue;
+            assertEquals(ceiling, cursor.key());
+
+            int steps = random.nextInt(5);
+            Integer position = ceiling;
+            for (int step = 0; step < steps && position != null; step++) {
+                position = expected.higher(position);
+                assertEquals(position != null, cursor.next());
+            }
+            if (position == null) continue;
+            assertEquals(position, cursor.key());
+
+            Integer previous = expected.lower(position);
+            if (previous != null) {
+                assertTrue(cursor.prev());
+                assertEquals(previous, cursor.key());
+                assertTrue(cursor.next());
+            }
+
+            Integer following = expected.higher(position);
+            expected.remove(position);
+            assertEquals(following != null, cursor.remove());
+            if (following != null) {
+                assertEquals(following, cursor.key());
+            }
+        }
+
+        assertEquals(expected.size(), tree.size());
+        assertArrayEquals(expected.toArray(), tree.toArray());
+
+        cursor.seekLast();
+        while (cursor.remove()) {
+            // only the last element has no successor
+        }
+        assertEquals(expected.size() - 1, tree.size());
+        assertEquals(expected.lower(expected.last()), tree.last());
+    }
+
+    @Test(shouldRaise = ConcurrentModificationException.class)
+    void iteratorFailsFastOnModification() {
+        RedBlackTree<Integer> tree = new RedBlackTree<>(Comparator.comparing(o -> ((Integer) o)));
+        for (int i = 0; i < 10; i++) {
+            tree.add(i);
+        }
+
+        for (Integer elem : tree) {
+            if (elem == 5) {
+                tree.remove(7);
+            }
+        }
+    }
+
+    @Test(shouldRaise = ConcurrentModificationException.class)
+    void cursorFailsFastOnModification() {
+        RedBlackTree<Integer> tree = new RedBlackTree<>(Comparator.comparing(o -> ((Integer) o)));
+        for (int i = 0; i < 10; i++) {
+            tree.add(i);
+        }
+
+        RedBlackTree<Integer>.Cursor cursor = tree.cursor(5);
+        tree.add(42);
+        cursor.next();
+    }
+
+    @Test
+    void retainsEveryMatchingElement() {
+        final int SIZE = 10_000;
+
+        RedBlackTree<Integer> tree = new RedBlackTree<>(Comparator.comparing(o -> ((Integer) o)));
+        List<Integer> evens = new ArrayList<>();
+        for (int i = 0; i < SIZE; i++) {
+            tree.add(i);
+            if (i % 2 == 0) {
+                evens.add(i);
+            }
+        }
+
+        assertTrue(tree.retainAll(new TreeSet<>(evens)));
+        assertArrayEquals(evens.toArray(), tree.toArray());
+        assertFalse(tree.retainAll(evens));
+    }
+
+    @Test
+    void properlyRemovesInBulk() {
+        final int SIZE = 20_000;
+
+        Random random = new Random(42);
+        for (int percent : new int[]{0, 1, 10, 50, 99, 100}) {
+            RedBlackTree<Integer> tree = new RedBlackTree<>(Comparator.comparing(o -> ((Integer) o)), true);
+            TreeSet<Integer> expected = new TreeSet<>();
+            for (int i = 0; i < SIZE; i++) {
+                int key = random.nextInt(SIZE * 2);
+                tree.add(key);
+                expected.add(key);
+            }
+
+            assertEquals(percent > 0, tree.removeIf(key -> Math.floorMod(key * 31, 100) < percent));
+            expected.removeIf(key -> Math.floorMod(key * 31, 100) < percent);
+            assertArrayEquals(expected.toArray(), tree.toArray());
+            for (int i = 0; i < expected.size(); i += 97) {
+                assertEquals(i, tree.rank(tree.select(i)));
+            }
+
+            for (int i = 0; i < SIZE; i++) {
+                int key = random.nextInt(SIZE * 2);
+                if (random.nextBoolean()) {
+                    assertEquals(expected.add(key), tree.add(key));
+                } else {
+                    assertEquals(expected.remove(key), tree.remove(key));
+                }
+            }
+            assertArrayEquals(expected.toArray(), tree.toArray());
+        }
+
+        RedBlackTree<Integer> tree = new RedBlackTree<>(Comparator.comparing(o -> ((Integer) o)));
+        for (int i = 0; i < SIZE; i++) {
+            tree.add(i);
+        }
+        assertTrue(tree.removeAll(List.of(1, 2, 3)));
+        assertEquals(SIZE - 3, tree.size());
+        assertTrue(tree.removeAll(IntStream.range(0, SIZE / 2).boxed().toList()));
+        assertEquals(SIZE / 2, tree.size());
+        assertEquals(SIZE / 2, tree.first());
+        assertFalse(tree.removeAll(List.of(-1)));
+    }
+
+    @Test
+    void removesAllByComparator() {
+        final int SIZE = 10_000;
+
+        Comparator<Object> comparator = Comparator.comparing(o -> ((String) o).toLowerCase());
+        for (int variant = 0; variant < 3; variant++) {
+            RedBlackTree<String> tree = new RedBlackTree<>(comparator);
+            Collection<String> removed = switch (variant) {
+                case 0 -> new ArrayList<>();
+                case 1 -> new RedBlackTree<>(comparator);
+                default -> new HashSet<>();
+            };
+            for (int i = 0; i < SIZE; i++) {
+                tree.add("key" + i);
+                if (i % 3 == 0) {
+                    // Differs from the key in the tree by case only, except for the hash set, which relies on equals.
+                    removed.add((variant == 2 ? "key" : "KEY") + i);
+                }
+            }
+
+            assertTrue(tree.removeAll(removed));
+            assertEquals(SIZE - removed.size(), tree.size());
+            assertFalse(tree.contains("key0"));
+            assertTrue(tree.contains("key1"));
+            assertFalse(tree.removeAll(removed));
+        }
+    }
+
+    @Test
+    void properlyCollectsStatistics() {
+        final int SIZE = 10_000;
+
+        RedBlackTree<Integer> tree = new RedBlackTree<>(Comparator.comparing(o -> ((Integer) o)));
+        tree.add(-1);
+        tree.enableStatistics();
+        for (int i = 0; i < SIZE; i++) {
+            tree.add(i);
+        }
+
+        RedBlackTreeStatistics statistics = tree.statistics();
+        assertEquals(SIZE + 1, statistics.size());
+        assertEquals((long) SIZE, statistics.operations());
+        assertTrue(statistics.comparisons() >= SIZE);
+        assertTrue(statistics.leftRotations() > 0);
+        assertEquals(0L, statistics.rightRotations());
+        assertTrue(statistics.insertCaseHits()[0] >= SIZE);
+        assertEquals(0L, Arrays.stream(statistics.removeCaseHits()).sum());
+        assertTrue(statistics.height() >= statistics.blackHeight());
+        assertTrue(statistics.height() <= 2 * statistics.blackHeight());
+        assertTrue(statistics.height() <= 2 * (32 - Integer.numberOfLeadingZeros(SIZE + 2)));
+
+        for (int i = 0; i < SIZE; i++) {
+            tree.contains(i);
+            tree.remove(i);
+        }
+
+        statistics = tree.statistics();
+        assertEquals(1, statistics.size());
+        assertEquals(3L * SIZE, statistics.operations());
+        assertTrue(statistics.removeCaseHits()[0] > 0);
+        assertEquals(1, statistics.height());
+        assertEquals(1, statistics.blackHeight());
+
+        tree.disableStatistics();
+        tree.enableStatistics();
+        assertEquals(0L, tree.statistics().operations());
+    }
+
+    @Test(shouldRaise = IllegalStateException.class)
+    void rejectsStatisticsWhenDisabled() {
+        new RedBlackTree<>(Comparator.comparing(o -> ((Integer) o))).statistics();
+    }
+
+    @Test
+    void publishesStatisticsMBean() throws Exception {
+        RedBlackTree<Integer> tree = new RedBlackTree<>(Comparator.comparing(o -> ((Integer) o)));
+        tree.enableStatistics();
+        for (int i = 0; i < 100; i++) {
+            tree.add(i);
+        }
+
+        ObjectName name = RedBlackTreeStatistics.registerMBean("test", tree::statistics);
+        try {
+            assertEquals(100, ManagementFactory.getPlatformMBeanServer().getAttribute(name, "Size"));
+            assertEquals(100L, ManagementFactory.getPlatformMBeanServer().getAttribute(name, "Operations"));
+            assertTrue(Arrays.equals(tree.statistics().insertCaseHits(),
+                    (long[]) ManagementFactory.getPlatformMBeanServer().getAttribute(name, "InsertCaseHits")));
+        } finally {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+        }
+    }
+
+    @Test
+    void properlyCombinesTrees() {
+        Comparator<Object> comparator = Comparator.comparing(o -> ((Integer) o));
+        Random random = new Random(42);
+        for (int round = 0; round < 200; round++) {
+            boolean orderStatistics = round % 2 == 0;
+            int range = 1 + random.nextInt(1_000);
+            TreeSet<Integer> first = new TreeSet<>();
+            TreeSet<Integer> second = new TreeSet<>();
+            for (int i = random.nextInt(500); i > 0; i--) first.add(random.nextInt(range));
+            for (int i = random.nextInt(500); i > 0; i--) second.add(random.nextInt(range));
+
+            for (int operation = 0; operation < 3; operation++) {
+                RedBlackTree<Integer> a = new RedBlackTree<>(comparator, orderStatistics);
+                RedBlackTree<Integer> b = new RedBlackTree<>(comparator, orderStatistics);
+                first.forEach(a::add);
+                second.forEach(b::add);
+
+                TreeSet<Integer> expected = new TreeSet<>(first);
+                RedBlackTree<Integer> combined;
+                switch (operation) {
+                    case 0 -> {
+                        expected.addAll(second);
+                        combined = RedBlackTree.union(a, b);
+                    }
+                    case 1 -> {
+                        expected.retainAll(second);
+                        combined = RedBlackTree.intersection(a, b);
+                    }
+                    default -> {
+                        expected.removeAll(second);
+                        combined = RedBlackTree.difference(a, b);
+                    }
+                }
+
+                assertArrayEquals(expected.toArray(), combined.toArray());
+                assertEquals(expected.size(), combined.size());
+                assertTrue(a.isEmpty() && b.isEmpty());
+                if (orderStatistics) {
+                    int index = 0;
+                    for (Integer key : expected) {
+                        assertEquals(index++, combined.rank(key));
+                    }
+                }
+
+                combined.add(-1);
+                assertTrue(combined.remove(-1));
+                assertArrayEquals(expected.toArray(), combined.toArray());
+            }
+        }
+    }
+
+    @Test
+    void combinesLargeTreesInParallel() {
+        final int SIZE = 200_000;
+
+        Comparator<Object> comparator = Comparator.comparing(o -> ((Integer) o));
+        RedBlackTree<Integer> evens = RedBlackTree.fromSorted(comparator, IntStream.range(0, SIZE).map(i -> 2 * i).boxed());
+        RedBlackTree<Integer> multiplesOfThree = RedBlackTree.fromSorted(comparator, IntStream.range(0, SIZE).map(i -> 3 * i).boxed());
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            RedBlackTree<Integer> union = RedBlackTree.union(evens, multiplesOfThree, pool);
+            int[] expected = IntStream.range(0, 3 * SIZE).filter(i -> (i % 2 == 0 && i < 2 * SIZE) || i % 3 == 0).toArray();
+            assertEquals(expected.length, union.size());
+            assertArrayEquals(Arrays.stream(expected).boxed().toArray(), union.toArray());
+
+            RedBlackTree<Integer> sixes = RedBlackTree.fromSorted(comparator, IntStream.range(0, SIZE).map(i -> 6 * i).boxed());
+            RedBlackTree<Integer> difference = RedBlackTree.difference(union, sixes, pool);
+            assertArrayEquals(Arrays.stream(expected).filter(i -> i % 6 != 0).boxed().toArray(), difference.toArray());
+            assertTrue(union.isEmpty() && sixes.isEmpty());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test(shouldRaise = IllegalArgumentException.class)
+    void rejectsCombiningIncompatibleTrees() {
+        RedBlackTree<Integer> a = new RedBlackTree<>(Comparator.comparing(o -> ((Integer) o)), true);
+        RedBlackTree<Integer> b = new RedBlackTree<>(Comparator.comparing(o -> ((Integer) o)), false);
+        RedBlackTree.union(a, b);
+    }
+
+    @Test
+    void recyclesNodesOnChurn() {
+        Random random = new Random(42);
+        RedBlackTree<Integer> tree = new RedBlackTree<>(Comparator.comparing(o -> ((Integer) o)), true);
+        TreeSet<Integer> expected = new TreeSet<>();
+        tree.enableNodeRecycling(16);
+
+        for (int i = 0; i < 20_000; i++) {
+            int key = random.nextInt(500);
+            if (random.nextBoolean()) {
+                assertEquals(expected.add(key), tree.add(key));
+            } else {
+                assertEquals(expected.remove(key), tree.remove(key));
+            }
+            if (i % 1_000 == 0) {
+                Iterator<Integer> it = tree.iterator();
+                while (it.hasNext()) {
+                    if (it.next() % 3 == 0) {
+                        it.remove();
+                    }
+                }
+                expected.removeIf(k -> k % 3 == 0);
+            }
+        }
+
+        assertArrayEquals(expected.toArray(), tree.toArray());
+        int index = 0;
+        for (Integer key : expected) {
+            assertEquals(key, tree.select(index++));
+        }
+        tree.disableNodeRecycling();
+        assertTrue(tree.add(1_000));
+        assertEquals(1_000, tree.last());
+        assertEquals(expected.size() + 1, tree.size());
+    }
+
+    /**
+     * Bytes allocated by the current thread while running the churn of {@link #churn}.
+     */
+    private static long measureChurn(RedBlackTree<Integer> tree, Integer[] keys, int rounds) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long allocated = threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+
+        churn(tree, keys, rounds);
+
+        return threads.getThreadAllocatedBytes(Thread.currentThread().getId()) - allocated;
+    }
+
+    /**
+     * Slides a window of {@code keys.length / 2} keys over the keys, removing the oldest key for each new one.
+     */
+    private static void churn(RedBlackTree<Integer> tree, Integer[] keys, int rounds) {
+        int window = keys.length / 2;
+        for (int i = 0; i < rounds * keys.length; i++) {
+            tree.remove(keys[i % keys.length]);
+            tree.add(keys[(i + window) % keys.length]);
+        }
+    }
+
+    @Test
+    void allocatesOnlyForMatchesWhenRemovingFew() {
+        final int SIZE = 200_000;
+
+        RedBlackTree<Integer> tree = new RedBlackTree<>(Comparator.comparing(o -> ((Integer) o)));
+        HashSet<Integer> all = new HashSet<>();
+        for (int i = 0; i < SIZE; i++) {
+            tree.add(i);
+            all.add(i);
+        }
+        Integer single = SIZE / 2;
+
+        // Warm up, so that the measurement doesn't see allocations of the compiler and of linking the lambdas.
+        for (int i = 0; i < 5; i++) {
+            removeFew(tree, all, single);
+            tree.add(single);
+        }
+
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long allocated = threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+        removeFew(tree, all, single);
+        allocated = threads.getThreadAllocatedBytes(Thread.currentThread().getId()) - allocated;
+
+        assertTrue(allocated < 4_096);
+        assertEquals(SIZE - 1, tree.size());
+        assertFalse(tree.contains(single));
+    }
+
+    private static void removeFew(RedBlackTree<Integer> tree, Collection<Integer> all, Integer single) {
+        assertFalse(tree.retainAll(all));
+        assertTrue(tree.removeIf(single::equals));
+    }
+
+    @Test
+    void avoidsAllocationWhenRecyclingNodes() {
+        final int KEYS = 20_000;
+        final int ROUNDS = 50;
+
+        Integer[] keys = new Integer[KEYS];
+        for (int i = 0; i < KEYS; i++) {
+            keys[i] = i;
+        }
+
+        RedBlackTree<Integer> allocating = new RedBlackTree<>(Comparator.comparing(o -> ((Integer) o)));
+        RedBlackTree<Integer> recycling = new RedBlackTree<>(Comparator.comparing(o -> ((Integer) o)));
+        recycling.enableNodeRecycling(64);
+        for (int i = 0; i < KEYS / 2; i++) {
+            allocating.add(keys[i]);
+            recycling.add(keys[i]);
+        }
+
+        // Warm up both paths, so that the measurement doesn't see allocations of the compiler.
+        churn(allocating, keys, 2);
+        churn(recycling, keys, 2);
+
+        long allocatingCost = measureChurn(allocating, keys, ROUNDS);
+        long recyclingCost = measureChurn(recycling, keys, ROUNDS);
+
+        assertTrue(allocatingCost >= (long) ROUNDS * KEYS * 24);
+        assertTrue(recyclingCost * 100 < allocatingCost);
+        assertArrayEquals(allocating.toArray(), recycling.toArray());
+    }
+
+    @Test
+    void servesAsDoubleEndedPriorityQueue() {
+        Comparator<Object> comparator = Comparator.comparing(o -> ((Integer) o));
+        Random random = new Random(42);
+        RedBlackTree<Integer> tree = new RedBlackTree<>(comparator, true);
+        TreeSet<Integer> expected = new TreeSet<>();
+        assertTrue(tree.peekFirst() == null);
+        assertTrue(tree.peekLast() == null);
+        assertTrue(tree.pollFirst() == null);
+
+        for (int i = 0; i < 50_000; i++) {
+            int key = random.nextInt(2_000);
+            switch (random.nextInt(8)) {
+                case 0, 1, 2, 3 -> assertEquals(expected.add(key), tree.add(key));
+                case 4 -> assertEquals(expected.remove(key), tree.remove(key));
+                case 5 -> assertTrue(Objects.equals(expected.pollFirst(), tree.pollFirst()));
+                case 6 -> assertTrue(Objects.equals(expected.pollLast(), tree.pollLast()));
+                default -> {
+                    if (!expected.isEmpty()) {
+                        // The median is mostly in an inner node, which takes over the key of its successor.
+                        Integer median = tree.select(tree.size() / 2);
+                        assertEquals(expected.remove(median), tree.remove(median));
+                    }
+                }
+            }
+            assertTrue(Objects.equals(expected.isEmpty() ? null : expected.first(), tree.peekFirst()));
+            assertTrue(Objects.equals(expected.isEmpty() ? null : expected.last(), tree.peekLast()));
+        }
+
+        Iterator<Integer> it = tree.descendingIterator();
+        for (int i = 0; i < 3 && it.hasNext(); i++) {
+            it.next();
+            it.remove();
+        }
+        for (int i = 0; i < 3 && !expected.isEmpty(); i++) {
+            expected.pollLast();
+        }
+        assertEquals(expected.last(), tree.peekLast());
+        assertEquals(expected.first(), tree.first());
+
+        tree.removeIf(key -> key < 1_000);
+        expected.removeIf(key -> key < 1_000);
+        assertEquals(expected.first(), tree.peekFirst());
+        assertEquals(expected.last(), tree.peekLast());
+
+        RedBlackTree<Integer> other = RedBlackTree.fromSorted(comparator, true, List.of(-5, 5_000).iterator(), 2);
+        assertEquals(-5, other.peekFirst());
+        RedBlackTree<Integer> union = RedBlackTree.union(tree, other);
+        assertEquals(-5, union.peekFirst());
+        assertEquals(5_000, union.peekLast());
+        assertTrue(tree.peekFirst() == null);
+
+        union.clear();
+        assertTrue(union.peekLast() == null);
+    }
 }
@@ -0,0 +1,45 @@
+import arx.dukalis.unit.api.After;
+import arx.dukalis.unit.api.Before;
+import arx.dukalis.unit.api.Parallel;
+import arx.dukalis.unit.api.Test;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static arx.dukalis.unit.api.Assertions.*;
+
+/**
+ * Tests run concurrently on one instance, which is set up once before all of them and torn down after all of them.
+ */
+@Parallel(instance = Parallel.Instance.SHARED)
+public class SharedParallelUnitTestingTest {
+
+    private Set<String> visited;
+
+    @Before
+    void setUp() {
+        visited = ConcurrentHashMap.newKeySet();
+    }
+
+    @Test
+    void first() throws Exception {
+        Thread.sleep(100);
+        visited.add("first");
+    }
+
+    @Test
+    void second() throws Exception {
+        Thread.sleep(100);
+        visited.add("second");
+    }
+
+    @Test
+    void third() {
+        visited.add("third");
+    }
+
+    @After
+    void tearDown() {
+        assertEquals(3, visited.size());
+    }
+}
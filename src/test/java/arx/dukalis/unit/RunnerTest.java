@@ -0,0 +1,146 @@
+package arx.dukalis.unit;
+
+import arx.dukalis.unit.api.After;
+import arx.dukalis.unit.api.Before;
+import arx.dukalis.unit.api.Parallel;
+import arx.dukalis.unit.api.Test;
+import arx.dukalis.unit.internal.Report;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static arx.dukalis.unit.api.Assertions.*;
+
+public class RunnerTest {
+
+    /**
+     * Latch which both tests of a rendezvous class have to reach, so they pass only if they run at the same time.
+     */
+    private static CountDownLatch rendezvous;
+
+    private static void meet() throws InterruptedException {
+        rendezvous.countDown();
+        assertTrue(rendezvous.await(5, TimeUnit.SECONDS));
+    }
+
+    @Parallel
+    static class PerTestRendezvous {
+        @Test
+        void first() throws Exception {
+            meet();
+        }
+
+        @Test
+        void second() throws Exception {
+            meet();
+        }
+    }
+
+    @Parallel(instance = Parallel.Instance.SHARED)
+    static class SharedRendezvous {
+        @Test
+        void first() throws Exception {
+            meet();
+        }
+
+        @Test
+        void second() throws Exception {
+            meet();
+        }
+    }
+
+    @Parallel
+    static class FailingPerTestBefore {
+        @Before
+        void setUp() {
+            throw new IllegalStateException();
+        }
+
+        @Test
+        void first() {
+        }
+
+        @Test
+        void second() {
+        }
+    }
+
+    @Parallel
+    static class FailingPerTestAfter {
+        @Test
+        void first() {
+        }
+
+        @Test
+        void second() {
+        }
+
+        @After
+        void tearDown() {
+            throw new IllegalStateException();
+        }
+    }
+
+    @Parallel(instance = Parallel.Instance.SHARED)
+    static class FailingSharedBefore {
+        @Before
+        void setUp() {
+            throw new IllegalStateException();
+        }
+
+        @Test
+        void first() {
+        }
+
+        @Test
+        void second() {
+        }
+    }
+
+    @Parallel(instance = Parallel.Instance.SHARED)
+    static class FailingSharedAfter {
+        @Test
+        void first() {
+        }
+
+        @Test
+        void second() {
+        }
+
+        @After
+        void tearDown() {
+            throw new IllegalStateException();
+        }
+    }
+
+    private static Report runInParallel(Class<?> klass) {
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            return Runner.processClassInParallel(klass, pool).join();
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void runsPerTestInstancesConcurrently() {
+        rendezvous = new CountDownLatch(2);
+        assertEquals(new Report(2, 0), runInParallel(PerTestRendezvous.class));
+    }
+
+    @Test
+    void runsSharedInstanceConcurrently() {
+        rendezvous = new CountDownLatch(2);
+        assertEquals(new Report(2, 0), runInParallel(SharedRendezvous.class));
+    }
+
+    @Test
+    void countsFailedSetUpAndTearDown() {
+        assertEquals(new Report(0, 2), runInParallel(FailingPerTestBefore.class));
+        assertEquals(new Report(0, 2), runInParallel(FailingPerTestAfter.class));
+        assertEquals(new Report(0, 2), runInParallel(FailingSharedBefore.class));
+        assertEquals(new Report(2, 1), runInParallel(FailingSharedAfter.class));
+    }
+}